@@ -74,6 +74,11 @@ dependencies {
     compileOnly("com.mojang:authlib:1.5.21")
 
     slim("org.jetbrains.kotlin:kotlin-stdlib")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.11.4")
+    testImplementation("org.spigotmc:spigot-api:1.21.4-R0.1-SNAPSHOT")
+    testRuntimeOnly("org.xerial:sqlite-jdbc:3.47.1.0")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 tasks.withType<DokkaTask>().configureEach {
@@ -121,6 +126,12 @@ tasks {
         options.compilerArgs = listOf("-parameters")
     }
 
+    test {
+        useJUnitPlatform()
+        // The SQLite save benchmark only runs when asked for with -Dguilds.benchmark=true
+        System.getProperty("guilds.benchmark")?.let { systemProperty("guilds.benchmark", it) }
+    }
+
     runServer {
         minecraftVersion("1.21.1")
     }
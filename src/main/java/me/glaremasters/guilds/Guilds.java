@@ -43,12 +43,17 @@ import me.glaremasters.guilds.arena.ArenaHandler;
 import me.glaremasters.guilds.challenges.ChallengeHandler;
 import me.glaremasters.guilds.conf.GuildBuffSettings;
 import me.glaremasters.guilds.configuration.SettingsHandler;
+import me.glaremasters.guilds.configuration.sections.CooldownSettings;
 import me.glaremasters.guilds.configuration.sections.HooksSettings;
 import me.glaremasters.guilds.configuration.sections.PluginSettings;
 import me.glaremasters.guilds.configuration.sections.StorageSettings;
 import me.glaremasters.guilds.cooldowns.CooldownHandler;
+import me.glaremasters.guilds.database.BackupManager;
 import me.glaremasters.guilds.database.DatabaseAdapter;
+import me.glaremasters.guilds.database.GuildWriteQueue;
+import me.glaremasters.guilds.database.WriteAheadLog;
 import me.glaremasters.guilds.guild.GuildHandler;
+import me.glaremasters.guilds.guild.GuildSync;
 import me.glaremasters.guilds.guis.GUIHandler;
 import me.glaremasters.guilds.listeners.ArenaListener;
 import me.glaremasters.guilds.listeners.ChatListener;
@@ -60,6 +65,7 @@ import me.glaremasters.guilds.listeners.TicketListener;
 import me.glaremasters.guilds.listeners.VaultBlacklistListener;
 import me.glaremasters.guilds.listeners.WorldGuardListener;
 import me.glaremasters.guilds.placeholders.PlaceholderAPI;
+import me.glaremasters.guilds.tasks.TimingWheel;
 import me.glaremasters.guilds.updater.UpdateChecker;
 import me.glaremasters.guilds.utils.LanguageUpdater;
 import me.glaremasters.guilds.utils.LoggingUtils;
@@ -73,6 +79,7 @@ import org.bstats.charts.SingleLineChart;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
@@ -81,6 +88,13 @@ import java.net.URL;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -104,6 +118,12 @@ public final class Guilds extends JavaPlugin {
     private Permission permissions;
     private BukkitAudiences adventure;
     private ChatListener chatListener;
+    private TimingWheel timingWheel;
+    private WriteAheadLog writeAheadLog;
+    private BackupManager backupManager;
+    private GuildSync guildSync;
+    private volatile boolean dataReady;
+    private final List<Runnable> readyTasks = new ArrayList<>();
     private static Energie energie;
 
     public static Gson getGson() {
@@ -142,13 +162,14 @@ public final class Guilds extends JavaPlugin {
     @Override
     public void onDisable() {
         if (checkVault() && economy != null) {
-            try {
-                guildHandler.saveData();
-                cooldownHandler.saveCooldowns();
-                arenaHandler.saveArenas();
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (dataReady) {
+                saveOnShutdown();
+            } else {
+                // Whatever was loaded so far is incomplete, writing it back could only lose data
+                LoggingUtils.warn("Shutting down before the data finished loading, nothing has been saved.");
+                writeAheadLog.close(false);
             }
+            backupManager.close();
             guildHandler.chatLogout();
             guildHandler.getLookupCache().clear();
             commandManager.unregisterCommands();
@@ -161,6 +182,32 @@ public final class Guilds extends JavaPlugin {
         }
     }
 
+    /**
+     * Write everything that changed and wait for it, keeping the write-ahead log if anything didn't make it.
+     */
+    private void saveOnShutdown() {
+        if (guildSync != null) {
+            guildSync.close();
+        }
+        guildHandler.saveAllData();
+        final GuildWriteQueue writeQueue = guildHandler.getWriteQueue();
+        boolean saved = true;
+        if (!writeQueue.flushAndWait(settingsHandler.getMainConf().getProperty(StorageSettings.SHUTDOWN_TIMEOUT), TimeUnit.SECONDS)) {
+            LoggingUtils.severe("Not every guild could be saved, " + writeQueue.size() + " are still waiting to be written.");
+            saved = false;
+        }
+        writeQueue.close();
+        saved &= cooldownHandler.saveCooldowns();
+        saved &= challengeHandler.flushArchives(settingsHandler.getMainConf().getProperty(StorageSettings.SHUTDOWN_TIMEOUT), TimeUnit.SECONDS);
+        // Keep the log for the next start if anything didn't make it into the database
+        writeAheadLog.close(saved);
+        try {
+            arenaHandler.saveArenas();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Implement Vault's Economy API
      */
@@ -222,29 +269,22 @@ public final class Guilds extends JavaPlugin {
 
         new LanguageUpdater(this).saveLang();
 
-        // Load data here.
-        try {
-            setDatabase(new DatabaseAdapter(this, settingsHandler.getMainConf()));
-            if (!database.isConnected()) {
-                // Jump down to the catch
-                throw new IOException("Failed to connect to Database.");
-            }
-            // Load the cooldown objects
-            cooldownHandler = new CooldownHandler(this);
-            cooldownHandler.loadCooldowns();
-            // Load the arena objects
-            arenaHandler = new ArenaHandler(this);
-            arenaHandler.loadArenas();
-            // Load the challenge handler
-            challengeHandler = new ChallengeHandler(this);
-            challengeHandler.loadChallenges();
-            // Load guildhandler with provider
-            guildHandler = new GuildHandler(this, settingsHandler.getMainConf());
-        } catch (IOException e) {
-            LoggingUtils.severe("An error occurred loading data! Stopping plugin..");
-            Bukkit.getPluginManager().disablePlugin(this);
-            return;
-        }
+        // Nothing in here touches the database yet, the data itself is loaded off the main thread below
+        final File walFolder = new File(getDataFolder(), "wal");
+        final File backupFolder = new File(getDataFolder(), "backups");
+        writeAheadLog = new WriteAheadLog(walFolder, settingsHandler.getMainConf().getProperty(StorageSettings.WAL_ENABLED),
+                settingsHandler.getMainConf().getProperty(StorageSettings.WAL_COMMIT_DELAY));
+        // Start the timers everything that expires registers into
+        timingWheel = new TimingWheel(512);
+        timingWheel.start();
+        cooldownHandler = new CooldownHandler(this);
+        arenaHandler = new ArenaHandler(this);
+        challengeHandler = new ChallengeHandler(this);
+        guildHandler = new GuildHandler(this, settingsHandler.getMainConf());
+        backupManager = new BackupManager(this, backupFolder,
+                settingsHandler.getMainConf().getProperty(StorageSettings.BACKUP_COMPRESSION_LEVEL),
+                settingsHandler.getMainConf().getProperty(StorageSettings.BACKUP_FULL_EVERY),
+                settingsHandler.getMainConf().getProperty(StorageSettings.BACKUP_RETENTION));
 
         // If they have placeholderapi, enable it.
         if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) {
@@ -260,7 +300,7 @@ public final class Guilds extends JavaPlugin {
         metrics.addCustomChart(new SimplePie("language", () -> settingsHandler.getMainConf().getProperty(PluginSettings.MESSAGES_LANGUAGE)));
 
         // Initialize the action handler for actions in the plugin
-        actionHandler = new ActionHandler();
+        actionHandler = new ActionHandler(timingWheel, settingsHandler.getMainConf().getProperty(CooldownSettings.CONFIRM_EXPIRY));
         // Load the ACF command manager
         commandManager = new PaperCommandManager(this);
         acfHandler = new ACFHandler(this, commandManager);
@@ -296,19 +336,151 @@ public final class Guilds extends JavaPlugin {
         chatListener = new ChatListener(this);
 
         LoggingUtils.info("Ready to go! That only took " + (System.currentTimeMillis() - startingTime) + "ms");
+        loadData();
         getScheduler().scheduleSyncRepeating(SchedulerType.ASYNC, task -> {
             try {
-                if (guildHandler.isMigrating()) {
+                if (!dataReady || guildHandler.isMigrating()) {
                     return;
                 }
                 guildHandler.saveData();
-                //cooldownHandler.saveCooldowns(); We are going to save on shutdown only, no need for runtime saving
                 arenaHandler.saveArenas();
-                challengeHandler.saveData();
+                checkpoint();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }, 20 * 60, (20 * 60) * settingsHandler.getMainConf().getProperty(StorageSettings.SAVE_INTERVAL));
+
+        final long backupInterval = (20L * 60) * settingsHandler.getMainConf().getProperty(StorageSettings.BACKUP_INTERVAL);
+        if (backupInterval > 0) {
+            getScheduler().scheduleSyncRepeating(SchedulerType.SYNC, task -> {
+                if (dataReady) {
+                    backupManager.scheduledBackup();
+                }
+            }, backupInterval, backupInterval);
+        }
+    }
+
+    /**
+     * Connect to the database and load everything off the main thread, the handlers that don't depend on each other
+     * in parallel. Commands and listeners are registered already and wait for {@link #isDataReady()}.
+     */
+    private void loadData() {
+        final long start = System.currentTimeMillis();
+        final ExecutorService loader = Executors.newFixedThreadPool(3, runnable -> {
+            final Thread thread = new Thread(runnable, "Guilds Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture.runAsync(() -> {
+            try {
+                connect();
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, loader).thenCompose(ignored -> CompletableFuture.allOf(
+                CompletableFuture.runAsync(cooldownHandler::loadCooldowns, loader),
+                CompletableFuture.runAsync(arenaHandler::loadArenas, loader),
+                CompletableFuture.runAsync(guildHandler::load, loader)
+        )).whenComplete((ignored, error) -> {
+            loader.shutdown();
+            newChain().sync(() -> {
+                if (!isEnabled()) {
+                    return;
+                }
+                if (error != null) {
+                    LoggingUtils.severe("An error occurred loading data! Stopping plugin..");
+                    error.printStackTrace();
+                    Bukkit.getPluginManager().disablePlugin(this);
+                    return;
+                }
+                onDataReady();
+                LoggingUtils.info("Loaded all data in " + (System.currentTimeMillis() - start) + "ms");
+            }).execute();
+        });
+    }
+
+    /**
+     * Connect to the database and bring it up to date with whatever the last run left behind.
+     *
+     * @throws IOException if the database can't be used
+     */
+    private void connect() throws IOException {
+        setDatabase(new DatabaseAdapter(this, settingsHandler.getMainConf()));
+        if (!database.isConnected()) {
+            throw new IOException("Failed to connect to Database.");
+        }
+        // Apply whatever a crash left in the write-ahead log before anything is loaded
+        final int recovered = WriteAheadLog.replay(new File(getDataFolder(), "wal"), database);
+        if (recovered > 0) {
+            LoggingUtils.info("Recovered " + recovered + " changes from the write-ahead log.");
+        }
+        // A restore that was asked for overrides anything stored since
+        final String restored = BackupManager.restorePending(new File(getDataFolder(), "backups"), database);
+        if (restored != null) {
+            LoggingUtils.info("Restored the backup " + restored + ".");
+        }
+        writeAheadLog.start();
+    }
+
+    /**
+     * Open up the plugin once everything is loaded. Runs on the main thread.
+     */
+    private void onDataReady() {
+        if (database.getGuildAdapter().isSyncing()) {
+            guildSync = new GuildSync(guildHandler, database.getGuildAdapter(), database.getServerId(),
+                    settingsHandler.getMainConf().getProperty(StorageSettings.SQL_SYNC_CHANGE_RETENTION));
+            guildSync.start(settingsHandler.getMainConf().getProperty(StorageSettings.SQL_SYNC_POLL_INTERVAL));
+            LoggingUtils.info("Synchronizing guilds with other servers as " + database.getServerId() + ".");
+        }
+        acfHandler.loadCompletionCache();
+        dataReady = true;
+        final List<Runnable> waiting = new ArrayList<>(readyTasks);
+        readyTasks.clear();
+        waiting.forEach(Runnable::run);
+    }
+
+    /**
+     * Check if the data finished loading. Until then guilds, arenas and cooldowns are empty.
+     *
+     * @return true if the data is loaded
+     */
+    public boolean isDataReady() {
+        return dataReady;
+    }
+
+    /**
+     * Run a task once the data finished loading, or right away if it has. Must be called on the main thread, the task
+     * runs on the main thread as well.
+     *
+     * @param task the task to run
+     */
+    public void whenDataReady(@NotNull Runnable task) {
+        if (dataReady) {
+            task.run();
+        } else {
+            readyTasks.add(task);
+        }
+    }
+
+    /**
+     * Seal the write-ahead log, wait until everything logged before that is stored and drop the sealed part.
+     * Cooldowns are otherwise only saved on shutdown, so they are written here as well. Challenges are only dropped
+     * from the log once they made it into the history.
+     */
+    private void checkpoint() {
+        final GuildWriteQueue writeQueue = guildHandler.getWriteQueue();
+        final long sealed = writeAheadLog.rotate();
+        if (sealed < 0) {
+            return;
+        }
+        final int timeout = settingsHandler.getMainConf().getProperty(StorageSettings.SHUTDOWN_TIMEOUT);
+        if (!writeQueue.flushAndWait(timeout, TimeUnit.SECONDS) || !challengeHandler.flushArchives(timeout, TimeUnit.SECONDS)) {
+            // Whatever failed is retried, the log stays until a later checkpoint gets everything through
+            return;
+        }
+        if (cooldownHandler.saveCooldowns()) {
+            writeAheadLog.truncate(sealed);
+        }
     }
 
     /**
@@ -397,6 +569,18 @@ public final class Guilds extends JavaPlugin {
         return this.actionHandler;
     }
 
+    public TimingWheel getTimingWheel() {
+        return this.timingWheel;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return this.writeAheadLog;
+    }
+
+    public BackupManager getBackupManager() {
+        return this.backupManager;
+    }
+
     public GUIHandler getGuiHandler() {
         return this.guiHandler;
     }
@@ -37,6 +37,7 @@ import me.glaremasters.guilds.guild.GuildChallenge;
 import me.glaremasters.guilds.guild.GuildMember;
 import me.glaremasters.guilds.guild.GuildRolePerm;
 import me.glaremasters.guilds.messages.Messages;
+import me.glaremasters.guilds.utils.LoggingUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.attribute.Attribute;
@@ -52,7 +53,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,6 +69,8 @@ import java.util.stream.Stream;
 public class ChallengeHandler {
 
     private final Set<GuildChallenge> challenges = new HashSet<>();
+    private final Map<UUID, CompletableFuture<Void>> pendingArchives = new ConcurrentHashMap<>();
+    private final Map<UUID, GuildChallenge> failedArchives = new ConcurrentHashMap<>();
     private final Guilds guilds;
 
     public ChallengeHandler(Guilds guilds) {
@@ -71,28 +78,83 @@ public class ChallengeHandler {
     }
 
     /**
-     * Called when the plugin is first enabled to load all the challenges
+     * Add a completed challenge to the history and stop keeping it in memory. Only pending and active
+     * challenges are kept here, the history is written to once per challenge.
+     *
+     * @param challenge the completed challenge
+     */
+    public void archiveChallenge(@NotNull GuildChallenge challenge) {
+        // The hash of a challenge changes as the war goes on, so it can only be found again by its id
+        removeChallenge(challenge.getId());
+        // Registered before the challenge is logged, so a checkpoint sealing the record always waits for it
+        final CompletableFuture<Void> archived = new CompletableFuture<>();
+        pendingArchives.put(challenge.getId(), archived);
+        guilds.getWriteAheadLog().logChallenge(challenge);
+        Guilds.newChain().async(() -> {
+            try {
+                guilds.getDatabase().getChallengeAdapter().archiveChallenge(challenge);
+                failedArchives.remove(challenge.getId());
+            } catch (IOException ex) {
+                LoggingUtils.warn("Failed to add challenge " + challenge.getId() + " to the history: " + ex.getMessage());
+                failedArchives.put(challenge.getId(), challenge);
+            } finally {
+                pendingArchives.remove(challenge.getId(), archived);
+                archived.complete(null);
+            }
+        }).execute();
+    }
+
+    /**
+     * Wait for the challenges that are being added to the history and retry the ones that failed before. Blocks,
+     * so don't call it from the main thread unless the server is shutting down.
+     *
+     * @param timeout how long to wait for the pending challenges
+     * @param unit    the unit of the timeout
+     * @return true if every archived challenge is in the history, false if the write-ahead log has to be kept
      */
-    public void loadChallenges() {
+    public boolean flushArchives(long timeout, @NotNull TimeUnit unit) {
         try {
-            final Set<GuildChallenge> loaded = guilds.getDatabase().getChallengeAdapter().getAllChallenges();
-            for (final GuildChallenge challenge : loaded) {
-                if (!challenge.isCompleted()) {
-                    challenge.setCompleted(true);
-                }
-                challenges.add(challenge);
+            CompletableFuture.allOf(pendingArchives.values().toArray(new CompletableFuture[0])).get(timeout, unit);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException ex) {
+            return false;
+        }
+        for (GuildChallenge challenge : new ArrayList<>(failedArchives.values())) {
+            try {
+                guilds.getDatabase().getChallengeAdapter().archiveChallenge(challenge);
+                failedArchives.remove(challenge.getId(), challenge);
+            } catch (IOException ex) {
+                LoggingUtils.warn("Failed to add challenge " + challenge.getId() + " to the history: " + ex.getMessage());
             }
-        } catch (IOException ex) {
-            ex.printStackTrace();
         }
+        return failedArchives.isEmpty();
     }
 
     /**
-     * Save the data of challenges
-     * @throws IOException
+     * Get a page of the challenges a guild took part in, newest first. This reads from the database, so don't
+     * call it from the main thread.
+     *
+     * @param guild    the guild to get the history of
+     * @param page     the page, starting at 1
+     * @param pageSize the amount of challenges per page
+     * @return the challenges on the page
+     * @throws IOException if the history couldn't be read
      */
-    public void saveData() throws IOException {
-        guilds.getDatabase().getChallengeAdapter().saveChallenges(challenges);
+    public List<GuildChallenge> getHistory(@NotNull Guild guild, int page, int pageSize) throws IOException {
+        return guilds.getDatabase().getChallengeAdapter().getHistory(guild.getId(), page, pageSize);
+    }
+
+    /**
+     * Count the challenges a guild took part in. This reads from the database, so don't call it from the main thread.
+     *
+     * @param guild the guild to count the challenges of
+     * @return the amount of challenges in the history of the guild
+     * @throws IOException if the history couldn't be read
+     */
+    public int countHistory(@NotNull Guild guild) throws IOException {
+        return guilds.getDatabase().getChallengeAdapter().countHistory(guild.getId());
     }
 
     /**
@@ -307,6 +369,8 @@ public class ChallengeHandler {
             challenge.setLoser(challenge.getChallenger());
             challenge.getDefender().getGuildScore().addWin();
             challenge.getChallenger().getGuildScore().addLoss();
+            challenge.getDefender().markDirty();
+            challenge.getChallenger().markDirty();
             return true;
         }
         if (challenge.getAliveDefenders().keySet().size() == 0) {
@@ -314,6 +378,8 @@ public class ChallengeHandler {
             challenge.setLoser(challenge.getDefender());
             challenge.getDefender().getGuildScore().addLoss();
             challenge.getChallenger().getGuildScore().addWin();
+            challenge.getDefender().markDirty();
+            challenge.getChallenger().markDirty();
             return true;
         }
         return false;
@@ -437,12 +503,8 @@ public class ChallengeHandler {
                 });
             }
             Bukkit.getPluginManager().callEvent(new GuildWarEndEvent(challenge.getChallenger(), challenge.getDefender(), challenge.getWinner()));
-            try {
-                // Save the details about the challenge
-               saveData();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            // Save the details about the challenge
+            archiveChallenge(challenge);
         }
     }
 
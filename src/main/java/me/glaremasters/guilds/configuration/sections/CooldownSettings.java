@@ -60,6 +60,18 @@ public class CooldownSettings implements SettingsHolder {
     public static final Property<Integer> WU_HOME =
             newProperty("timers.warmups.home.time", 3);
 
+    @Comment("How long (in seconds) does a player have to confirm an action before it is cancelled?")
+    public static final Property<Integer> CONFIRM_EXPIRY =
+            newProperty("timers.expiry.confirm", 60);
+
+    @Comment("How long (in seconds) does a guild invite stay valid?")
+    public static final Property<Integer> INVITE_EXPIRY =
+            newProperty("timers.expiry.invites", 86400);
+
+    @Comment("How long (in seconds) does an ally request stay valid?")
+    public static final Property<Integer> ALLY_REQUEST_EXPIRY =
+            newProperty("timers.expiry.ally-requests", 86400);
+
     private CooldownSettings() {
     }
 }
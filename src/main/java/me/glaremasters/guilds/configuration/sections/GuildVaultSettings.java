@@ -59,6 +59,15 @@ public class GuildVaultSettings implements SettingsHolder {
     public static final Property<List<String>> BLACKLIST_LORES =
             newListProperty("guis.vault.blacklist.lores", "");
 
+    @Comment({"How long (in minutes) should a vault stay loaded after nobody is looking at it anymore?",
+    "Unloaded vaults are kept in their saved form and loaded again the next time they are opened."})
+    public static final Property<Integer> CACHE_IDLE_TIME =
+            newProperty("guis.vault.cache.idle-time", 5);
+
+    @Comment("How many guilds can have their vaults loaded at once? Vaults that are being looked at are never unloaded.")
+    public static final Property<Integer> CACHE_MAX_RESIDENT =
+            newProperty("guis.vault.cache.max-resident", 100);
+
     private GuildVaultSettings() {
 
     }
@@ -32,7 +32,7 @@ import static ch.jalu.configme.properties.PropertyInitializer.newProperty;
 
 public class StorageSettings implements SettingsHolder {
 
-    @Comment("What storage method should be used? (MySQL, MariaDB, JSON, SQLite)")
+    @Comment("What storage method should be used? (MySQL, MariaDB, JSON, SQLite, Log)")
     public static final Property<String> STORAGE_TYPE =
             newProperty("storage.storage-type", "json");
 
@@ -40,6 +40,69 @@ public class StorageSettings implements SettingsHolder {
     public static final Property<Integer> SAVE_INTERVAL =
             newProperty("storage.save-interval", 1);
 
+    @Comment({"How many guilds can be waiting to be written at once?",
+            "Changes are written in the background, once this many guilds are waiting the rest is picked up on the next save interval."})
+    public static final Property<Integer> WRITE_QUEUE_CAPACITY =
+            newProperty("storage.write-queue-capacity", 10000);
+
+    @Comment({"How many threads should write guilds to the database?",
+            "Each guild is always written by the same thread. SQLite only ever uses one."})
+    public static final Property<Integer> WRITER_THREADS =
+            newProperty("storage.writer-threads", 2);
+
+    @Comment({"How much time (in milliseconds) may be spent each tick taking snapshots of changed guilds?",
+            "Guilds that don't fit in a tick are picked up on the next one."})
+    public static final Property<Integer> SNAPSHOT_BUDGET =
+            newProperty("storage.snapshot-budget", 2);
+
+    @Comment({"How long (in seconds) should the server wait for pending writes to finish when shutting down?"})
+    public static final Property<Integer> SHUTDOWN_TIMEOUT =
+            newProperty("storage.shutdown-timeout", 30);
+
+    @Comment({"Should changes also be written to a write-ahead log?",
+            "Changes are only saved every few moments, the log keeps them around in case the server crashes in between.",
+            "Anything left in the log is written to the database on the next start."})
+    public static final Property<Boolean> WAL_ENABLED =
+            newProperty("storage.wal.enabled", true);
+
+    @Comment({"How long (in milliseconds) should the write-ahead log wait for more changes before syncing them to disk?",
+            "Changes that arrive together share a single sync, 0 syncs right away."})
+    public static final Property<Integer> WAL_COMMIT_DELAY =
+            newProperty("storage.wal.commit-delay", 10);
+
+    @Comment({"How often (in minutes) should a backup be taken? Set to 0 to only take backups by command.",
+            "Backups are kept in the backups folder and can be restored with /guilds console restore."})
+    public static final Property<Integer> BACKUP_INTERVAL =
+            newProperty("storage.backups.interval", 60);
+
+    @Comment({"Every how many backups should a full backup be taken?",
+            "The backups in between only hold the guilds that changed since the backup before them."})
+    public static final Property<Integer> BACKUP_FULL_EVERY =
+            newProperty("storage.backups.full-every", 24);
+
+    @Comment({"How many full backups should be kept? Older ones are deleted together with the backups that build on them."})
+    public static final Property<Integer> BACKUP_RETENTION =
+            newProperty("storage.backups.retention", 7);
+
+    @Comment({"How much should backups be compressed? From 0 (not at all) to 9 (smallest, but slowest)."})
+    public static final Property<Integer> BACKUP_COMPRESSION_LEVEL =
+            newProperty("storage.backups.compression-level", 6);
+
+    @Comment({"How big (in megabytes) may a segment of the log storage grow before a new one is started?",
+            "Only applies to the Log storage method."})
+    public static final Property<Integer> LOG_SEGMENT_SIZE =
+            newProperty("storage.log.segment-size", 64);
+
+    @Comment({"What percentage of the sealed log segments has to be outdated records before they are compacted?",
+            "Only applies to the Log storage method."})
+    public static final Property<Integer> LOG_COMPACTION_THRESHOLD =
+            newProperty("storage.log.compaction-threshold", 50);
+
+    @Comment({"How often (in minutes) should the log storage check if it needs compacting?",
+            "Only applies to the Log storage method."})
+    public static final Property<Integer> LOG_COMPACTION_INTERVAL =
+            newProperty("storage.log.compaction-interval", 5);
+
     @Comment("Define the address for the database. (Doesn't apply to SQLite)")
     public static final Property<String> SQL_HOST =
             newProperty("storage.sql.host", "localhost");
@@ -56,6 +119,37 @@ public class StorageSettings implements SettingsHolder {
     public static final Property<String> SQL_TABLE_PREFIX =
             newProperty("storage.sql.table-prefix", "guilds_");
 
+    @Comment({"How many rows should be written per batch when saving to a SQL database?",
+            "Each batch runs in its own transaction, so a failed batch doesn't affect the rest of the save. (Doesn't apply to JSON)"})
+    public static final Property<Integer> SQL_BATCH_SIZE =
+            newProperty("storage.sql.batch-size", 500);
+
+    @Comment({"Should guilds be stored across separate tables (members, allies, invites and codes) instead of one JSON document per guild?",
+            "This lets a save only touch the rows that changed. Existing guild data is converted automatically the first time this is enabled,",
+            "the old table is kept as a backup. Make sure to take a backup first. (Doesn't apply to JSON)"})
+    public static final Property<Boolean> SQL_NORMALIZED_SCHEMA =
+            newProperty("storage.sql.normalized-schema", false);
+
+    @Comment({"Should changes be synchronized between several servers sharing the same SQL database?",
+            "Each guild gets a version that every save checks, and every save is written to a change log the other servers poll.",
+            "When two servers change the same guild at once, the changes are merged instead of one overwriting the other.",
+            "Guild vaults are not merged, the last server to save a vault wins. (Doesn't apply to JSON or the normalized schema)"})
+    public static final Property<Boolean> SQL_SYNC_ENABLED =
+            newProperty("storage.sql.sync.enabled", false);
+
+    @Comment("How often, in seconds, should the change log be checked for changes made by other servers?")
+    public static final Property<Integer> SQL_SYNC_POLL_INTERVAL =
+            newProperty("storage.sql.sync.poll-interval", 5);
+
+    @Comment({"A name that is unique to this server, used to tell its own changes apart in the change log.",
+            "Leave empty to pick a random one on every start."})
+    public static final Property<String> SQL_SYNC_SERVER_ID =
+            newProperty("storage.sql.sync.server-id", "");
+
+    @Comment("How long, in minutes, should entries be kept in the change log? A server that is offline for longer reloads on its next start anyway.")
+    public static final Property<Integer> SQL_SYNC_CHANGE_RETENTION =
+            newProperty("storage.sql.sync.change-retention", 60);
+
     @Comment("Define the credentials for the database. (Doesn't apply to SQLite)")
     public static final Property<String> SQL_USERNAME =
             newProperty("storage.sql.username", "root");
@@ -85,6 +179,21 @@ public class StorageSettings implements SettingsHolder {
     public static final Property<Integer> SQL_POOL_TIMEOUT =
             newProperty("storage.sql.pool.connection-timeout", 5000);
 
+    @Comment({"How many connections may read from SQLite at the same time?",
+            "SQLite always writes through a single connection, reads don't have to wait for it."})
+    public static final Property<Integer> SQLITE_READ_POOL_SIZE =
+            newProperty("storage.sqlite.read-pool-size", 2);
+
+    @Comment({"How careful should SQLite be about syncing to disk? (OFF, NORMAL, FULL)",
+            "NORMAL is safe against the server crashing, only a power loss may undo the last few saves."})
+    public static final Property<String> SQLITE_SYNCHRONOUS =
+            newProperty("storage.sqlite.synchronous", "NORMAL");
+
+    @Comment({"How much should SQLite cache per connection?",
+            "A positive number is the amount of pages, a negative number is the size in kilobytes."})
+    public static final Property<Integer> SQLITE_CACHE_SIZE =
+            newProperty("storage.sqlite.cache-size", -8000);
+
     private StorageSettings() {
     }
 
@@ -23,24 +23,28 @@
  */
 package me.glaremasters.guilds.cooldowns;
 
-import co.aikar.commands.lib.expiringmap.ExpirationPolicy;
-import co.aikar.commands.lib.expiringmap.ExpiringMap;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.guild.Guild;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Handles cooldowns for players and guilds.
+ *
+ * Cooldowns are indexed by type and owner, only their expiry is stored. Each cooldown registers a timer that drops
+ * it once it expires, and expired cooldowns that are read before their timer fired are dropped on the spot.
  */
 public class CooldownHandler {
-    private final ExpiringMap<UUID, Cooldown> cooldowns = ExpiringMap.builder().variableExpiration().expirationListener((key, cooldown) -> {
-    }).build();
+    private final Map<Cooldown.Type, ExpiryMap> cooldowns = new EnumMap<>(Cooldown.Type.class);
     private final Guilds guilds;
 
     /**
@@ -50,6 +54,9 @@ public class CooldownHandler {
      */
     public CooldownHandler(Guilds guilds) {
         this.guilds = guilds;
+        for (Cooldown.Type type : Cooldown.Type.values()) {
+            cooldowns.put(type, new ExpiryMap());
+        }
     }
 
     /**
@@ -72,9 +79,11 @@ public class CooldownHandler {
 
     /**
      * Saves all the cooldowns to the database.
+     *
+     * @return true if every cooldown was saved
      */
-    public void saveCooldowns() {
-        guilds.getDatabase().getCooldownAdapter().saveCooldowns(cooldowns.values());
+    public boolean saveCooldowns() {
+        return guilds.getDatabase().getCooldownAdapter().saveCooldowns(getCooldowns().values());
     }
 
     /**
@@ -85,7 +94,37 @@ public class CooldownHandler {
      * @return the {@code Cooldown} object if found, otherwise {@code null}.
      */
     public Cooldown getCooldown(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner) {
-        return cooldowns.values().stream().filter(c -> c.getCooldownType() == cooldownType && c.getCooldownOwner().equals(cooldownOwner)).findFirst().orElse(null);
+        final long expiry = getExpiry(cooldownType, cooldownOwner);
+        return expiry == 0 ? null : new Cooldown(cooldownId(cooldownType, cooldownOwner), cooldownType, cooldownOwner, expiry);
+    }
+
+    /**
+     * Get the expiry of a cooldown, dropping it if it has already expired.
+     *
+     * @param cooldownType  the type of cooldown.
+     * @param cooldownOwner the owner UUID of the cooldown.
+     * @return the expiry in milliseconds, or 0 if there is no cooldown.
+     */
+    private long getExpiry(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner) {
+        final ExpiryMap expiries = cooldowns.get(cooldownType);
+        if (expiries == null) return 0;
+        final long expiry = expiries.get(cooldownOwner);
+        if (expiry != 0 && expiry <= System.currentTimeMillis()) {
+            expiries.remove(cooldownOwner);
+            return 0;
+        }
+        return expiry;
+    }
+
+    /**
+     * Cooldowns are unique per type and owner, so their id is derived from both. This keeps the id stable between saves.
+     *
+     * @param cooldownType  the type of cooldown.
+     * @param cooldownOwner the owner UUID of the cooldown.
+     * @return the id of the cooldown.
+     */
+    public static UUID cooldownId(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner) {
+        return UUID.nameUUIDFromBytes((cooldownType.getTypeName() + ":" + cooldownOwner).getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -107,8 +146,7 @@ public class CooldownHandler {
      * @return `true` if the cooldown is still valid, `false` otherwise.
      */
     public boolean hasCooldown(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner) {
-        final Cooldown cooldown = getCooldown(cooldownType, cooldownOwner);
-        return cooldown != null && cooldown.getCooldownExpiry() > System.currentTimeMillis();
+        return getExpiry(cooldownType, cooldownOwner) != 0;
     }
 
     /**
@@ -127,12 +165,12 @@ public class CooldownHandler {
      *
      * @param cooldownType  The type of cooldown to check.
      * @param cooldownOwner The owner UUID of the cooldown.
-     * @return The remaining time in seconds.
+     * @return The remaining time in seconds, or 0 if there is no cooldown.
      */
     public int getRemaining(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner) {
-        final int int1 = Integer.parseInt(String.format("%d", TimeUnit.MILLISECONDS.toSeconds(getCooldown(cooldownType, cooldownOwner).getCooldownExpiry())));
-        final int int2 = Integer.parseInt(String.format("%d", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())));
-        return int1 - int2;
+        final long expiry = getExpiry(cooldownType, cooldownOwner);
+        if (expiry == 0) return 0;
+        return (int) (expiry / 1000 - System.currentTimeMillis() / 1000);
     }
 
     /**
@@ -168,8 +206,10 @@ public class CooldownHandler {
      * @param timeUnit      The time unit of the `length` parameter.
      */
     public void addCooldown(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner, final int length, @NotNull final TimeUnit timeUnit) {
-        final Cooldown cooldown = new Cooldown(UUID.randomUUID(), cooldownType, cooldownOwner, (System.currentTimeMillis() + timeUnit.toMillis(length)));
-        cooldowns.put(cooldown.getCooldownId(), cooldown, ExpirationPolicy.CREATED, length, timeUnit);
+        final long expiry = System.currentTimeMillis() + timeUnit.toMillis(length);
+        putCooldown(cooldownType, cooldownOwner, expiry);
+        // Cooldowns are only saved on shutdown, the log keeps them across a crash
+        guilds.getWriteAheadLog().logCooldown(cooldownType, cooldownOwner, expiry);
     }
 
     /**
@@ -178,12 +218,45 @@ public class CooldownHandler {
      * @param cooldown The cooldown to add.
      */
     private void addCooldown(@NotNull final Cooldown cooldown) {
-        final long remainingSeconds = cooldown.getCooldownExpiry() - System.currentTimeMillis();
-        if (remainingSeconds < 0) return;
-        cooldowns.put(cooldown.getCooldownId(), cooldown, ExpirationPolicy.CREATED, TimeUnit.MILLISECONDS.toSeconds(remainingSeconds), TimeUnit.SECONDS);
+        if (cooldown.getCooldownExpiry() <= System.currentTimeMillis()) return;
+        putCooldown(cooldown.getCooldownType(), cooldown.getCooldownOwner(), cooldown.getCooldownExpiry());
+    }
+
+    /**
+     * Store a cooldown and register the timer that drops it.
+     *
+     * @param cooldownType  The type of cooldown.
+     * @param cooldownOwner The owner UUID of the cooldown.
+     * @param expiry        The time the cooldown expires at in milliseconds.
+     */
+    private void putCooldown(@NotNull final Cooldown.Type cooldownType, @NotNull final UUID cooldownOwner, final long expiry) {
+        final ExpiryMap expiries = cooldowns.get(cooldownType);
+        expiries.put(cooldownOwner, expiry);
+        // A timer of a cooldown that was replaced in the meantime finds a later expiry and leaves it alone
+        guilds.getTimingWheel().schedule(() -> {
+            final long current = expiries.get(cooldownOwner);
+            if (current != 0 && current <= System.currentTimeMillis()) {
+                expiries.remove(cooldownOwner);
+            }
+        }, expiry - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     }
 
-    public ExpiringMap<UUID, Cooldown> getCooldowns() {
-        return cooldowns;
+    /**
+     * Get every cooldown that hasn't expired yet, keyed by their id. Expired cooldowns are dropped along the way.
+     *
+     * @return the active cooldowns.
+     */
+    public Map<UUID, Cooldown> getCooldowns() {
+        final long now = System.currentTimeMillis();
+        final Map<UUID, Cooldown> active = new HashMap<>();
+        for (Map.Entry<Cooldown.Type, ExpiryMap> entry : cooldowns.entrySet()) {
+            final Cooldown.Type type = entry.getKey();
+            entry.getValue().removeExpired(now);
+            entry.getValue().forEach((owner, expiry) -> {
+                final UUID id = cooldownId(type, owner);
+                active.put(id, new Cooldown(id, type, owner, expiry));
+            });
+        }
+        return active;
     }
 }
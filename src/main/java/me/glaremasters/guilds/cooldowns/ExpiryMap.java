@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.cooldowns;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * An open addressing map from UUIDs to expiry timestamps that keeps keys and values in primitive arrays,
+ * so lookups don't box or allocate.
+ *
+ * Collisions are resolved with linear probing and removals shift the following entries back, so there are no tombstones.
+ */
+final class ExpiryMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] most;
+    private long[] least;
+    private long[] expiries;
+    private boolean[] used;
+    private int size;
+
+    ExpiryMap() {
+        allocate(16);
+    }
+
+    private void allocate(final int capacity) {
+        most = new long[capacity];
+        least = new long[capacity];
+        expiries = new long[capacity];
+        used = new boolean[capacity];
+        size = 0;
+    }
+
+    private int slot(final long msb, final long lsb) {
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 32;
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 33) & (used.length - 1);
+    }
+
+    private int find(final long msb, final long lsb) {
+        int slot = slot(msb, lsb);
+        while (used[slot]) {
+            if (most[slot] == msb && least[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & (used.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Get the expiry stored for a key.
+     *
+     * @param key the key to look up
+     * @return the expiry, or 0 if there is none
+     */
+    synchronized long get(@NotNull final UUID key) {
+        final int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        return slot < 0 ? 0 : expiries[slot];
+    }
+
+    synchronized void put(@NotNull final UUID key, final long expiry) {
+        insert(key.getMostSignificantBits(), key.getLeastSignificantBits(), expiry);
+    }
+
+    private void insert(final long msb, final long lsb, final long expiry) {
+        if (size + 1 > used.length * LOAD_FACTOR) {
+            resize(used.length * 2);
+        }
+        int slot = slot(msb, lsb);
+        while (used[slot]) {
+            if (most[slot] == msb && least[slot] == lsb) {
+                expiries[slot] = expiry;
+                return;
+            }
+            slot = (slot + 1) & (used.length - 1);
+        }
+        used[slot] = true;
+        most[slot] = msb;
+        least[slot] = lsb;
+        expiries[slot] = expiry;
+        size++;
+    }
+
+    synchronized void remove(@NotNull final UUID key) {
+        int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0) return;
+        final int mask = used.length - 1;
+        // Shift later entries of the same probe run back so lookups never stop at a hole early
+        int next = (slot + 1) & mask;
+        while (used[next]) {
+            final int home = slot(most[next], least[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                most[slot] = most[next];
+                least[slot] = least[next];
+                expiries[slot] = expiries[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[slot] = false;
+        size--;
+    }
+
+    /**
+     * Drop every entry that expired before the given time.
+     *
+     * @param now the current time in milliseconds
+     */
+    synchronized void removeExpired(final long now) {
+        final long[] oldMost = most;
+        final long[] oldLeast = least;
+        final long[] oldExpiries = expiries;
+        final boolean[] oldUsed = used;
+        allocate(oldUsed.length);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i] && oldExpiries[i] > now) {
+                insert(oldMost[i], oldLeast[i], oldExpiries[i]);
+            }
+        }
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldMost = most;
+        final long[] oldLeast = least;
+        final long[] oldExpiries = expiries;
+        final boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                insert(oldMost[i], oldLeast[i], oldExpiries[i]);
+            }
+        }
+    }
+
+    synchronized void forEach(@NotNull final EntryConsumer consumer) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                consumer.accept(new UUID(most[i], least[i]), expiries[i]);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(@NotNull UUID key, long expiry);
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.database.challenges.ArchivedChallenge;
+import me.glaremasters.guilds.database.challenges.ChallengeAdapter;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildChallenge;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates and restores backups of all plugin data.
+ *
+ * A backup is an export of the data rather than a copy of the storage files, so it's the same for every backend and
+ * can't catch a file halfway through a save. Guilds are snapshotted on the main thread, everything else is written on
+ * a dedicated thread straight into a zip archive on a {@link FileChannel}, which is synced and moved into place once
+ * it's complete.
+ *
+ * A full backup holds everything. An incremental backup only holds the guilds that changed since the backup before
+ * it, which is found by comparing a hash of every guild with the manifest of that backup, along with the war history
+ * archived since. The history is picked up from the position the last challenge in that backup had in it, which only
+ * grows as challenges are archived, so a challenge that was sent earlier but archived later isn't skipped. Arenas and
+ * cooldowns are small and part of every backup. Restoring happens on the next start, before anything is loaded, so
+ * nothing that is still in memory can overwrite it.
+ */
+public final class BackupManager {
+    private static final String EXTENSION = ".zip";
+    private static final String MANIFEST = "manifest.json";
+    private static final String PENDING_RESTORE = "restore.pending";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Gson GSON = new Gson();
+
+    private final Guilds guilds;
+    private final File folder;
+    private final int compressionLevel;
+    private final int fullEvery;
+    private final int retention;
+    private final ExecutorService executor;
+
+    private Manifest last;
+    private int sinceFull;
+
+    /**
+     * @param guilds           the plugin
+     * @param folder           the folder to keep the backups in
+     * @param compressionLevel the zip compression level, from 0 to 9
+     * @param fullEvery        how many backups are taken before the next one is a full backup again
+     * @param retention        how many full backups are kept, together with their incremental backups
+     */
+    public BackupManager(@NotNull Guilds guilds, @NotNull File folder, int compressionLevel, int fullEvery, int retention) {
+        this.guilds = guilds;
+        this.folder = folder;
+        this.compressionLevel = Math.max(0, Math.min(9, compressionLevel));
+        this.fullEvery = Math.max(1, fullEvery);
+        this.retention = Math.max(1, retention);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Guilds Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadLast();
+    }
+
+    /**
+     * Take a backup. Must be called on the main thread, the archive itself is written in the background.
+     *
+     * @param full whether to take a full backup, otherwise it's only a full backup when it's time for one
+     * @return the finished archive
+     */
+    public CompletableFuture<File> backup(boolean full) {
+        final List<Guild> snapshots = guilds.getGuildHandler().snapshotGuilds();
+        final List<Arena> arenas = new ArrayList<>(guilds.getArenaHandler().getArenas());
+        final List<Cooldown> cooldowns = new ArrayList<>(guilds.getCooldownHandler().getCooldowns().values());
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return write(full, snapshots, arenas, cooldowns);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+        }, executor);
+    }
+
+    /**
+     * Take a scheduled backup and log the outcome. Must be called on the main thread.
+     */
+    public void scheduledBackup() {
+        if (guilds.getGuildHandler().isMigrating()) {
+            return;
+        }
+        backup(false).whenComplete((file, ex) -> {
+            if (ex != null) {
+                LoggingUtils.warn("Failed to create a backup: " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Get the names of the backups that can be restored, oldest first.
+     *
+     * @return the names of the backups
+     */
+    public List<String> getBackupNames() {
+        final List<String> names = new ArrayList<>();
+        for (File file : listBackups(folder)) {
+            names.add(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+        }
+        return names;
+    }
+
+    /**
+     * Mark a backup to be restored on the next start. The backups it builds on have to exist as well.
+     *
+     * @param name the name of the backup
+     * @return true if the backup and every backup it builds on were found
+     * @throws IOException if the backups couldn't be read
+     */
+    public boolean scheduleRestore(@NotNull String name) throws IOException {
+        if (resolveChain(folder, name) == null) {
+            return false;
+        }
+        Files.write(new File(folder, PENDING_RESTORE).toPath(), name.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Stop the backup thread, waiting for a backup that is being written.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LoggingUtils.warn("Timed out while waiting for a backup to be written.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private File write(boolean full, @NotNull List<Guild> snapshots, @NotNull List<Arena> arenas,
+                         @NotNull List<Cooldown> cooldowns) throws IOException {
+        Files.createDirectories(folder.toPath());
+        final boolean incremental = !full && last != null && sinceFull < fullEvery - 1;
+        final String name = "guilds-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date())
+                + (incremental ? "-incremental" : "-full");
+        final Path target = new File(folder, name + EXTENSION).toPath();
+        final Path temp = new File(folder, name + EXTENSION + ".tmp").toPath();
+
+        final Manifest manifest = new Manifest();
+        manifest.incremental = incremental;
+        manifest.base = incremental ? last.name : null;
+        manifest.name = name;
+        manifest.created = System.currentTimeMillis();
+
+        int changed = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            zip.setLevel(compressionLevel);
+
+            for (Guild guild : snapshots) {
+                final String json = GSON.toJson(guild, Guild.class);
+                final String hash = Hashing.sha256().hashString(json, StandardCharsets.UTF_8).toString();
+                manifest.guilds.put(guild.getId().toString(), hash);
+                if (incremental && hash.equals(last.guilds.get(guild.getId().toString()))) {
+                    continue;
+                }
+                writeEntry(zip, "guilds/" + guild.getId() + ".json", json);
+                changed++;
+            }
+            writeEntry(zip, "arenas.json", GSON.toJson(arenas));
+            writeEntry(zip, "cooldowns.json", GSON.toJson(cooldowns));
+            manifest.historyPosition = writeHistory(zip, incremental ? last.historyPosition : 0);
+            writeEntry(zip, MANIFEST, GSON.toJson(manifest));
+
+            zip.finish();
+            zip.flush();
+            channel.force(true);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        last = manifest;
+        sinceFull = incremental ? sinceFull + 1 : 0;
+        LoggingUtils.info("Created " + (incremental ? "an incremental" : "a full") + " backup with " + changed + " guilds: " + target.getFileName());
+        rotate();
+        return target.toFile();
+    }
+
+    /**
+     * Write the war history archived after the given position, one challenge per line.
+     *
+     * @return the position of the last challenge in the history
+     */
+    private long writeHistory(@NotNull ZipOutputStream zip, long after) throws IOException {
+        final ChallengeAdapter history = guilds.getDatabase().getChallengeAdapter();
+        final int pageSize = Math.max(1, guilds.getDatabase().getBatchSize());
+        zip.putNextEntry(new ZipEntry("history.jsonl"));
+        long position = after;
+        List<ArchivedChallenge> page;
+        do {
+            page = history.getHistorySince(position, pageSize);
+            for (ArchivedChallenge archived : page) {
+                zip.write((GSON.toJson(archived.getChallenge(), GuildChallenge.class) + "\n").getBytes(StandardCharsets.UTF_8));
+                position = archived.getPosition();
+            }
+        } while (page.size() == pageSize);
+        zip.closeEntry();
+        return position;
+    }
+
+    private static void writeEntry(@NotNull ZipOutputStream zip, @NotNull String name, @NotNull String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    /**
+     * Delete the oldest backups once there are more full backups than should be kept. Incremental backups go
+     * together with the full backup they build on.
+     */
+    private void rotate() {
+        final List<File> backups = listBackups(folder);
+        int fulls = 0;
+        for (int i = backups.size() - 1; i >= 0; i--) {
+            final File backup = backups.get(i);
+            if (fulls >= retention) {
+                if (!backup.delete()) {
+                    LoggingUtils.warn("Failed to delete the old backup " + backup.getName());
+                }
+            } else if (isFull(backup)) {
+                fulls++;
+            }
+        }
+    }
+
+    /**
+     * Pick up the manifest of the newest backup, so the next backup can build on it after a restart.
+     */
+    private void loadLast() {
+        final List<File> backups = listBackups(folder);
+        for (int i = backups.size() - 1; i >= 0; i--) {
+            try {
+                last = readManifest(backups.get(i));
+                if (!last.incremental) {
+                    return;
+                }
+                sinceFull++;
+            } catch (IOException ex) {
+                LoggingUtils.warn("Failed to read the backup " + backups.get(i).getName() + ", the next backup will be a full backup: " + ex.getMessage());
+                last = null;
+                return;
+            }
+        }
+        // Ran out of backups before finding a full one
+        last = null;
+    }
+
+    /**
+     * Restore the backup that was marked to be restored, if any. Runs on startup before anything is loaded.
+     *
+     * @param folder   the folder the backups are kept in
+     * @param database the database to restore into
+     * @return the name of the restored backup, or null if nothing had to be restored
+     * @throws IOException if the backup couldn't be restored
+     */
+    @Nullable
+    public static String restorePending(@NotNull File folder, @NotNull DatabaseAdapter database) throws IOException {
+        final File pending = new File(folder, PENDING_RESTORE);
+        if (!pending.exists()) {
+            return null;
+        }
+        final String name = new String(Files.readAllBytes(pending.toPath()), StandardCharsets.UTF_8).trim();
+        final List<File> chain = resolveChain(folder, name);
+        if (chain == null) {
+            throw new IOException("The backup " + name + " or one it builds on is missing");
+        }
+
+        final Map<String, String> guildData = new LinkedHashMap<>();
+        String arenas = "[]";
+        String cooldowns = "[]";
+        final List<String> history = new ArrayList<>();
+        Manifest manifest = null;
+        for (File file : chain) {
+            try (ZipFile zip = new ZipFile(file)) {
+                manifest = GSON.fromJson(readEntry(zip, MANIFEST), Manifest.class);
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (entry.getName().startsWith("guilds/")) {
+                        final String id = entry.getName().substring("guilds/".length(), entry.getName().length() - ".json".length());
+                        guildData.put(id, readEntry(zip, entry.getName()));
+                    }
+                }
+                arenas = readEntry(zip, "arenas.json");
+                cooldowns = readEntry(zip, "cooldowns.json");
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(zip.getEntry("history.jsonl")), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            history.add(line);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Only the guilds that existed when the last backup in the chain was taken are restored
+        final Set<String> keep = new HashSet<>(manifest.guilds.keySet());
+        final List<Guild> restored = new ArrayList<>();
+        for (Map.Entry<String, String> entry : guildData.entrySet()) {
+            if (keep.contains(entry.getKey())) {
+                restored.add(GSON.fromJson(entry.getValue(), Guild.class));
+            }
+        }
+        for (String id : database.getGuildAdapter().getAllGuildIds()) {
+            if (!keep.contains(id)) {
+                database.getGuildAdapter().deleteGuild(id);
+            }
+        }
+        if (!database.getGuildAdapter().saveGuilds(restored).isEmpty()) {
+            throw new IOException("Not every guild in the backup could be restored");
+        }
+        if (!database.getArenaAdapter().saveArenas(GSON.<List<Arena>>fromJson(arenas, new TypeToken<List<Arena>>() {}.getType()))) {
+            throw new IOException("Not every arena in the backup could be restored");
+        }
+        if (!database.getCooldownAdapter().saveCooldowns(GSON.<List<Cooldown>>fromJson(cooldowns, new TypeToken<List<Cooldown>>() {}.getType()))) {
+            throw new IOException("Not every cooldown in the backup could be restored");
+        }
+        for (String challenge : history) {
+            database.getChallengeAdapter().archiveChallenge(GSON.fromJson(challenge, GuildChallenge.class));
+        }
+
+        Files.delete(pending.toPath());
+        return name;
+    }
+
+    /**
+     * Find the backups that have to be read to restore the given one, starting with its full backup.
+     *
+     * @return the backups in the order they apply, or null if one is missing
+     */
+    @Nullable
+    private static List<File> resolveChain(@NotNull File folder, @NotNull String name) throws IOException {
+        final List<File> chain = new ArrayList<>();
+        String current = name;
+        while (current != null) {
+            final File file = new File(folder, current + EXTENSION);
+            if (!file.exists()) {
+                return null;
+            }
+            chain.add(0, file);
+            current = readManifest(file).base;
+        }
+        return chain;
+    }
+
+    private static Manifest readManifest(@NotNull File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            return GSON.fromJson(readEntry(zip, MANIFEST), Manifest.class);
+        }
+    }
+
+    private static String readEntry(@NotNull ZipFile zip, @NotNull String name) throws IOException {
+        final ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new IOException(zip.getName() + " is missing " + name);
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static boolean isFull(@NotNull File backup) {
+        return backup.getName().endsWith("-full" + EXTENSION);
+    }
+
+    private static List<File> listBackups(@NotNull File folder) {
+        final File[] files = folder.listFiles((dir, name) -> name.startsWith("guilds-") && name.endsWith(EXTENSION));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        final List<File> backups = new ArrayList<>(Arrays.asList(files));
+        // The timestamp in the name sorts the same way as the time it was taken
+        backups.sort(Comparator.comparing(File::getName));
+        return backups;
+    }
+
+    /**
+     * Describes a backup: which backup it builds on, a hash of every guild that existed when it was taken and the
+     * position of the last challenge in the war history at that time.
+     */
+    private static final class Manifest {
+        private String name;
+        private String base;
+        private boolean incremental;
+        private long created;
+        private long historyPosition;
+        private Map<String, String> guilds = new HashMap<>();
+    }
+}
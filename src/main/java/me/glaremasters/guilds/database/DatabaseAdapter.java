@@ -30,15 +30,17 @@ import me.glaremasters.guilds.database.arenas.ArenaAdapter;
 import me.glaremasters.guilds.database.challenges.ChallengeAdapter;
 import me.glaremasters.guilds.database.cooldowns.CooldownAdapter;
 import me.glaremasters.guilds.database.guild.GuildAdapter;
+import me.glaremasters.guilds.database.log.LogStorage;
 import me.glaremasters.guilds.utils.LoggingUtils;
-import org.bukkit.Bukkit;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.UUID;
 
 /**
  * A class that implements the DatabaseAdapter interface.
  * This class is responsible for creating and managing various adapters to access the data stored in the backend database.
- * The backend database can be either JSON or SQL (MySQL, SQLite, MariaDB).
+ * The backend database can be either JSON, an append-only log or SQL (MySQL, SQLite, MariaDB).
  */
 public final class DatabaseAdapter implements AutoCloseable {
     private final Guilds guilds;
@@ -49,7 +51,9 @@ public final class DatabaseAdapter implements AutoCloseable {
     private ArenaAdapter arenaAdapter;
     private CooldownAdapter cooldownAdapter;
     private DatabaseManager databaseManager;
+    private LogStorage logStorage;
     private String sqlTablePrefix;
+    private String serverId;
 
     /**
      * Creates a new instance of the DatabaseAdapter class.
@@ -93,6 +97,7 @@ public final class DatabaseAdapter implements AutoCloseable {
      */
     public boolean isConnected() {
         return getBackend() == DatabaseBackend.JSON ||
+                (getBackend() == DatabaseBackend.LOG && logStorage != null) ||
                 (databaseManager != null && databaseManager.isConnected());
     }
 
@@ -103,7 +108,7 @@ public final class DatabaseAdapter implements AutoCloseable {
         String backendName = settings.getProperty(StorageSettings.STORAGE_TYPE).toLowerCase();
         DatabaseBackend backend = DatabaseBackend.getByBackendName(backendName);
         if (databaseManager != null && !databaseManager.isConnected()) {
-            databaseManager = new DatabaseManager(settings, backend);
+            databaseManager = new DatabaseManager(settings, backend, guilds.getDataFolder());
         }
     }
 
@@ -114,7 +119,10 @@ public final class DatabaseAdapter implements AutoCloseable {
     public void close() {
         if (databaseManager != null && databaseManager.isConnected()) {
             // TODO: do you want to save the guilds here?
-            databaseManager.getHikari().close();
+            databaseManager.close();
+        }
+        if (logStorage != null) {
+            logStorage.close();
         }
     }
 
@@ -142,10 +150,58 @@ public final class DatabaseAdapter implements AutoCloseable {
         return databaseManager;
     }
 
+    public LogStorage getLogStorage() {
+        return logStorage;
+    }
+
     public String getSqlTablePrefix() {
         return sqlTablePrefix;
     }
 
+    /**
+     * Returns how many rows should be written per batch when saving.
+     *
+     * @return the configured batch size, at least 1
+     */
+    public int getBatchSize() {
+        return Math.max(1, settings.getProperty(StorageSettings.SQL_BATCH_SIZE));
+    }
+
+    /**
+     * Returns whether guilds should be stored across relational tables rather than one document per guild.
+     *
+     * @return true if the normalized schema is enabled
+     */
+    public boolean isNormalizedSchema() {
+        return settings.getProperty(StorageSettings.SQL_NORMALIZED_SCHEMA);
+    }
+
+    /**
+     * Returns whether guild changes should be synchronized with other servers sharing the database.
+     *
+     * @return true if synchronization is enabled
+     */
+    public boolean isSyncEnabled() {
+        return settings.getProperty(StorageSettings.SQL_SYNC_ENABLED);
+    }
+
+    /**
+     * Returns the name this server writes to the change log. Without a configured name a random one is picked
+     * once per start.
+     *
+     * @return the id of this server
+     */
+    public String getServerId() {
+        if (serverId == null) {
+            final String configured = settings.getProperty(StorageSettings.SQL_SYNC_SERVER_ID).trim();
+            serverId = configured.isEmpty() ? UUID.randomUUID().toString() : configured;
+            if (serverId.length() > 64) {
+                serverId = serverId.substring(0, 64);
+            }
+        }
+        return serverId;
+    }
+
     /**
      * Creates a clone of the current `DatabaseAdapter` with the given `DatabaseBackend`.
      *
@@ -173,8 +229,13 @@ public final class DatabaseAdapter implements AutoCloseable {
     private void setUpBackend(DatabaseBackend backend) throws IOException {
         if (isConnected()) return;
 
-        if (backend != DatabaseBackend.JSON) {
-            this.databaseManager = new DatabaseManager(settings, backend);
+        if (backend == DatabaseBackend.LOG) {
+            this.logStorage = new LogStorage(new File(guilds.getDataFolder(), "log"),
+                    settings.getProperty(StorageSettings.LOG_SEGMENT_SIZE) * 1024L * 1024L,
+                    settings.getProperty(StorageSettings.LOG_COMPACTION_THRESHOLD) / 100.0,
+                    settings.getProperty(StorageSettings.LOG_COMPACTION_INTERVAL));
+        } else if (backend != DatabaseBackend.JSON) {
+            this.databaseManager = new DatabaseManager(settings, backend, guilds.getDataFolder());
             this.sqlTablePrefix = this.settings.getProperty(StorageSettings.SQL_TABLE_PREFIX).toLowerCase();
         }
 
@@ -196,9 +257,10 @@ public final class DatabaseAdapter implements AutoCloseable {
             this.cooldownAdapter = new CooldownAdapter(guilds, this);
             this.cooldownAdapter.createContainer();
         } catch (Exception ex) {
+            // Set up off the main thread while enabling, so the caller decides whether to shut down
             LoggingUtils.severe("There was an issue setting up the backend database. Shutting down to prevent further issues. If you are using MySQL, make sure your database server is on the latest version!");
             ex.printStackTrace();
-            Bukkit.getServer().getPluginManager().disablePlugin(guilds);
+            throw new IOException("Failed to set up the " + backend.getBackendName() + " backend", ex);
         }
     }
 }
@@ -25,44 +25,63 @@ package me.glaremasters.guilds.database;
 
 import me.glaremasters.guilds.database.arenas.ArenaProvider;
 import me.glaremasters.guilds.database.arenas.provider.ArenaJsonProvider;
+import me.glaremasters.guilds.database.arenas.provider.ArenaLogProvider;
 import me.glaremasters.guilds.database.arenas.provider.ArenaMariaDBProvider;
 import me.glaremasters.guilds.database.arenas.provider.ArenaMySQLProvider;
 import me.glaremasters.guilds.database.arenas.provider.ArenaSQLiteProvider;
 import me.glaremasters.guilds.database.challenges.ChallengeProvider;
 import me.glaremasters.guilds.database.challenges.provider.ChallengeJsonProvider;
+import me.glaremasters.guilds.database.challenges.provider.ChallengeLogProvider;
 import me.glaremasters.guilds.database.challenges.provider.ChallengeMariaDBProvider;
 import me.glaremasters.guilds.database.challenges.provider.ChallengeMySQLProvider;
 import me.glaremasters.guilds.database.challenges.provider.ChallengeSQLiteProvider;
 import me.glaremasters.guilds.database.cooldowns.CooldownProvider;
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownJsonProvider;
+import me.glaremasters.guilds.database.cooldowns.provider.CooldownLogProvider;
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownMariaDBProvider;
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownMySQLProvider;
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownSQLiteProvider;
 import me.glaremasters.guilds.database.guild.GuildProvider;
+import me.glaremasters.guilds.database.guild.GuildSyncProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildJsonProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildLogProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildMariaDBProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildMySQLProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildSQLiteProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildSyncMariaDBProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildSyncMySQLProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildSyncSQLiteProvider;
+import me.glaremasters.guilds.database.vaults.VaultProvider;
+import me.glaremasters.guilds.database.vaults.provider.VaultJsonProvider;
+import me.glaremasters.guilds.database.vaults.provider.VaultLogProvider;
+import me.glaremasters.guilds.database.vaults.provider.VaultMariaDBProvider;
+import me.glaremasters.guilds.database.vaults.provider.VaultMySQLProvider;
+import me.glaremasters.guilds.database.vaults.provider.VaultSQLiteProvider;
 
 import java.util.Arrays;
 
 public enum DatabaseBackend {
-    JSON("json", GuildJsonProvider.class, ChallengeJsonProvider.class, ArenaJsonProvider.class, CooldownJsonProvider.class),
-    MYSQL("mysql", GuildMySQLProvider.class, ChallengeMySQLProvider.class, ArenaMySQLProvider.class, CooldownMySQLProvider.class),
-    SQLITE("sqlite", GuildSQLiteProvider.class, ChallengeSQLiteProvider.class, ArenaSQLiteProvider.class, CooldownSQLiteProvider.class),
-    MARIADB("mariadb", GuildMariaDBProvider.class, ChallengeMariaDBProvider.class, ArenaMariaDBProvider.class, CooldownMariaDBProvider.class);
+    JSON("json", GuildJsonProvider.class, ChallengeJsonProvider.class, ArenaJsonProvider.class, CooldownJsonProvider.class, VaultJsonProvider.class, null),
+    MYSQL("mysql", GuildMySQLProvider.class, ChallengeMySQLProvider.class, ArenaMySQLProvider.class, CooldownMySQLProvider.class, VaultMySQLProvider.class, GuildSyncMySQLProvider.class),
+    SQLITE("sqlite", GuildSQLiteProvider.class, ChallengeSQLiteProvider.class, ArenaSQLiteProvider.class, CooldownSQLiteProvider.class, VaultSQLiteProvider.class, GuildSyncSQLiteProvider.class),
+    MARIADB("mariadb", GuildMariaDBProvider.class, ChallengeMariaDBProvider.class, ArenaMariaDBProvider.class, CooldownMariaDBProvider.class, VaultMariaDBProvider.class, GuildSyncMariaDBProvider.class),
+    LOG("log", GuildLogProvider.class, ChallengeLogProvider.class, ArenaLogProvider.class, CooldownLogProvider.class, VaultLogProvider.class, null);
     private final String backendName;
     private final Class<? extends GuildProvider> guildProvider;
     private final Class<? extends ChallengeProvider> challengeProvider;
     private final Class<? extends ArenaProvider> arenaProvider;
     private final Class<? extends CooldownProvider> cooldownProvider;
+    private final Class<? extends VaultProvider> vaultProvider;
+    private final Class<? extends GuildSyncProvider> guildSyncProvider;
 
-    DatabaseBackend(String backendName, Class<? extends GuildProvider> guildProvider, Class<? extends ChallengeProvider> challengeProvider, Class<? extends ArenaProvider> arenaProvider, Class<? extends CooldownProvider> cooldownProvider) {
+    DatabaseBackend(String backendName, Class<? extends GuildProvider> guildProvider, Class<? extends ChallengeProvider> challengeProvider, Class<? extends ArenaProvider> arenaProvider, Class<? extends CooldownProvider> cooldownProvider, Class<? extends VaultProvider> vaultProvider, Class<? extends GuildSyncProvider> guildSyncProvider) {
         this.backendName = backendName;
         this.guildProvider = guildProvider;
         this.challengeProvider = challengeProvider;
         this.arenaProvider = arenaProvider;
         this.cooldownProvider = cooldownProvider;
+        this.vaultProvider = vaultProvider;
+        this.guildSyncProvider = guildSyncProvider;
     }
 
     public String getBackendName() {
@@ -85,6 +104,19 @@ public enum DatabaseBackend {
         return cooldownProvider;
     }
 
+    public Class<? extends VaultProvider> getVaultProvider() {
+        return vaultProvider;
+    }
+
+    /**
+     * Get the provider that keeps guilds in sync between servers sharing the database.
+     *
+     * @return the provider, or null if the backend can't be shared
+     */
+    public Class<? extends GuildSyncProvider> getGuildSyncProvider() {
+        return guildSyncProvider;
+    }
+
     public static DatabaseBackend getByBackendName(String backendName) {
         return Arrays.stream(values()).filter(n -> n.backendName.equals(backendName.toLowerCase())).findFirst().orElse(null);
     }
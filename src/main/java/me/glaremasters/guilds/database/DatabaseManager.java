@@ -27,15 +27,23 @@ import ch.jalu.configme.SettingsManager;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import me.glaremasters.guilds.configuration.sections.StorageSettings;
+import me.glaremasters.guilds.utils.LoggingUtils;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.sqlobject.SqlObjectPlugin;
 
+import java.io.File;
+
 /**
  * A class for managing the database connection using JDBI and HikariDataSource.
+ *
+ * SQLite only allows a single writer, so it gets a pool with one connection that everything writes through and a
+ * separate small pool for reads. Both run in WAL journal mode, which lets the readers go on while the writer commits.
  */
 public class DatabaseManager {
     private Jdbi jdbi;
     private HikariDataSource hikari;
+    private Jdbi readJdbi;
+    private HikariDataSource readHikari;
     private String dataSourceName;
 
     /**
@@ -43,8 +51,14 @@ public class DatabaseManager {
      *
      * @param settingsManager the settings manager that provides the database connection information
      * @param backend         the type of database backend to use
+     * @param dataFolder      the folder the SQLite database is kept in
      */
-    public DatabaseManager(SettingsManager settingsManager, DatabaseBackend backend) {
+    public DatabaseManager(SettingsManager settingsManager, DatabaseBackend backend, File dataFolder) {
+        if (backend == DatabaseBackend.SQLITE) {
+            setUpSqlite(settingsManager, new File(dataFolder, "guilds.db"));
+            return;
+        }
+
         // Create a new HikariConfig object
         HikariConfig config = new HikariConfig();
         config.setMaximumPoolSize(settingsManager.getProperty(StorageSettings.SQL_POOL_SIZE));
@@ -74,10 +88,6 @@ public class DatabaseManager {
                     config.addDataSourceProperty("characterEncoding", "utf8");
                 }
                 break;
-            case SQLITE:
-                config.setPoolName("Guilds SQLite Connection Pool");
-                config.setJdbcUrl("jdbc:sqlite:plugins/Guilds/guilds.db");
-                break;
             case MARIADB:
                 config.setPoolName("Guilds MariaDB Connection Pool");
                 config.setDataSourceClassName("org.mariadb.jdbc.MariaDbDataSource");
@@ -109,6 +119,70 @@ public class DatabaseManager {
         this.hikari = hikari;
     }
 
+    /**
+     * Set up the single writer connection and the read pool for SQLite.
+     *
+     * @param settingsManager the settings manager that provides the pragmas
+     * @param database        the database file
+     * @throws IllegalStateException if either pool can't be opened, startup can't go on without them
+     */
+    private void setUpSqlite(SettingsManager settingsManager, File database) {
+        final HikariConfig writer = sqliteConfig(settingsManager, database);
+        writer.setPoolName("Guilds SQLite Writer");
+        writer.setMaximumPoolSize(1);
+        writer.setMinimumIdle(1);
+
+        final HikariConfig reader = sqliteConfig(settingsManager, database);
+        reader.setPoolName("Guilds SQLite Read Pool");
+        reader.setMaximumPoolSize(Math.max(1, settingsManager.getProperty(StorageSettings.SQLITE_READ_POOL_SIZE)));
+        reader.setMinimumIdle(1);
+
+        // The writer goes first so it can switch the file over to WAL mode before anyone reads
+        final HikariDataSource hikari;
+        try {
+            hikari = new HikariDataSource(writer);
+        } catch (Exception ex) {
+            LoggingUtils.severe("Failed to open the SQLite database " + database.getName() + ": " + ex.getMessage());
+            throw new IllegalStateException("Failed to open the SQLite writer connection", ex);
+        }
+        final HikariDataSource readHikari;
+        try {
+            readHikari = new HikariDataSource(reader);
+        } catch (Exception ex) {
+            LoggingUtils.severe("Failed to open the SQLite read pool for " + database.getName() + ": " + ex.getMessage());
+            hikari.close();
+            throw new IllegalStateException("Failed to open the SQLite read pool", ex);
+        }
+
+        jdbi = Jdbi.create(hikari);
+        jdbi.installPlugin(new SqlObjectPlugin());
+        readJdbi = Jdbi.create(readHikari);
+        readJdbi.installPlugin(new SqlObjectPlugin());
+
+        this.hikari = hikari;
+        this.readHikari = readHikari;
+    }
+
+    /**
+     * Create the config shared by both SQLite pools. The pragmas are passed on to the driver, which applies them to
+     * every connection it opens.
+     *
+     * @param settingsManager the settings manager that provides the pragmas
+     * @param database        the database file
+     * @return the config
+     */
+    private HikariConfig sqliteConfig(SettingsManager settingsManager, File database) {
+        final HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + database.getAbsolutePath());
+        config.setConnectionTimeout(settingsManager.getProperty(StorageSettings.SQL_POOL_TIMEOUT));
+        config.addDataSourceProperty("journal_mode", "WAL");
+        config.addDataSourceProperty("synchronous", settingsManager.getProperty(StorageSettings.SQLITE_SYNCHRONOUS).toUpperCase());
+        config.addDataSourceProperty("cache_size", String.valueOf(settingsManager.getProperty(StorageSettings.SQLITE_CACHE_SIZE)));
+        // Wait for the lock instead of failing right away when a checkpoint holds it
+        config.addDataSourceProperty("busy_timeout", String.valueOf(settingsManager.getProperty(StorageSettings.SQL_POOL_TIMEOUT)));
+        return config;
+    }
+
     /**
      * Helper method to try a data source until the right one is found
      *
@@ -144,10 +218,31 @@ public class DatabaseManager {
         return hikari != null && hikari.isRunning();
     }
 
+    /**
+     * Close the connection pools.
+     */
+    public void close() {
+        if (readHikari != null) {
+            readHikari.close();
+        }
+        if (hikari != null) {
+            hikari.close();
+        }
+    }
+
     public Jdbi getJdbi() {
         return jdbi;
     }
 
+    /**
+     * Get the Jdbi instance to read through. This is the read pool for SQLite and the regular pool otherwise.
+     *
+     * @return the Jdbi instance for reads
+     */
+    public Jdbi getReadJdbi() {
+        return readJdbi != null ? readJdbi : jdbi;
+    }
+
     public HikariDataSource getHikari() {
         return hikari;
     }
@@ -0,0 +1,465 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.database.challenges.ArchivedChallenge;
+import me.glaremasters.guilds.database.challenges.ChallengeAdapter;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildChallenge;
+import me.glaremasters.guilds.utils.FileUtils;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Copies all data from one database into another.
+ *
+ * Guilds, arenas, cooldowns and the war history are copied at the same time, each in batches. After every batch the
+ * position is written to a checkpoint file, so a migration that fails can pick up where it left off the next time it
+ * is started for the same backend. Once everything is copied the target is read back and every record is compared by
+ * a hash of its content. Records that are missing or differ are copied once more, if they still don't match the
+ * migration fails and the old database stays in use.
+ */
+public final class DatabaseMigration {
+    private static final long PROGRESS_INTERVAL = 5000;
+    private static final Gson GSON = new Gson();
+
+    /**
+     * The kinds of data that are migrated.
+     */
+    public enum Step {
+        GUILDS("guilds"),
+        ARENAS("arenas"),
+        COOLDOWNS("cooldowns"),
+        HISTORY("war history");
+
+        private final String displayName;
+
+        Step(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Receives progress updates. Called from the migration threads.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void progress(@NotNull Step step, long done, long total, long perSecond);
+    }
+
+    /**
+     * Thrown when the target doesn't hold the same data as the source after copying.
+     */
+    public static final class VerificationException extends IOException {
+        private final Step step;
+
+        private VerificationException(Step step, String message) {
+            super(message);
+            this.step = step;
+        }
+
+        public Step getStep() {
+            return step;
+        }
+    }
+
+    private final DatabaseAdapter source;
+    private final DatabaseAdapter target;
+    private final File checkpointFile;
+    private final int batchSize;
+    private final Listener listener;
+    private final JsonObject checkpoint;
+    private final boolean resumed;
+
+    /**
+     * @param source         the database that is in use right now
+     * @param target         the database to migrate to
+     * @param checkpointFile the file to keep the progress in
+     * @param batchSize      the amount of records written at once
+     * @param listener       receives progress updates
+     * @throws IOException if an existing checkpoint couldn't be read
+     */
+    public DatabaseMigration(@NotNull DatabaseAdapter source, @NotNull DatabaseAdapter target, @NotNull File checkpointFile,
+                             int batchSize, @NotNull Listener listener) throws IOException {
+        this.source = source;
+        this.target = target;
+        this.checkpointFile = checkpointFile;
+        this.batchSize = Math.max(1, batchSize);
+        this.listener = listener;
+
+        final JsonObject saved = readCheckpoint();
+        // A checkpoint only applies to the backend it was written for
+        this.resumed = saved != null && target.getBackend().getBackendName().equals(saved.get("backend").getAsString());
+        this.checkpoint = resumed ? saved : new JsonObject();
+        this.checkpoint.addProperty("backend", target.getBackend().getBackendName());
+    }
+
+    /**
+     * @return true if this migration continues from a checkpoint
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Copy and verify everything. The guilds, arenas and cooldowns are passed in since the ones in memory are newer
+     * than what's in the source database, the history is read from the source database.
+     *
+     * @param guilds    snapshots of every guild
+     * @param arenas    every arena
+     * @param cooldowns every active cooldown
+     * @throws IOException if anything couldn't be copied or verified, the checkpoint is kept in that case
+     */
+    public void run(@NotNull List<Guild> guilds, @NotNull Collection<Arena> arenas, @NotNull Collection<Cooldown> cooldowns) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Step.values().length, new NamedThreadFactory());
+        try {
+            final List<Future<?>> steps = new ArrayList<>();
+            steps.add(executor.submit(() -> migrateGuilds(guilds)));
+            steps.add(executor.submit(() -> migrateArenas(new ArrayList<>(arenas))));
+            steps.add(executor.submit(() -> migrateCooldowns(new ArrayList<>(cooldowns))));
+            steps.add(executor.submit(this::migrateHistory));
+            for (Future<?> step : steps) {
+                step.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while migrating", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Failed to migrate", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        Files.deleteIfExists(checkpointFile.toPath());
+    }
+
+    private Void migrateGuilds(@NotNull List<Guild> guilds) throws IOException {
+        final Function<Guild, String> hash = guild -> hash(guild.getId() + GSON.toJson(guild, Guild.class));
+        final List<Guild> sorted = sortById(guilds, guild -> guild.getId().toString());
+        copyById(Step.GUILDS, sorted, guild -> guild.getId().toString(), this::saveGuilds);
+
+        final Map<String, Guild> byId = new HashMap<>();
+        sorted.forEach(guild -> byId.put(guild.getId().toString(), guild));
+        verify(Step.GUILDS, hashes(sorted, guild -> guild.getId().toString(), hash),
+                () -> hashes(target.getGuildAdapter().getAllGuilds(), guild -> guild.getId().toString(), hash),
+                ids -> saveGuilds(select(ids, byId)));
+        return null;
+    }
+
+    private void saveGuilds(@NotNull List<Guild> batch) throws IOException {
+        if (!target.getGuildAdapter().saveGuilds(batch).isEmpty()) {
+            throw new IOException("Failed to save a batch of guilds");
+        }
+    }
+
+    private Void migrateArenas(@NotNull List<Arena> arenas) throws IOException {
+        final Function<Arena, String> hash = arena -> hash(arena.getId() + GSON.toJson(arena, Arena.class));
+        // Saving arenas drops the ones that aren't part of the save, so they can't be split up. There are only a few.
+        if (checkpoint.has(Step.ARENAS.name())) {
+            report(Step.ARENAS, arenas.size(), arenas.size(), 0);
+        } else {
+            saveArenas(arenas);
+            savePosition(Step.ARENAS, "done");
+            report(Step.ARENAS, arenas.size(), arenas.size(), 0);
+        }
+        verify(Step.ARENAS, hashes(arenas, arena -> arena.getId().toString(), hash),
+                () -> hashes(target.getArenaAdapter().getAllArenas(), arena -> arena.getId().toString(), hash),
+                ids -> saveArenas(arenas));
+        return null;
+    }
+
+    private void saveArenas(@NotNull List<Arena> arenas) throws IOException {
+        if (!target.getArenaAdapter().saveArenas(arenas)) {
+            throw new IOException("Failed to save the arenas");
+        }
+    }
+
+    private Void migrateCooldowns(@NotNull List<Cooldown> cooldowns) throws IOException {
+        // Some databases only keep the expiry to the second, so only the owner and type are compared
+        final Function<Cooldown, String> key = cooldown -> cooldown.getCooldownType().getTypeName() + ":" + cooldown.getCooldownOwner();
+        final List<Cooldown> sorted = sortById(cooldowns, key);
+        copyById(Step.COOLDOWNS, sorted, key, batch -> {
+            if (!target.getCooldownAdapter().saveCooldowns(batch)) {
+                throw new IOException("Failed to save a batch of cooldowns");
+            }
+        });
+
+        final Map<String, Cooldown> byKey = new HashMap<>();
+        sorted.forEach(cooldown -> byKey.put(key.apply(cooldown), cooldown));
+        final long now = System.currentTimeMillis();
+        verify(Step.COOLDOWNS, hashes(sorted, key, key),
+                () -> {
+                    // Cooldowns that ran out in the meantime don't matter
+                    final List<Cooldown> copied = new ArrayList<>(target.getCooldownAdapter().getAllCooldowns());
+                    copied.removeIf(cooldown -> cooldown.getCooldownExpiry() < now && !byKey.containsKey(key.apply(cooldown)));
+                    return hashes(copied, key, key);
+                },
+                ids -> target.getCooldownAdapter().saveCooldowns(select(ids, byKey)));
+        return null;
+    }
+
+    private Void migrateHistory() throws IOException {
+        final Function<GuildChallenge, String> hash = challenge -> hash(GSON.toJson(challenge, GuildChallenge.class));
+        final ChallengeAdapter from = source.getChallengeAdapter();
+        final ChallengeAdapter to = target.getChallengeAdapter();
+        // Challenges are only ever appended, so resuming only needs the position of the last one that was copied
+        long position = checkpoint.has(Step.HISTORY.name()) ? Long.parseLong(checkpoint.get(Step.HISTORY.name()).getAsString()) : 0;
+        int done = position > 0 ? to.countAllHistory() : 0;
+        final Progress progress = new Progress(Step.HISTORY, from.countAllHistory(), done);
+        List<ArchivedChallenge> page;
+        do {
+            page = from.getHistorySince(position, batchSize);
+            for (ArchivedChallenge archived : page) {
+                to.archiveChallenge(archived.getChallenge());
+            }
+            if (!page.isEmpty()) {
+                position = page.get(page.size() - 1).getPosition();
+                savePosition(Step.HISTORY, String.valueOf(position));
+            }
+            done += page.size();
+            progress.update(done);
+        } while (page.size() == batchSize);
+        progress.finish();
+
+        // Only the hashes are kept, the challenges that don't match are read from the source again
+        verify(Step.HISTORY, readHistory(from, hash), () -> readHistory(to, hash), ids -> {
+            for (GuildChallenge challenge : from.getHistory(ids)) {
+                to.archiveChallenge(challenge);
+            }
+        });
+        return null;
+    }
+
+    private Map<String, String> readHistory(@NotNull ChallengeAdapter adapter, @NotNull Function<GuildChallenge, String> hash) throws IOException {
+        final Map<String, String> hashes = new HashMap<>();
+        long position = 0;
+        List<ArchivedChallenge> page;
+        do {
+            page = adapter.getHistorySince(position, batchSize);
+            for (ArchivedChallenge archived : page) {
+                hashes.put(archived.getChallenge().getId().toString(), hash.apply(archived.getChallenge()));
+                position = archived.getPosition();
+            }
+        } while (page.size() == batchSize);
+        return hashes;
+    }
+
+    /**
+     * Copy records in batches in the order of their id, skipping the ones a previous attempt already copied.
+     */
+    private <T> void copyById(@NotNull Step step, @NotNull List<T> sorted, @NotNull Function<T, String> id, @NotNull BatchWriter<T> writer) throws IOException {
+        final String last = checkpoint.has(step.name()) ? checkpoint.get(step.name()).getAsString() : null;
+        int start = 0;
+        if (last != null) {
+            while (start < sorted.size() && id.apply(sorted.get(start)).compareTo(last) <= 0) {
+                start++;
+            }
+        }
+        final Progress progress = new Progress(step, sorted.size(), start);
+        for (int i = start; i < sorted.size(); i += batchSize) {
+            final List<T> batch = sorted.subList(i, Math.min(i + batchSize, sorted.size()));
+            writer.write(batch);
+            savePosition(step, id.apply(batch.get(batch.size() - 1)));
+            progress.update(i + batch.size());
+        }
+        progress.finish();
+    }
+
+    /**
+     * Compare the records in the target with the source. Records that are missing or differ are written again once.
+     */
+    private void verify(@NotNull Step step, @NotNull Map<String, String> expected, @NotNull HashReader actual,
+                        @NotNull BatchWriter<String> repair) throws IOException {
+        List<String> mismatched = mismatched(expected, actual.read());
+        if (!mismatched.isEmpty()) {
+            LoggingUtils.warn("Copying " + mismatched.size() + " " + step.getDisplayName() + " again that didn't match after the migration.");
+            for (int i = 0; i < mismatched.size(); i += batchSize) {
+                repair.write(mismatched.subList(i, Math.min(i + batchSize, mismatched.size())));
+            }
+        }
+        final Map<String, String> copied = actual.read();
+        mismatched = mismatched(expected, copied);
+        if (!mismatched.isEmpty()) {
+            throw new VerificationException(step, mismatched.size() + " " + step.getDisplayName() + " don't match in the new database");
+        }
+        if (copied.size() != expected.size()) {
+            throw new VerificationException(step, "The new database holds " + copied.size() + " " + step.getDisplayName()
+                    + " instead of " + expected.size());
+        }
+    }
+
+    private static List<String> mismatched(@NotNull Map<String, String> expected, @NotNull Map<String, String> actual) {
+        final List<String> mismatched = new ArrayList<>();
+        expected.forEach((id, hash) -> {
+            if (!hash.equals(actual.get(id))) {
+                mismatched.add(id);
+            }
+        });
+        return mismatched;
+    }
+
+    private static <T> Map<String, String> hashes(@NotNull Collection<T> records, @NotNull Function<T, String> id, @NotNull Function<T, String> hash) {
+        final Map<String, String> hashes = new HashMap<>(records.size() * 2);
+        for (T record : records) {
+            hashes.put(id.apply(record), hash.apply(record));
+        }
+        return hashes;
+    }
+
+    private static <T> List<T> sortById(@NotNull Collection<T> records, @NotNull Function<T, String> id) {
+        final List<T> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparing(id));
+        return sorted;
+    }
+
+    private static <T> List<T> select(@NotNull List<String> ids, @NotNull Map<String, T> records) {
+        final List<T> selected = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            selected.add(records.get(id));
+        }
+        return selected;
+    }
+
+    private String hash(@NotNull String content) {
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+    }
+
+    private JsonObject readCheckpoint() throws IOException {
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        try {
+            return JsonParser.parseString(new String(Files.readAllBytes(checkpointFile.toPath()), StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (RuntimeException ex) {
+            LoggingUtils.warn("Ignoring the migration checkpoint since it couldn't be read: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private void savePosition(@NotNull Step step, @NotNull String position) throws IOException {
+        final byte[] data;
+        synchronized (checkpoint) {
+            checkpoint.addProperty(step.name(), position);
+            data = GSON.toJson(checkpoint).getBytes(StandardCharsets.UTF_8);
+        }
+        synchronized (this) {
+            FileUtils.writeAtomically(checkpointFile.toPath(), data);
+        }
+    }
+
+    private void report(@NotNull Step step, long done, long total, long perSecond) {
+        try {
+            listener.progress(step, done, total, perSecond);
+        } catch (RuntimeException ex) {
+            LoggingUtils.warn("Failed to report the migration progress: " + ex.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter<T> {
+        void write(@NotNull List<T> batch) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface HashReader {
+        Map<String, String> read() throws IOException;
+    }
+
+    /**
+     * Reports the progress of a step every few seconds along with the records written per second.
+     */
+    private final class Progress {
+        private final Step step;
+        private final long total;
+        private final long started = System.currentTimeMillis();
+        private final long initial;
+        private long lastReport = started;
+        private long done;
+
+        private Progress(Step step, long total, long initial) {
+            this.step = step;
+            this.total = total;
+            this.initial = initial;
+            this.done = initial;
+        }
+
+        private void update(long done) {
+            this.done = done;
+            final long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL) {
+                lastReport = now;
+                report(step, done, total, rate(now));
+            }
+        }
+
+        private void finish() {
+            report(step, done, total, rate(System.currentTimeMillis()));
+        }
+
+        private long rate(long now) {
+            return (done - initial) * 1000 / Math.max(1, now - started);
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Guilds Migration #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database;
+
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildHandler;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A write-behind queue that persists guild snapshots on dedicated writer threads.
+ *
+ * Only snapshots taken on the main thread are queued, so serializing and writing never touches a guild that is
+ * still being modified. Repeated writes of the same guild are coalesced into the latest snapshot until a writer picks
+ * it up. Guilds are partitioned over the writers by id, so writes of the same guild always happen in order.
+ * A writer backs off before retrying when the database fails so a broken connection doesn't spin.
+ */
+public final class GuildWriteQueue {
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+
+    private enum Operation {
+        SAVE, DELETE
+    }
+
+    private static final class PendingWrite {
+        private final Operation operation;
+        private final Guild snapshot;
+
+        private PendingWrite(Operation operation, @Nullable Guild snapshot) {
+            this.operation = operation;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private final Guilds guilds;
+    private final GuildHandler guildHandler;
+    private final int capacity;
+    private final int batchSize;
+    private final Writer[] writers;
+
+    private final Map<UUID, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final Object idleLock = new Object();
+
+    private volatile boolean running;
+
+    public GuildWriteQueue(@NotNull Guilds guilds, @NotNull GuildHandler guildHandler, int capacity, int batchSize, int threads) {
+        this.guilds = guilds;
+        this.guildHandler = guildHandler;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.writers = new Writer[Math.max(1, threads)];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Writer(i);
+        }
+    }
+
+    /**
+     * Start the writer threads.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        for (Writer writer : writers) {
+            writer.thread.start();
+        }
+    }
+
+    /**
+     * Check if the queue reached its capacity. Callers should hold on to further changes until there's room again.
+     *
+     * @return true if no more guilds should be queued
+     */
+    public boolean isFull() {
+        return pending.size() >= capacity;
+    }
+
+    /**
+     * Queue a snapshot of a guild to be saved. A pending snapshot of the same guild is replaced.
+     *
+     * @param snapshot the snapshot to write, see {@link Guild#snapshot()}
+     */
+    public void enqueueSave(@NotNull Guild snapshot) {
+        enqueue(snapshot.getId(), new PendingWrite(Operation.SAVE, snapshot));
+    }
+
+    /**
+     * Queue a guild to be deleted. Deletes win over a pending save of the same guild.
+     *
+     * @param id the id of the guild
+     */
+    public void enqueueDelete(@NotNull UUID id) {
+        enqueue(id, new PendingWrite(Operation.DELETE, null));
+    }
+
+    private void enqueue(@NotNull UUID id, @NotNull PendingWrite write) {
+        final boolean[] added = new boolean[1];
+        pending.compute(id, (key, current) -> {
+            if (current == null) {
+                added[0] = true;
+                return write;
+            }
+            return current.operation == Operation.DELETE ? current : write;
+        });
+        if (added[0]) {
+            outstanding.incrementAndGet();
+            writers[Math.floorMod(id.hashCode(), writers.length)].order.offer(id);
+        }
+    }
+
+    /**
+     * Check if a guild is waiting to be written.
+     *
+     * @param id the id of the guild
+     * @return true if a save or delete of the guild is queued
+     */
+    public boolean isPending(@NotNull UUID id) {
+        return pending.containsKey(id);
+    }
+
+    /**
+     * Get the amount of guilds waiting to be written.
+     *
+     * @return the amount of queued writes
+     */
+    public int size() {
+        return outstanding.get();
+    }
+
+    /**
+     * Wait until every queued write has been handled. A failed write is only retried later, so the queue can drain
+     * without it, which is why failures while waiting count as not flushed.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if the queue was drained in time and no batch failed while waiting
+     */
+    public boolean flushAndWait(long timeout, @NotNull TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final long failed = failedBatches.get();
+        synchronized (idleLock) {
+            while (outstanding.get() > 0) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0 || !running) {
+                    return outstanding.get() == 0 && failedBatches.get() == failed;
+                }
+                try {
+                    idleLock.wait(remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return failedBatches.get() == failed;
+    }
+
+    /**
+     * Stop the writer threads. Call {@link #flushAndWait(long, TimeUnit)} first to not lose queued writes.
+     */
+    public void close() {
+        running = false;
+        for (Writer writer : writers) {
+            writer.thread.interrupt();
+        }
+        for (Writer writer : writers) {
+            try {
+                writer.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Write a batch of queued guilds. Guilds that fail are flagged dirty again so a fresh snapshot gets queued.
+     *
+     * @param batch the ids to write
+     * @return true if everything was written
+     */
+    private boolean write(@NotNull List<UUID> batch) {
+        final List<Guild> saves = new ArrayList<>();
+        final List<UUID> deletes = new ArrayList<>();
+        for (UUID id : batch) {
+            final PendingWrite write = pending.remove(id);
+            if (write == null) {
+                continue;
+            }
+            if (write.operation == Operation.DELETE) {
+                deletes.add(id);
+            } else {
+                saves.add(write.snapshot);
+            }
+        }
+
+        boolean success = true;
+        if (!saves.isEmpty()) {
+            List<Guild> failed;
+            try {
+                failed = guilds.getDatabase().getGuildAdapter().saveGuilds(saves);
+            } catch (Exception ex) {
+                LoggingUtils.warn("Failed to save " + saves.size() + " guilds, retrying: " + ex.getMessage());
+                failed = saves;
+            }
+            for (Guild snapshot : failed) {
+                final Guild guild = guildHandler.getGuilds().get(snapshot.getId());
+                // Only retry guilds that still exist, a removed guild has a delete queued instead
+                if (guild != null) {
+                    guild.markDirty();
+                }
+            }
+            success = failed.isEmpty();
+        }
+        for (UUID id : deletes) {
+            try {
+                guilds.getDatabase().getGuildAdapter().deleteGuild(id.toString());
+            } catch (Exception ex) {
+                LoggingUtils.warn("There was an error deleting a guild with the following uuid: " + id + ", retrying: " + ex.getMessage());
+                enqueueDelete(id);
+                success = false;
+            }
+        }
+
+        if (!success) {
+            failedBatches.incrementAndGet();
+        }
+        outstanding.addAndGet(-batch.size());
+        synchronized (idleLock) {
+            idleLock.notifyAll();
+        }
+        return success;
+    }
+
+    /**
+     * A single writer thread and the ids of the guilds partitioned to it.
+     */
+    private final class Writer implements Runnable {
+        private final BlockingQueue<UUID> order = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        private int failures;
+
+        private Writer(int index) {
+            this.thread = new Thread(this, "Guilds Storage Writer #" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    final UUID first = order.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    if (guildHandler.isMigrating()) {
+                        // The database is being swapped out, hold on to the write until it's done
+                        order.offer(first);
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+                        continue;
+                    }
+
+                    final List<UUID> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    order.drainTo(batch, batchSize - 1);
+
+                    if (write(batch)) {
+                        failures = 0;
+                    } else {
+                        failures++;
+                        Thread.sleep(Math.min(MAX_BACKOFF, 500L << Math.min(failures, 6)));
+                    }
+                } catch (InterruptedException ex) {
+                    if (!running) {
+                        break;
+                    }
+                } catch (Exception ex) {
+                    LoggingUtils.severe("The storage writer ran into an unexpected error: " + ex.getMessage());
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,544 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.cooldowns.CooldownHandler;
+import me.glaremasters.guilds.database.guild.GuildAdapter;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildChallenge;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead log that covers the time between a change and the moment it reaches the database.
+ *
+ * Guild snapshots, guild deletes, cooldowns and finished challenges are appended to the current segment as small
+ * binary records ({@code [length][crc32][type][payload]}). A single writer thread drains whatever was logged in the
+ * meantime and writes it with one {@code force}, so a burst of changes shares a single sync. On startup the segments
+ * left behind by a crash are replayed into the database before anything is loaded. A checkpoint seals the current
+ * segment, and once everything logged before it is known to be stored the sealed segments are deleted.
+ */
+public final class WriteAheadLog {
+    private static final String EXTENSION = ".wal";
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte GUILD_SAVE = 1;
+    private static final byte GUILD_DELETE = 2;
+    private static final byte COOLDOWN = 3;
+    private static final byte CHALLENGE = 4;
+
+    private static final Gson GSON = new Gson();
+    // Wakes the writer thread up on close, interrupting it instead would close the channel in the middle of a write
+    private static final Entry STOP = new Entry(null);
+
+    private final File folder;
+    private final boolean enabled;
+    private final long commitDelay;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private FileChannel channel;
+    private long segment;
+    private boolean failing;
+    private volatile boolean running;
+
+    /**
+     * @param folder      the folder to keep the segments in
+     * @param enabled     whether anything should be logged at all
+     * @param commitDelay how long (in milliseconds) to wait for more records before syncing a batch
+     */
+    public WriteAheadLog(@NotNull File folder, boolean enabled, long commitDelay) {
+        this.folder = folder;
+        this.enabled = enabled;
+        this.commitDelay = Math.max(0, commitDelay);
+        this.thread = new Thread(this::run, "Guilds Write-Ahead Log");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Open a fresh segment after the ones of a previous run and start the writer thread.
+     *
+     * @throws IOException if the segment can't be created
+     */
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(folder.toPath());
+        segment = listSegments(folder).stream().mapToLong(WriteAheadLog::segmentId).max().orElse(0) + 1;
+        channel = openSegment(segment);
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Log a guild snapshot. The snapshot is serialized on the writer thread, in the same form it's stored in, so
+     * without its vaults unless they are asked for.
+     *
+     * @param snapshot   the snapshot that was queued to be written
+     * @param withVaults whether the vaults changed since the guild was last logged and have to be logged as well
+     */
+    public void logGuild(@NotNull Guild snapshot, boolean withVaults) {
+        log(() -> {
+            final byte[] json = GuildAdapter.serialize(snapshot).getBytes(StandardCharsets.UTF_8);
+            final byte[] vaults = withVaults ? GSON.toJson(snapshot.getVaults()).getBytes(StandardCharsets.UTF_8) : null;
+            return record(GUILD_SAVE, out -> {
+                writeId(out, snapshot.getId());
+                out.writeInt(json.length);
+                out.write(json);
+                out.writeBoolean(vaults != null);
+                if (vaults != null) {
+                    out.writeInt(vaults.length);
+                    out.write(vaults);
+                }
+            });
+        });
+    }
+
+    /**
+     * Log that a guild was removed.
+     *
+     * @param id the id of the guild
+     */
+    public void logGuildDelete(@NotNull UUID id) {
+        log(() -> record(GUILD_DELETE, out -> writeId(out, id)));
+    }
+
+    /**
+     * Log a cooldown that was started.
+     *
+     * @param type   the type of the cooldown
+     * @param owner  the owner of the cooldown
+     * @param expiry when the cooldown expires in milliseconds
+     */
+    public void logCooldown(@NotNull Cooldown.Type type, @NotNull UUID owner, long expiry) {
+        log(() -> record(COOLDOWN, out -> {
+            out.writeUTF(type.getTypeName());
+            writeId(out, owner);
+            out.writeLong(expiry);
+        }));
+    }
+
+    /**
+     * Log a finished challenge that is about to be archived.
+     *
+     * @param challenge the finished challenge
+     */
+    public void logChallenge(@NotNull GuildChallenge challenge) {
+        log(() -> {
+            final byte[] json = GSON.toJson(challenge, GuildChallenge.class).getBytes(StandardCharsets.UTF_8);
+            return record(CHALLENGE, out -> {
+                out.writeInt(json.length);
+                out.write(json);
+            });
+        });
+    }
+
+    private void log(@NotNull Supplier<byte[]> record) {
+        if (running) {
+            queue.offer(new Entry(record));
+        }
+    }
+
+    /**
+     * Seal the current segment and continue in a new one. Everything logged before this call ends up in a sealed
+     * segment.
+     *
+     * @return the id of the last sealed segment, or -1 if nothing was sealed
+     */
+    public long rotate() {
+        if (!running) {
+            return -1;
+        }
+        final Entry marker = new Entry(null);
+        queue.offer(marker);
+        try {
+            if (!marker.done.await(30, TimeUnit.SECONDS)) {
+                return -1;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        return marker.sealed;
+    }
+
+    /**
+     * Delete every sealed segment up to and including the given one. Only call this once everything in them is
+     * stored in the database.
+     *
+     * @param sealed the id returned by {@link #rotate()}
+     */
+    public void truncate(long sealed) {
+        for (File file : listSegments(folder)) {
+            if (segmentId(file) <= sealed) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Write out whatever is still queued and stop the writer thread.
+     *
+     * @param checkpointed whether everything was stored, in which case the log is deleted as well
+     */
+    public void close(boolean checkpointed) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        queue.offer(STOP);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        if (checkpointed) {
+            truncate(Long.MAX_VALUE);
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                final Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                if (commitDelay > 0 && first.record != null && running) {
+                    // Give the changes of the same burst a moment to share the sync
+                    Thread.sleep(commitDelay);
+                }
+                final List<Entry> batch = new ArrayList<>();
+                batch.add(first);
+                queue.drainTo(batch);
+                writeBatch(batch);
+            } catch (InterruptedException ex) {
+                if (!running) {
+                    // Drain what's left before stopping
+                    final List<Entry> batch = new ArrayList<>();
+                    queue.drainTo(batch);
+                    writeBatch(batch);
+                }
+            } catch (Exception ex) {
+                LoggingUtils.severe("The write-ahead log ran into an unexpected error: " + ex.getMessage());
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private void writeBatch(@NotNull List<Entry> batch) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Entry entry : batch) {
+            if (entry == STOP) {
+                continue;
+            }
+            if (entry.record != null) {
+                buffer.writeBytes(entry.record.get());
+                continue;
+            }
+            // Everything before the marker goes into the segment being sealed
+            sync(buffer);
+            buffer.reset();
+            entry.sealed = segment;
+            try {
+                channel.close();
+                channel = openSegment(++segment);
+            } catch (IOException ex) {
+                LoggingUtils.severe("Failed to start a new write-ahead log segment: " + ex.getMessage());
+                entry.sealed = -1;
+            }
+            entry.done.countDown();
+        }
+        sync(buffer);
+    }
+
+    private void sync(@NotNull ByteArrayOutputStream buffer) {
+        if (buffer.size() == 0) {
+            return;
+        }
+        try {
+            final ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            failing = false;
+        } catch (IOException ex) {
+            // Saving still works without the log, so only warn once until it recovers
+            if (!failing) {
+                LoggingUtils.warn("Failed to write to the write-ahead log: " + ex.getMessage());
+                failing = true;
+            }
+        }
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        final File file = new File(folder, String.format("%012d%s", id, EXTENSION));
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replay the segments a previous run left behind into the database and delete them. Only the last state of each
+     * guild and cooldown is applied. A record that was cut off or fails its checksum ends its segment.
+     *
+     * @param folder   the folder the segments are kept in
+     * @param database the database to apply the records to
+     * @return the amount of records that were replayed
+     * @throws IOException if the records couldn't be applied, the segments are kept in that case
+     */
+    public static int replay(@NotNull File folder, @NotNull DatabaseAdapter database) throws IOException {
+        final List<File> segments = listSegments(folder);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        final Records records = read(segments);
+
+        final List<Guild> saves = new ArrayList<>();
+        for (Map.Entry<UUID, byte[]> entry : records.guilds.entrySet()) {
+            if (entry.getValue() == null) {
+                database.getGuildAdapter().deleteGuild(entry.getKey().toString());
+            } else {
+                final Guild guild = GSON.fromJson(new String(entry.getValue(), StandardCharsets.UTF_8), Guild.class);
+                final byte[] vaults = records.vaults.get(entry.getKey());
+                // Nothing is loaded yet, so a guild without vaults leaves the stored ones alone
+                if (vaults != null) {
+                    guild.setVaults(GSON.fromJson(new String(vaults, StandardCharsets.UTF_8), new TypeToken<List<String>>() {}.getType()));
+                }
+                saves.add(guild);
+            }
+        }
+        if (!database.getGuildAdapter().saveGuilds(saves).isEmpty()) {
+            throw new IOException("Not every guild in the write-ahead log could be saved");
+        }
+
+        final long now = System.currentTimeMillis();
+        final List<Cooldown> active = new ArrayList<>();
+        for (Cooldown cooldown : records.cooldowns.values()) {
+            if (cooldown.getCooldownExpiry() > now) {
+                active.add(cooldown);
+            }
+        }
+        if (!active.isEmpty() && !database.getCooldownAdapter().saveCooldowns(active)) {
+            throw new IOException("The cooldowns in the write-ahead log couldn't be saved");
+        }
+
+        // Archiving skips challenges that are in the history already
+        for (byte[] challenge : records.challenges) {
+            database.getChallengeAdapter().archiveChallenge(GSON.fromJson(new String(challenge, StandardCharsets.UTF_8), GuildChallenge.class));
+        }
+
+        segments.forEach(File::delete);
+        return records.count;
+    }
+
+    /**
+     * Read the records of the segments in a folder, oldest first. Only the last state of each guild and cooldown is
+     * kept.
+     *
+     * @param folder the folder the segments are kept in
+     * @return the records that were read
+     * @throws IOException if a segment couldn't be read
+     */
+    static Records read(@NotNull File folder) throws IOException {
+        return read(listSegments(folder));
+    }
+
+    private static Records read(@NotNull List<File> segments) throws IOException {
+        final Records records = new Records();
+        for (File file : segments) {
+            final ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            while (content.remaining() >= HEADER_SIZE) {
+                final int length = content.getInt();
+                final int checksum = content.getInt();
+                if (length <= 0 || length > content.remaining()) {
+                    break;
+                }
+                final byte[] body = new byte[length];
+                content.get(body);
+                final CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                final ByteBuffer record = ByteBuffer.wrap(body);
+                switch (record.get()) {
+                    case GUILD_SAVE:
+                        final UUID saved = readId(record);
+                        records.guilds.put(saved, readBytes(record));
+                        // Only the snapshots taken after the vaults changed carry them
+                        if (record.get() != 0) {
+                            records.vaults.put(saved, readBytes(record));
+                        }
+                        break;
+                    case GUILD_DELETE:
+                        final UUID deleted = readId(record);
+                        records.guilds.put(deleted, null);
+                        records.vaults.remove(deleted);
+                        break;
+                    case COOLDOWN:
+                        final Cooldown.Type type = Cooldown.Type.getByTypeName(readString(record));
+                        final UUID owner = readId(record);
+                        final long expiry = record.getLong();
+                        if (type != null) {
+                            records.cooldowns.put(type.getTypeName() + ":" + owner, new Cooldown(CooldownHandler.cooldownId(type, owner), type, owner, expiry));
+                        }
+                        break;
+                    case CHALLENGE:
+                        records.challenges.add(readBytes(record));
+                        break;
+                    default:
+                        continue;
+                }
+                records.count++;
+            }
+        }
+        return records;
+    }
+
+    private static List<File> listSegments(@NotNull File folder) {
+        final File[] files = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        final List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.removeIf(file -> segmentId(file) < 0);
+        segments.sort(Comparator.comparingLong(WriteAheadLog::segmentId));
+        return segments;
+    }
+
+    private static long segmentId(@NotNull File file) {
+        final String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static byte[] record(byte type, @NotNull Payload payload) {
+        try {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(body);
+            out.writeByte(type);
+            payload.write(out);
+            out.flush();
+            final byte[] bytes = body.toByteArray();
+            final CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return ByteBuffer.allocate(HEADER_SIZE + bytes.length)
+                    .putInt(bytes.length)
+                    .putInt((int) crc.getValue())
+                    .put(bytes)
+                    .array();
+        } catch (IOException ex) {
+            // Only ever writes to memory
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void writeId(@NotNull DataOutputStream out, @NotNull UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readId(@NotNull ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static byte[] readBytes(@NotNull ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(@NotNull ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface Payload {
+        void write(@NotNull DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The records read back from the segments. A guild that was removed maps to null, its vaults are the last ones
+     * that were logged for it, if any.
+     */
+    static final class Records {
+        final Map<UUID, byte[]> guilds = new LinkedHashMap<>();
+        final Map<UUID, byte[]> vaults = new HashMap<>();
+        final Map<String, Cooldown> cooldowns = new LinkedHashMap<>();
+        final List<byte[]> challenges = new ArrayList<>();
+        int count;
+    }
+
+    /**
+     * A record waiting to be written, or a marker to start a new segment when there is no record.
+     */
+    private static final class Entry {
+        private final Supplier<byte[]> record;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile long sealed = -1;
+
+        private Entry(Supplier<byte[]> record) {
+            this.record = record;
+        }
+    }
+}
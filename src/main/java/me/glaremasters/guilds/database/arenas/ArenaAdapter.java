@@ -28,19 +28,24 @@ import me.glaremasters.guilds.arena.Arena;
 import me.glaremasters.guilds.database.DatabaseAdapter;
 import me.glaremasters.guilds.database.DatabaseBackend;
 import me.glaremasters.guilds.database.arenas.provider.ArenaJsonProvider;
+import me.glaremasters.guilds.database.arenas.provider.ArenaLogProvider;
+import me.glaremasters.guilds.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class serves as an adapter between the {@link Arena} and the underlying data storage mechanism (either JSON or SQL)
  */
 public class ArenaAdapter {
     private final ArenaProvider provider;
+    private final int batchSize;
     private String sqlTablePrefix;
 
     /**
@@ -51,12 +56,16 @@ public class ArenaAdapter {
      */
     public ArenaAdapter(Guilds guilds, DatabaseAdapter adapter) {
         DatabaseBackend backend = adapter.getBackend();
+        batchSize = adapter.getBatchSize();
         switch (backend) {
             default:
             case JSON:
                 File fileDataFolder = new File(guilds.getDataFolder(), "arenas");
                 provider = new ArenaJsonProvider(fileDataFolder);
                 break;
+            case LOG:
+                provider = new ArenaLogProvider(adapter.getLogStorage().getArenas());
+                break;
             case MYSQL:
             case SQLITE:
             case MARIADB:
@@ -106,28 +115,42 @@ public class ArenaAdapter {
     }
 
     /**
-     * Saves all the arenas in the collection to the data storage backend.
+     * Saves all the arenas in the collection to the data storage backend in batches.
      * Any arena in the data storage backend that is not present in the collection will be deleted.
+     * A batch that fails is logged and the rest of the save carries on.
      *
      * @param arenas a collection of arenas to be saved
+     * @return true if every batch was saved
      * @throws IOException if an I/O error occurs
      */
-    public void saveArenas(@NotNull Collection<Arena> arenas) throws IOException {
-        List<String> savedIds = new ArrayList<>();
-
-        for (Arena arena : arenas) {
-            saveArena(arena);
-            savedIds.add(arena.getId().toString());
+    public boolean saveArenas(@NotNull Collection<Arena> arenas) throws IOException {
+        final List<Arena> toSave = new ArrayList<>(arenas);
+        final Set<String> savedIds = new HashSet<>();
+        boolean success = true;
+
+        for (int start = 0; start < toSave.size(); start += batchSize) {
+            final List<Arena> batch = toSave.subList(start, Math.min(start + batchSize, toSave.size()));
+            final List<String> ids = new ArrayList<>(batch.size());
+            final List<String> data = new ArrayList<>(batch.size());
+            for (Arena arena : batch) {
+                ids.add(arena.getId().toString());
+                data.add(Guilds.getGson().toJson(arena, Arena.class));
+            }
+            try {
+                provider.upsertArenas(sqlTablePrefix, ids, data);
+            } catch (Exception ex) {
+                LoggingUtils.warn("Failed to save a batch of " + batch.size() + " arenas: " + ex.getMessage());
+                success = false;
+            }
+            savedIds.addAll(ids);
         }
 
         for (String arenaId : getAllArenaIds()) {
-            boolean keep = savedIds.stream().anyMatch(id -> id.equals(arenaId));
-            if (!keep) {
+            if (!savedIds.contains(arenaId)) {
                 deleteArena(arenaId);
             }
         }
-
-        savedIds.clear();
+        return success;
     }
 
     /**
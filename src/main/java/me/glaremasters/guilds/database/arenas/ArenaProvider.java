@@ -101,6 +101,25 @@ public interface ArenaProvider {
      */
     void updateArena(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException;
 
+    /**
+     * Saves a batch of arenas, creating the ones that don't exist yet and updating the rest.
+     * SQL providers override this with a single batched upsert that runs in one transaction.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param ids         the ids of the arenas to save.
+     * @param data        the data of the arenas, in the same order as the ids.
+     * @throws IOException if an error occurs while saving the arenas.
+     */
+    default void upsertArenas(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data) throws IOException {
+        for (int i = 0; i < ids.size(); i++) {
+            if (arenaExists(tablePrefix, ids.get(i))) {
+                updateArena(tablePrefix, ids.get(i), data.get(i));
+            } else {
+                createArena(tablePrefix, ids.get(i), data.get(i));
+            }
+        }
+    }
+
     /**
      * Deletes an arena from the database
      *
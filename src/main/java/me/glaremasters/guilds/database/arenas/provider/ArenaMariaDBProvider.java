@@ -29,6 +29,7 @@ import me.glaremasters.guilds.database.arenas.ArenaRowMapper;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jetbrains.annotations.NotNull;
@@ -73,6 +74,10 @@ public interface ArenaMariaDBProvider extends ArenaProvider {
     @SqlUpdate("UPDATE <prefix>arena SET data = :data WHERE id = :id")
     void updateArena(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("data") @NotNull String data) throws IOException;
 
+    @Override
+    @SqlBatch("INSERT INTO <prefix>arena(id, data) VALUES (:id, :data) ON DUPLICATE KEY UPDATE data = VALUES(data)")
+    void upsertArenas(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("data") @NotNull List<String> data);
+
     @Override
     @SqlUpdate("DELETE FROM <prefix>arena WHERE id = :id")
     void deleteArena(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id) throws IOException;
@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.challenges;
+
+import me.glaremasters.guilds.guild.GuildChallenge;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A challenge in the history together with its position in it. Positions only grow in the order challenges are
+ * archived, so whatever was archived after a certain point can be read again from that position on.
+ */
+public final class ArchivedChallenge {
+    private final long position;
+    private final GuildChallenge challenge;
+
+    public ArchivedChallenge(long position, @NotNull GuildChallenge challenge) {
+        this.position = position;
+        this.challenge = challenge;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public GuildChallenge getChallenge() {
+        return challenge;
+    }
+}
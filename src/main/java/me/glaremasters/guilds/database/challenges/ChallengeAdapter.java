@@ -27,16 +27,21 @@ import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.database.DatabaseAdapter;
 import me.glaremasters.guilds.database.DatabaseBackend;
 import me.glaremasters.guilds.database.challenges.provider.ChallengeJsonProvider;
+import me.glaremasters.guilds.database.challenges.provider.ChallengeLogProvider;
 import me.glaremasters.guilds.guild.GuildChallenge;
+import me.glaremasters.guilds.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 public class ChallengeAdapter {
     private final ChallengeProvider provider;
+    private final ChallengeProvider historyReader;
     private String sqlTablePrefix;
 
     public ChallengeAdapter(Guilds guilds, DatabaseAdapter adapter) {
@@ -45,21 +50,103 @@ public class ChallengeAdapter {
             default:
             case JSON:
                 File fileDataFolder = new File(guilds.getDataFolder(), "challenges");
-                provider = new ChallengeJsonProvider(fileDataFolder);
+                provider = new ChallengeJsonProvider(fileDataFolder, new File(guilds.getDataFolder(), "challenge-history"));
+                historyReader = provider;
+                break;
+            case LOG:
+                provider = new ChallengeLogProvider(adapter.getLogStorage().getChallenges(), adapter.getLogStorage().getChallengeHistory());
+                historyReader = provider;
                 break;
             case MYSQL:
             case SQLITE:
             case MARIADB:
                 sqlTablePrefix = adapter.getSqlTablePrefix();
                 provider = adapter.getDatabaseManager().getJdbi().onDemand(backend.getChallengeProvider());
+                // History pages are read while challenges are being written, SQLite serves them from its read pool
+                historyReader = adapter.getDatabaseManager().getReadJdbi().onDemand(backend.getChallengeProvider());
                 break;
         }
     }
 
    public void createContainer() throws IOException {
         provider.createContainer(sqlTablePrefix);
+        provider.createHistoryContainer(sqlTablePrefix);
+        archiveStoredChallenges();
    }
 
+    /**
+     * Challenges used to be kept and saved again forever, and were all marked as completed when loaded.
+     * Move whatever is still stored that way into the history, once.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void archiveStoredChallenges() throws IOException {
+        final Set<GuildChallenge> stored = provider.getAllChallenges(sqlTablePrefix);
+        if (stored.isEmpty()) return;
+        for (GuildChallenge challenge : stored) {
+            challenge.setCompleted(true);
+            archiveChallenge(challenge);
+            provider.deleteChallenge(sqlTablePrefix, challenge.getId().toString());
+        }
+        LoggingUtils.info("Moved " + stored.size() + " challenges into the challenge history.");
+    }
+
+    /**
+     * Add a completed challenge to the history. Each challenge is written exactly once.
+     *
+     * @param challenge the completed challenge
+     * @throws IOException if an I/O error occurs
+     */
+    public void archiveChallenge(@NotNull GuildChallenge challenge) throws IOException {
+        provider.appendHistory(sqlTablePrefix, challenge.getId().toString(), challenge.getChallenger().getId().toString(),
+                challenge.getDefender().getId().toString(), challenge.getInitiateTime(), Guilds.getGson().toJson(challenge, GuildChallenge.class));
+    }
+
+    /**
+     * Get a page of the challenges a guild took part in, newest first.
+     *
+     * @param guild    the id of the guild
+     * @param page     the page, starting at 1
+     * @param pageSize the amount of challenges per page
+     * @return the challenges on the page
+     * @throws IOException if an I/O error occurs
+     */
+    public List<GuildChallenge> getHistory(@NotNull UUID guild, int page, int pageSize) throws IOException {
+        return historyReader.getHistory(sqlTablePrefix, guild.toString(), (Math.max(1, page) - 1) * pageSize, pageSize);
+    }
+
+    public int countHistory(@NotNull UUID guild) throws IOException {
+        return historyReader.countHistory(sqlTablePrefix, guild.toString());
+    }
+
+    public int countAllHistory() throws IOException {
+        return historyReader.countAllHistory(sqlTablePrefix);
+    }
+
+    /**
+     * Get the challenges in the history with the given ids.
+     *
+     * @param ids the ids of the challenges
+     * @return the challenges that were found, in no particular order
+     * @throws IOException if an I/O error occurs
+     */
+    public List<GuildChallenge> getHistory(@NotNull List<String> ids) throws IOException {
+        if (ids.isEmpty()) return new ArrayList<>();
+        return historyReader.getHistoryByIds(sqlTablePrefix, ids);
+    }
+
+    /**
+     * Get the challenges archived after a position in the history, in the order they were archived.
+     *
+     * @param after the position of the last challenge that was read, 0 to start at the beginning
+     * @param limit the maximum amount of challenges to return
+     * @return the challenges with their positions
+     * @throws IOException if an I/O error occurs
+     */
+    public List<ArchivedChallenge> getHistorySince(long after, int limit) throws IOException {
+        return historyReader.getHistorySince(sqlTablePrefix, after, limit);
+    }
+
     public boolean challengeExists(@NotNull String id) throws IOException {
         return provider.challengeExists(sqlTablePrefix, id);
     }
@@ -72,20 +159,6 @@ public class ChallengeAdapter {
         return provider.getChallenge(sqlTablePrefix, id);
    }
 
-   public void saveChallenges(@NotNull Set<GuildChallenge> challenges) throws IOException {
-        for (GuildChallenge challenge : challenges) {
-            saveChallenge(challenge);
-        }
-   }
-
-   public void saveChallenge(@NotNull GuildChallenge challenge) throws IOException {
-       if (!challengeExists(challenge.getId().toString())) {
-           createChallenge(challenge);
-       } else {
-           updateChallenge(challenge);
-       }
-   }
-
    public void createChallenge(@NotNull GuildChallenge challenge) throws IOException {
         provider.createChallenge(sqlTablePrefix, challenge.getId().toString(), Guilds.getGson().toJson(challenge, GuildChallenge.class));
    }
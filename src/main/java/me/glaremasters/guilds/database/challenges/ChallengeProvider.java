@@ -28,6 +28,7 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -101,4 +102,77 @@ public interface ChallengeProvider {
      */
     void deleteChallenge(@Nullable String tablePrefix, @NotNull String id) throws IOException;
 
+    /**
+     * Creates the container that holds the history of completed challenges.
+     *
+     * @param tablePrefix the prefix, if any, to use for the container's name.
+     * @throws IOException if an I/O error occurs while creating the container.
+     */
+    void createHistoryContainer(@Nullable String tablePrefix) throws IOException;
+
+    /**
+     * Adds a completed challenge to the history. The history is append only, a challenge that is already in it is left alone.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param id          the id of the challenge.
+     * @param challenger  the id of the challenging guild.
+     * @param defender    the id of the defending guild.
+     * @param initiated   the time the challenge was sent at, which the history is ordered by.
+     * @param data        the data of the challenge.
+     * @throws IOException if an I/O error occurs while adding the challenge.
+     */
+    void appendHistory(@Nullable String tablePrefix, @NotNull String id, @NotNull String challenger, @NotNull String defender, long initiated, @NotNull String data) throws IOException;
+
+    /**
+     * Gets a page of the challenges a guild took part in, newest first.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param guild       the id of the guild.
+     * @param offset      the amount of challenges to skip.
+     * @param limit       the maximum amount of challenges to return.
+     * @return the challenges on the page.
+     * @throws IOException if an I/O error occurs while reading the history.
+     */
+    List<GuildChallenge> getHistory(@Nullable String tablePrefix, @NotNull String guild, int offset, int limit) throws IOException;
+
+    /**
+     * Counts the challenges a guild took part in.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param guild       the id of the guild.
+     * @return the amount of challenges in the history of the guild.
+     * @throws IOException if an I/O error occurs while reading the history.
+     */
+    int countHistory(@Nullable String tablePrefix, @NotNull String guild) throws IOException;
+
+    /**
+     * Counts every challenge in the history.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @return the amount of challenges in the history.
+     * @throws IOException if an I/O error occurs while reading the history.
+     */
+    int countAllHistory(@Nullable String tablePrefix) throws IOException;
+
+    /**
+     * Gets the challenges in the history with the given ids. Ids that aren't in the history are skipped.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param ids         the ids of the challenges, never empty.
+     * @return the challenges that were found, in no particular order.
+     * @throws IOException if an I/O error occurs while reading the history.
+     */
+    List<GuildChallenge> getHistoryByIds(@Nullable String tablePrefix, @NotNull List<String> ids) throws IOException;
+
+    /**
+     * Gets the challenges archived after a position in the history, in the order they were archived. Unlike an
+     * offset, a position stays valid no matter when the challenges archived since were sent.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param after       the position of the last challenge that was read, 0 to start at the beginning.
+     * @param limit       the maximum amount of challenges to return.
+     * @return the challenges with their positions.
+     * @throws IOException if an I/O error occurs while reading the history.
+     */
+    List<ArchivedChallenge> getHistorySince(@Nullable String tablePrefix, long after, int limit) throws IOException;
 }
@@ -24,7 +24,9 @@
 package me.glaremasters.guilds.database.challenges.provider;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
 import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.challenges.ArchivedChallenge;
 import me.glaremasters.guilds.database.challenges.ChallengeProvider;
 import me.glaremasters.guilds.guild.GuildChallenge;
 import me.glaremasters.guilds.utils.LoggingUtils;
@@ -35,17 +37,35 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
+/**
+ * Keeps each challenge in its own file.
+ *
+ * The history is a single file that completed challenges are appended to, one per line. Each line starts with the ids
+ * of the challenge and both guilds followed by a tab and the challenge itself, so only those ids and the position of
+ * each line have to be kept in memory to serve a page. The lines are indexed by guild as well, so a page of a single
+ * guild only touches the lines on it. The position of a challenge in the history is the number of its line.
+ */
 public class ChallengeJsonProvider implements ChallengeProvider {
     private final File dataFolder;
+    private final File historyFolder;
+    private final File historyFile;
     private final Gson gson;
+    private final List<HistoryEntry> history = new ArrayList<>();
+    private final Map<String, List<HistoryEntry>> historyByGuild = new HashMap<>();
+    private final Map<String, HistoryEntry> historyById = new HashMap<>();
 
-    public ChallengeJsonProvider(File dataFolder) {
+    public ChallengeJsonProvider(File dataFolder, File historyFolder) {
         this.dataFolder = dataFolder;
+        this.historyFolder = historyFolder;
+        this.historyFile = new File(historyFolder, "history.jsonl");
         this.gson = Guilds.getGson();
     }
 
@@ -117,4 +137,141 @@ public class ChallengeJsonProvider implements ChallengeProvider {
     private void deleteChallenge(File file) {
         if (file.exists()) file.delete();
     }
+
+    @Override
+    public synchronized void createHistoryContainer(@Nullable String tablePrefix) throws IOException {
+        if (!this.historyFolder.exists()) {
+            this.historyFolder.mkdir();
+        }
+        history.clear();
+        historyByGuild.clear();
+        historyById.clear();
+        if (!historyFile.exists()) return;
+
+        final byte[] content = Files.readAllBytes(historyFile.toPath());
+        int start = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') continue;
+            indexHistoryLine(content, start, i - start);
+            start = i + 1;
+        }
+        // A line without its newline was cut off while it was being written
+        if (start < content.length) {
+            try (FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(start);
+            }
+        }
+    }
+
+    private void indexHistoryLine(byte[] content, int offset, int length) {
+        final String line = new String(content, offset, length, StandardCharsets.UTF_8);
+        final int tab = line.indexOf('\t');
+        if (tab < 0) return;
+        final String[] ids = line.substring(0, tab).split(" ");
+        if (ids.length < 3) return;
+        indexHistory(ids[0], new HistoryEntry(ids[1], ids[2], offset + tab + 1, length - tab - 1));
+    }
+
+    @Override
+    public synchronized void appendHistory(@Nullable String tablePrefix, @NotNull String id, @NotNull String challenger, @NotNull String defender, long initiated, @NotNull String data) throws IOException {
+        if (historyById.containsKey(id)) return;
+        // Parsing and printing the tree again drops the line breaks of the pretty printed data
+        final String json = JsonParser.parseString(data).toString();
+        final String header = id + " " + challenger + " " + defender + "\t";
+        final byte[] line = (header + json + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final long position = channel.size();
+            final ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            final int headerLength = header.getBytes(StandardCharsets.UTF_8).length;
+            indexHistory(id, new HistoryEntry(challenger, defender, position + headerLength, line.length - headerLength - 1));
+        }
+    }
+
+    private void indexHistory(@NotNull String id, @NotNull HistoryEntry entry) {
+        history.add(entry);
+        historyById.put(id, entry);
+        historyByGuild.computeIfAbsent(entry.challenger, k -> new ArrayList<>()).add(entry);
+        if (!entry.defender.equals(entry.challenger)) {
+            historyByGuild.computeIfAbsent(entry.defender, k -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    @Override
+    public synchronized List<GuildChallenge> getHistory(@Nullable String tablePrefix, @NotNull String guild, int offset, int limit) throws IOException {
+        final List<HistoryEntry> entries = historyByGuild.getOrDefault(guild, Collections.emptyList());
+        final List<HistoryEntry> page = new ArrayList<>();
+        for (int i = entries.size() - 1 - Math.max(0, offset); i >= 0 && page.size() < limit; i--) {
+            page.add(entries.get(i));
+        }
+        return readHistory(page);
+    }
+
+    @Override
+    public synchronized int countHistory(@Nullable String tablePrefix, @NotNull String guild) {
+        return historyByGuild.getOrDefault(guild, Collections.emptyList()).size();
+    }
+
+    @Override
+    public synchronized int countAllHistory(@Nullable String tablePrefix) {
+        return history.size();
+    }
+
+    @Override
+    public synchronized List<GuildChallenge> getHistoryByIds(@Nullable String tablePrefix, @NotNull List<String> ids) throws IOException {
+        final List<HistoryEntry> entries = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            final HistoryEntry entry = historyById.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return readHistory(entries);
+    }
+
+    @Override
+    public synchronized List<ArchivedChallenge> getHistorySince(@Nullable String tablePrefix, long after, int limit) throws IOException {
+        final int from = (int) Math.min(Math.max(0, after), history.size());
+        final List<GuildChallenge> challenges = readHistory(history.subList(from, Math.min(from + limit, history.size())));
+        final List<ArchivedChallenge> page = new ArrayList<>(challenges.size());
+        for (int i = 0; i < challenges.size(); i++) {
+            page.add(new ArchivedChallenge(from + i + 1, challenges.get(i)));
+        }
+        return page;
+    }
+
+    private List<GuildChallenge> readHistory(@NotNull List<HistoryEntry> entries) throws IOException {
+        final List<GuildChallenge> challenges = new ArrayList<>(entries.size());
+        if (entries.isEmpty()) return challenges;
+        try (FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.READ)) {
+            for (HistoryEntry entry : entries) {
+                final ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, entry.position + buffer.position()) < 0) break;
+                }
+                challenges.add(gson.fromJson(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8), GuildChallenge.class));
+            }
+        }
+        return challenges;
+    }
+
+    /**
+     * Where to find a challenge in the history file, and the guilds that took part in it.
+     */
+    private static final class HistoryEntry {
+        private final String challenger;
+        private final String defender;
+        private final long position;
+        private final int length;
+
+        private HistoryEntry(String challenger, String defender, long position, int length) {
+            this.challenger = challenger;
+            this.defender = defender;
+            this.position = position;
+            this.length = length;
+        }
+    }
 }
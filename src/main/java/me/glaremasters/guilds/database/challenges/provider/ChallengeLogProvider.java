@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.challenges.provider;
+
+import com.google.gson.Gson;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.challenges.ArchivedChallenge;
+import me.glaremasters.guilds.database.challenges.ChallengeProvider;
+import me.glaremasters.guilds.database.log.LogStore;
+import me.glaremasters.guilds.guild.GuildChallenge;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Stores each challenge as a record in an append-only log, keyed by its id.
+ *
+ * The history lives in its own log. Its keys start with the time the challenge was sent, followed by the ids of the
+ * challenge and both guilds and its position in the history, so it can be filtered and ordered from the keys alone.
+ * The keys are indexed by guild when the history is opened, so a page never has to look at the whole history.
+ */
+public class ChallengeLogProvider implements ChallengeProvider {
+    private final LogStore store;
+    private final LogStore history;
+    private final Gson gson;
+    private final Map<String, List<String>> historyByGuild = new HashMap<>();
+    private final Map<String, String> historyById = new HashMap<>();
+    private final NavigableMap<Long, String> historyByPosition = new TreeMap<>();
+
+    public ChallengeLogProvider(@NotNull LogStore store, @NotNull LogStore history) {
+        this.store = store;
+        this.history = history;
+        this.gson = Guilds.getGson();
+    }
+
+    @Override
+    public void createContainer(@Nullable String tablePrefix) {
+        // The log is opened together with the backend
+    }
+
+    @Override
+    public Set<GuildChallenge> getAllChallenges(@Nullable String tablePrefix) {
+        final Set<GuildChallenge> challenges = new HashSet<>();
+
+        for (String id : store.keys()) {
+            try {
+                GuildChallenge challenge = getChallenge(tablePrefix, id);
+                if (challenge == null) continue;
+                challenge.getId();
+                challenges.add(challenge);
+            } catch (Exception ex) {
+                LoggingUtils.severe("There was an error loading a GuildChallenge with the following uuid: " + id);
+                LoggingUtils.severe("To prevent data loss in the plugin, this GuildChallenge has been prevented from loading.");
+            }
+        }
+
+        return challenges;
+    }
+
+    @Override
+    public boolean challengeExists(@Nullable String tablePrefix, @NotNull String id) {
+        return store.contains(id);
+    }
+
+    @Override
+    public GuildChallenge getChallenge(@Nullable String tablePrefix, @NotNull String id) throws IOException {
+        final byte[] data = store.get(id);
+        return data == null ? null : gson.fromJson(new String(data, StandardCharsets.UTF_8), GuildChallenge.class);
+    }
+
+    @Override
+    public void createChallenge(@Nullable String tablePrefix, String id, String data) throws IOException {
+        store.put(id, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void updateChallenge(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
+        store.put(id, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void deleteChallenge(@Nullable String tablePrefix, @NotNull String id) throws IOException {
+        store.delete(id);
+    }
+
+    @Override
+    public synchronized void createHistoryContainer(@Nullable String tablePrefix) {
+        // The log is opened together with the backend, only the index has to be built
+        historyByGuild.clear();
+        historyById.clear();
+        historyByPosition.clear();
+        final List<String> keys = history.keys();
+        Collections.sort(keys);
+        long unnumbered = 0;
+        for (String key : keys) {
+            final String[] parts = key.split(":");
+            // Keys written before the position was added to them are numbered in the order they sort in
+            indexHistory(key, parts.length > 4 ? Long.parseLong(parts[4]) : ++unnumbered);
+        }
+    }
+
+    @Override
+    public synchronized void appendHistory(@Nullable String tablePrefix, @NotNull String id, @NotNull String challenger, @NotNull String defender, long initiated, @NotNull String data) throws IOException {
+        if (historyById.containsKey(id)) return;
+        final long position = historyByPosition.isEmpty() ? 1 : historyByPosition.lastKey() + 1;
+        final String key = String.format("%013d:%s:%s:%s:%d", initiated, id, challenger, defender, position);
+        history.put(key, data.getBytes(StandardCharsets.UTF_8));
+        indexHistory(key, position);
+    }
+
+    @Override
+    public synchronized List<GuildChallenge> getHistory(@Nullable String tablePrefix, @NotNull String guild, int offset, int limit) throws IOException {
+        final List<String> keys = historyByGuild.getOrDefault(guild, Collections.emptyList());
+        final List<String> page = new ArrayList<>();
+        for (int i = keys.size() - 1 - Math.max(0, offset); i >= 0 && page.size() < limit; i--) {
+            page.add(keys.get(i));
+        }
+        return readHistory(page);
+    }
+
+    @Override
+    public synchronized int countHistory(@Nullable String tablePrefix, @NotNull String guild) {
+        return historyByGuild.getOrDefault(guild, Collections.emptyList()).size();
+    }
+
+    @Override
+    public synchronized int countAllHistory(@Nullable String tablePrefix) {
+        return historyByPosition.size();
+    }
+
+    @Override
+    public synchronized List<GuildChallenge> getHistoryByIds(@Nullable String tablePrefix, @NotNull List<String> ids) throws IOException {
+        final List<String> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            final String key = historyById.get(id);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return readHistory(keys);
+    }
+
+    @Override
+    public synchronized List<ArchivedChallenge> getHistorySince(@Nullable String tablePrefix, long after, int limit) throws IOException {
+        final List<ArchivedChallenge> page = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : historyByPosition.tailMap(after, false).entrySet()) {
+            if (page.size() >= limit) break;
+            final byte[] data = history.get(entry.getValue());
+            if (data != null) {
+                page.add(new ArchivedChallenge(entry.getKey(), gson.fromJson(new String(data, StandardCharsets.UTF_8), GuildChallenge.class)));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Add a key of the history to the index, keeping every list ordered oldest first.
+     *
+     * @param key      the key, made up of the time, the id of the challenge, the ids of both guilds and the position
+     * @param position the position of the challenge in the history
+     */
+    private void indexHistory(@NotNull String key, long position) {
+        final String[] parts = key.split(":");
+        if (parts.length < 4) return;
+        historyByPosition.put(position, key);
+        insertSorted(historyByGuild.computeIfAbsent(parts[2], k -> new ArrayList<>()), key);
+        if (!parts[3].equals(parts[2])) {
+            insertSorted(historyByGuild.computeIfAbsent(parts[3], k -> new ArrayList<>()), key);
+        }
+        historyById.put(parts[1], key);
+    }
+
+    private static void insertSorted(@NotNull List<String> keys, @NotNull String key) {
+        final int index = Collections.binarySearch(keys, key);
+        keys.add(index < 0 ? -index - 1 : index, key);
+    }
+
+    private List<GuildChallenge> readHistory(@NotNull List<String> keys) throws IOException {
+        final List<GuildChallenge> page = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            final byte[] data = history.get(key);
+            if (data != null) {
+                page.add(gson.fromJson(new String(data, StandardCharsets.UTF_8), GuildChallenge.class));
+            }
+        }
+        return page;
+    }
+}
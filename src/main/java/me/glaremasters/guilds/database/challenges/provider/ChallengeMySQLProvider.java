@@ -23,11 +23,14 @@
  */
 package me.glaremasters.guilds.database.challenges.provider;
 
+import me.glaremasters.guilds.database.challenges.ArchivedChallenge;
+import me.glaremasters.guilds.database.challenges.ArchivedChallengeMapper;
 import me.glaremasters.guilds.database.challenges.ChallengeProvider;
 import me.glaremasters.guilds.database.challenges.ChallengeRowMapper;
 import me.glaremasters.guilds.guild.GuildChallenge;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindList;
 import org.jdbi.v3.sqlobject.customizer.Define;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
@@ -74,4 +77,51 @@ public interface ChallengeMySQLProvider extends ChallengeProvider {
     @Override
     @SqlUpdate("DELETE FROM <prefix>challenge WHERE id = :id")
     void deleteChallenge(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id) throws IOException;
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>challenge_history (\n" +
+                    "  `id` VARCHAR(36) NOT NULL,\n" +
+                    "  `challenger` VARCHAR(36) NOT NULL,\n" +
+                    "  `defender` VARCHAR(36) NOT NULL,\n" +
+                    "  `initiated` BIGINT NOT NULL,\n" +
+                    "  `data` JSON NOT NULL,\n" +
+                    "  `seq` BIGINT NOT NULL AUTO_INCREMENT,\n" +
+                    "  PRIMARY KEY (`id`),\n" +
+                    "  UNIQUE KEY `<prefix>challenge_history_seq` (`seq`),\n" +
+                    "  INDEX `<prefix>challenge_history_challenger` (`challenger`, `initiated`),\n" +
+                    "  INDEX `<prefix>challenge_history_defender` (`defender`, `initiated`));"
+    )
+    void createHistoryContainer(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate("INSERT IGNORE INTO <prefix>challenge_history(id, challenger, defender, initiated, data) VALUES (:id, :challenger, :defender, :initiated, :data)")
+    void appendHistory(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("challenger") @NotNull String challenger, @Bind("defender") @NotNull String defender, @Bind("initiated") long initiated, @Bind("data") @NotNull String data);
+
+    @Override
+    @SqlQuery("SELECT t.data FROM (" +
+            "SELECT initiated, data FROM <prefix>challenge_history WHERE challenger = :guild " +
+            "UNION ALL " +
+            "SELECT initiated, data FROM <prefix>challenge_history WHERE defender = :guild" +
+            ") t ORDER BY t.initiated DESC LIMIT :limit OFFSET :offset")
+    @RegisterRowMapper(ChallengeRowMapper.class)
+    List<GuildChallenge> getHistory(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull String guild, @Bind("offset") int offset, @Bind("limit") int limit);
+
+    @Override
+    @SqlQuery("SELECT (SELECT COUNT(*) FROM <prefix>challenge_history WHERE challenger = :guild) + (SELECT COUNT(*) FROM <prefix>challenge_history WHERE defender = :guild)")
+    int countHistory(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull String guild);
+
+    @Override
+    @SqlQuery("SELECT COUNT(*) FROM <prefix>challenge_history")
+    int countAllHistory(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT data FROM <prefix>challenge_history WHERE id IN (<ids>)")
+    @RegisterRowMapper(ChallengeRowMapper.class)
+    List<GuildChallenge> getHistoryByIds(@Define("prefix") @NotNull String prefix, @BindList("ids") @NotNull List<String> ids);
+
+    @Override
+    @SqlQuery("SELECT seq, data FROM <prefix>challenge_history WHERE seq > :after ORDER BY seq LIMIT :limit")
+    @RegisterRowMapper(ArchivedChallengeMapper.class)
+    List<ArchivedChallenge> getHistorySince(@Define("prefix") @NotNull String prefix, @Bind("after") long after, @Bind("limit") int limit);
 }
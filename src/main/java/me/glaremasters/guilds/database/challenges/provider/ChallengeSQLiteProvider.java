@@ -23,15 +23,19 @@
  */
 package me.glaremasters.guilds.database.challenges.provider;
 
+import me.glaremasters.guilds.database.challenges.ArchivedChallenge;
+import me.glaremasters.guilds.database.challenges.ArchivedChallengeMapper;
 import me.glaremasters.guilds.database.challenges.ChallengeProvider;
 import me.glaremasters.guilds.database.challenges.ChallengeRowMapper;
 import me.glaremasters.guilds.guild.GuildChallenge;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindList;
 import org.jdbi.v3.sqlobject.customizer.Define;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.List;
@@ -74,4 +78,67 @@ public interface ChallengeSQLiteProvider extends ChallengeProvider {
     @Override
     @SqlUpdate("DELETE FROM <prefix>challenge WHERE id = :id")
     void deleteChallenge(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id) throws IOException;
+
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>challenge_history (\n" +
+                    "  `id` VARCHAR(36) NOT NULL,\n" +
+                    "  `challenger` VARCHAR(36) NOT NULL,\n" +
+                    "  `defender` VARCHAR(36) NOT NULL,\n" +
+                    "  `initiated` BIGINT NOT NULL,\n" +
+                    "  `data` JSON NOT NULL,\n" +
+                    "  `seq` INTEGER NOT NULL,\n" +
+                    "  PRIMARY KEY (`id`));"
+    )
+    void createHistoryTable(@Define("prefix") @NotNull String prefix);
+
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS <prefix>challenge_history_seq ON <prefix>challenge_history(seq)")
+    void createHistorySequenceIndex(@Define("prefix") @NotNull String prefix);
+
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS <prefix>challenge_history_challenger ON <prefix>challenge_history(challenger, initiated)")
+    void createHistoryChallengerIndex(@Define("prefix") @NotNull String prefix);
+
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS <prefix>challenge_history_defender ON <prefix>challenge_history(defender, initiated)")
+    void createHistoryDefenderIndex(@Define("prefix") @NotNull String prefix);
+
+    // SQLite can't declare indexes inside CREATE TABLE, so they are created one statement at a time
+    @Override
+    default void createHistoryContainer(@Nullable String prefix) {
+        createHistoryTable(prefix);
+        createHistorySequenceIndex(prefix);
+        createHistoryChallengerIndex(prefix);
+        createHistoryDefenderIndex(prefix);
+    }
+
+    // Everything is written through a single connection, so the next sequence can't be taken twice
+    @Override
+    @SqlUpdate("INSERT OR IGNORE INTO <prefix>challenge_history(id, challenger, defender, initiated, data, seq) " +
+            "VALUES (:id, :challenger, :defender, :initiated, :data, (SELECT COALESCE(MAX(seq), 0) + 1 FROM <prefix>challenge_history))")
+    void appendHistory(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("challenger") @NotNull String challenger, @Bind("defender") @NotNull String defender, @Bind("initiated") long initiated, @Bind("data") @NotNull String data);
+
+    @Override
+    @SqlQuery("SELECT t.data FROM (" +
+            "SELECT initiated, data FROM <prefix>challenge_history WHERE challenger = :guild " +
+            "UNION ALL " +
+            "SELECT initiated, data FROM <prefix>challenge_history WHERE defender = :guild" +
+            ") t ORDER BY t.initiated DESC LIMIT :limit OFFSET :offset")
+    @RegisterRowMapper(ChallengeRowMapper.class)
+    List<GuildChallenge> getHistory(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull String guild, @Bind("offset") int offset, @Bind("limit") int limit);
+
+    @Override
+    @SqlQuery("SELECT (SELECT COUNT(*) FROM <prefix>challenge_history WHERE challenger = :guild) + (SELECT COUNT(*) FROM <prefix>challenge_history WHERE defender = :guild)")
+    int countHistory(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull String guild);
+
+    @Override
+    @SqlQuery("SELECT COUNT(*) FROM <prefix>challenge_history")
+    int countAllHistory(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT data FROM <prefix>challenge_history WHERE id IN (<ids>)")
+    @RegisterRowMapper(ChallengeRowMapper.class)
+    List<GuildChallenge> getHistoryByIds(@Define("prefix") @NotNull String prefix, @BindList("ids") @NotNull List<String> ids);
+
+    @Override
+    @SqlQuery("SELECT seq, data FROM <prefix>challenge_history WHERE seq > :after ORDER BY seq LIMIT :limit")
+    @RegisterRowMapper(ArchivedChallengeMapper.class)
+    List<ArchivedChallenge> getHistorySince(@Define("prefix") @NotNull String prefix, @Bind("after") long after, @Bind("limit") int limit);
 }
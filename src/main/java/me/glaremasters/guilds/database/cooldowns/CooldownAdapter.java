@@ -28,27 +28,34 @@ import me.glaremasters.guilds.cooldowns.Cooldown;
 import me.glaremasters.guilds.database.DatabaseAdapter;
 import me.glaremasters.guilds.database.DatabaseBackend;
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownJsonProvider;
+import me.glaremasters.guilds.database.cooldowns.provider.CooldownLogProvider;
 import me.glaremasters.guilds.utils.LoggingUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public class CooldownAdapter {
     private final CooldownProvider provider;
+    private final int batchSize;
     private String sqlTablePrefix;
 
     public CooldownAdapter(Guilds guilds, DatabaseAdapter adapter) {
         DatabaseBackend backend = adapter.getBackend();
+        batchSize = adapter.getBatchSize();
         switch (backend) {
             default:
             case JSON:
                 File fileDataFolder = new File(guilds.getDataFolder(), "cooldowns");
                 provider = new CooldownJsonProvider(fileDataFolder);
                 break;
+            case LOG:
+                provider = new CooldownLogProvider(adapter.getLogStorage().getCooldowns());
+                break;
             case MYSQL:
             case SQLITE:
             case MARIADB:
@@ -90,15 +97,34 @@ public class CooldownAdapter {
         provider.deleteCooldown(sqlTablePrefix, cooldownType.getTypeName(), cooldownOwner.toString());
     }
 
-    public void saveCooldowns(Collection<Cooldown> cooldowns) {
-        try {
-            for (Cooldown cooldown : cooldowns) {
-                if (!cooldownExists(cooldown)) {
-                    createCooldown(cooldown);
-                }
+    /**
+     * Saves the given cooldowns in batches, a batch that fails is logged and the rest of the save carries on.
+     *
+     * @param cooldowns the cooldowns to save
+     * @return true if every batch was saved
+     */
+    public boolean saveCooldowns(Collection<Cooldown> cooldowns) {
+        final List<Cooldown> toSave = new ArrayList<>(cooldowns);
+        boolean success = true;
+        for (int start = 0; start < toSave.size(); start += batchSize) {
+            final List<Cooldown> batch = toSave.subList(start, Math.min(start + batchSize, toSave.size()));
+            final List<String> ids = new ArrayList<>(batch.size());
+            final List<String> types = new ArrayList<>(batch.size());
+            final List<String> owners = new ArrayList<>(batch.size());
+            final List<Timestamp> expiries = new ArrayList<>(batch.size());
+            for (Cooldown cooldown : batch) {
+                ids.add(cooldown.getCooldownId().toString());
+                types.add(cooldown.getCooldownType().getTypeName());
+                owners.add(cooldown.getCooldownOwner().toString());
+                expiries.add(new Timestamp(cooldown.getCooldownExpiry()));
+            }
+            try {
+                provider.upsertCooldowns(sqlTablePrefix, ids, types, owners, expiries);
+            } catch (Exception ex) {
+                LoggingUtils.warn("Failed to save a batch of " + batch.size() + " cooldowns: " + ex.getMessage());
+                success = false;
             }
-        } catch (IOException ex) {
-            LoggingUtils.warn("Failed to save cooldowns");
         }
+        return success;
     }
 }
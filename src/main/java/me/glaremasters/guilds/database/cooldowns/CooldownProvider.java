@@ -90,6 +90,25 @@ public interface CooldownProvider {
      */
     void createCooldown(@Nullable String tablePrefix, @NotNull String id, @NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull Timestamp cooldownExpiry) throws IOException;
 
+    /**
+     * Saves a batch of cooldowns. Only one cooldown is kept per type and owner.
+     * SQL providers override this with batched statements that run in one transaction.
+     *
+     * @param tablePrefix the prefix to be used for the table name, if any
+     * @param ids         the UUIDs of the cooldowns
+     * @param types       the types of the cooldowns, in the same order as the ids
+     * @param owners      the owners of the cooldowns, in the same order as the ids
+     * @param expiries    the expiry times of the cooldowns, in the same order as the ids
+     * @throws IOException if there is an error saving the cooldowns
+     */
+    default void upsertCooldowns(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> types, @NotNull List<String> owners, @NotNull List<Timestamp> expiries) throws IOException {
+        for (int i = 0; i < ids.size(); i++) {
+            if (!cooldownExists(tablePrefix, types.get(i), owners.get(i))) {
+                createCooldown(tablePrefix, ids.get(i), types.get(i), owners.get(i), expiries.get(i));
+            }
+        }
+    }
+
     /**
      * Delete a cooldown from the database
      *
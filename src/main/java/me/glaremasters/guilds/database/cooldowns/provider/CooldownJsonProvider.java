@@ -28,86 +28,226 @@ import com.google.gson.reflect.TypeToken;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.cooldowns.Cooldown;
 import me.glaremasters.guilds.database.cooldowns.CooldownProvider;
+import me.glaremasters.guilds.utils.FileUtils;
+import me.glaremasters.guilds.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps cooldowns in an append-only journal instead of rewriting a single file on every change.
+ *
+ * Every create or delete appends a line to the journal and updates an in-memory copy, so checks never touch the disk.
+ * Once the journal holds a lot more records than there are live cooldowns, it is rewritten with only the cooldowns
+ * that haven't expired yet. A line torn by a crash is skipped when the journal is replayed.
+ */
 public class CooldownJsonProvider implements CooldownProvider {
+    private static final int COMPACTION_SLACK = 1024;
+
     private final File dataFolder;
     private final File cooldownFile;
+    private final File journalFile;
+    private final Map<String, Cooldown> cooldowns = new ConcurrentHashMap<>();
+    // The shared instance pretty prints, the journal needs every record on a single line
+    private final Gson journalGson = new Gson();
     private Gson gson;
     private Type cooldownCollectionType;
+    private int records;
 
     public CooldownJsonProvider(File dataFolder) {
         this.dataFolder = dataFolder;
         this.cooldownFile = new File(dataFolder, "cooldowns.json");
+        this.journalFile = new File(dataFolder, "cooldowns.journal");
         this.gson = Guilds.getGson();
         this.cooldownCollectionType = new TypeToken<List<Cooldown>>(){}.getType(); // needed to serialize a list properly
     }
 
     @Override
-    public void createContainer(@Nullable String tablePrefix) throws IOException {
+    public synchronized void createContainer(@Nullable String tablePrefix) throws IOException {
         if (!this.dataFolder.exists()) {
             this.dataFolder.mkdir();
         }
 
-        if (!this.cooldownFile.exists()) {
-            this.cooldownFile.createNewFile();
+        cooldowns.clear();
+        records = 0;
+        if (this.journalFile.exists()) {
+            replayJournal();
+        }
+        if (this.cooldownFile.exists()) {
+            migrateCooldownFile();
+        }
+        compact();
+    }
+
+    /**
+     * Read the journal back into memory.
+     */
+    private void replayJournal() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                final Record record;
+                try {
+                    record = journalGson.fromJson(line, Record.class);
+                } catch (Exception ex) {
+                    LoggingUtils.warn("Skipping a damaged line in " + journalFile.getName());
+                    continue;
+                }
+                if (record == null) continue;
+                if (record.cooldown != null) {
+                    cooldowns.put(key(record.cooldown.getCooldownType().getTypeName(), record.cooldown.getCooldownOwner().toString()), record.cooldown);
+                } else if (record.type != null && record.owner != null) {
+                    cooldowns.remove(key(record.type, record.owner));
+                }
+                records++;
+            }
         }
     }
 
+    /**
+     * Pull in the cooldowns of the old single file format. The file is kept as a backup once the journal is written.
+     */
+    private void migrateCooldownFile() throws IOException {
+        final List<Cooldown> legacy;
+        try (Reader reader = Files.newBufferedReader(cooldownFile.toPath(), StandardCharsets.UTF_8)) {
+            legacy = gson.fromJson(reader, cooldownCollectionType);
+        }
+        if (legacy != null) {
+            for (Cooldown cooldown : legacy) {
+                cooldowns.putIfAbsent(key(cooldown.getCooldownType().getTypeName(), cooldown.getCooldownOwner().toString()), cooldown);
+            }
+        }
+        compact();
+        Files.move(cooldownFile.toPath(), new File(dataFolder, "cooldowns.json.bak").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        LoggingUtils.info("Moved " + (legacy == null ? 0 : legacy.size()) + " cooldowns into the cooldown journal.");
+    }
+
     @Override
-    public boolean cooldownExists(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) throws IOException {
-        return cooldownExists(cooldownType, cooldownOwner, getAllCooldowns(tablePrefix));
+    public boolean cooldownExists(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) {
+        return cooldowns.containsKey(key(cooldownType, cooldownOwner));
     }
 
     @Override
-    public List<Cooldown> getAllCooldowns(@Nullable String tablePrefix) throws IOException {
-        List<Cooldown> loadedCooldowns = gson.fromJson(
-                new InputStreamReader(new FileInputStream(cooldownFile), StandardCharsets.UTF_8),
-                cooldownCollectionType
-        );
+    public List<Cooldown> getAllCooldowns(@Nullable String tablePrefix) {
+        return new ArrayList<>(cooldowns.values());
+    }
 
-        return loadedCooldowns == null ? new ArrayList<>() : loadedCooldowns;
+    @Override
+    public synchronized void createCooldown(@Nullable String tablePrefix, @NotNull String id, @NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull Timestamp cooldownExpiry) throws IOException {
+        if (cooldownExists(tablePrefix, cooldownType, cooldownOwner)) return;
+        final Cooldown cooldown = new Cooldown(UUID.fromString(id), Cooldown.Type.getByTypeName(cooldownType), UUID.fromString(cooldownOwner), cooldownExpiry.getTime());
+        append(journalGson.toJson(Record.put(cooldown)) + "\n");
+        cooldowns.put(key(cooldownType, cooldownOwner), cooldown);
+        compactIfNeeded();
     }
 
     @Override
-    public void createCooldown(@Nullable String tablePrefix, @NotNull String id, @NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull Timestamp cooldownExpiry) throws IOException {
-        List<Cooldown> current = getAllCooldowns(tablePrefix);
-        if (cooldownExists(cooldownType, cooldownOwner, current)) return;
-        current.add(new Cooldown(UUID.fromString(id), Cooldown.Type.getByTypeName(cooldownType), UUID.fromString(cooldownOwner), cooldownExpiry.getTime()));
-        writeCooldownFile(cooldownFile, current);
+    public synchronized void upsertCooldowns(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> types, @NotNull List<String> owners, @NotNull List<Timestamp> expiries) throws IOException {
+        final StringBuilder lines = new StringBuilder();
+        final Map<String, Cooldown> changed = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            final String key = key(types.get(i), owners.get(i));
+            final Cooldown current = cooldowns.get(key);
+            // Cooldowns that are already journaled as they are don't need another record
+            if (current != null && current.getCooldownId().toString().equals(ids.get(i)) && current.getCooldownExpiry() == expiries.get(i).getTime()) {
+                continue;
+            }
+            final Cooldown cooldown = new Cooldown(UUID.fromString(ids.get(i)), Cooldown.Type.getByTypeName(types.get(i)), UUID.fromString(owners.get(i)), expiries.get(i).getTime());
+            lines.append(journalGson.toJson(Record.put(cooldown))).append('\n');
+            changed.put(key, cooldown);
+        }
+        if (changed.isEmpty()) return;
+        append(lines.toString());
+        records += changed.size() - 1;
+        cooldowns.putAll(changed);
+        compactIfNeeded();
     }
 
     @Override
-    public void deleteCooldown(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) throws IOException {
-        List<Cooldown> current = getAllCooldowns(tablePrefix);
-        if (!cooldownExists(cooldownType, cooldownOwner, current)) return;
-        current.removeIf(c -> c.getCooldownType().getTypeName().equalsIgnoreCase(cooldownType) && c.getCooldownOwner().toString().equals(cooldownOwner));
-        writeCooldownFile(cooldownFile, current);
+    public synchronized void deleteCooldown(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) throws IOException {
+        if (!cooldownExists(tablePrefix, cooldownType, cooldownOwner)) return;
+        append(journalGson.toJson(Record.delete(cooldownType, cooldownOwner)) + "\n");
+        cooldowns.remove(key(cooldownType, cooldownOwner));
+        compactIfNeeded();
     }
 
-    private void writeCooldownFile(File file, List<Cooldown> cooldowns) throws IOException {
-        Files.write(Paths.get(file.getPath()), gson.toJson(cooldowns, cooldownCollectionType).getBytes(StandardCharsets.UTF_8));
+    /**
+     * Append records to the end of the journal and sync them to disk.
+     */
+    private void append(@NotNull String lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        records++;
     }
 
-    private boolean cooldownExists(@NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull List<Cooldown> current) throws IOException {
-        return current.stream()
-                .filter(c -> c.getCooldownType().getTypeName().equalsIgnoreCase(cooldownType) && c.getCooldownOwner().toString().equals(cooldownOwner))
-                .findFirst()
-                .orElse(null) != null;
+    private void compactIfNeeded() throws IOException {
+        if (records > cooldowns.size() * 2 + COMPACTION_SLACK) {
+            compact();
+        }
     }
 
+    /**
+     * Rewrite the journal with only the cooldowns that haven't expired yet.
+     */
+    private void compact() throws IOException {
+        final long now = System.currentTimeMillis();
+        cooldowns.values().removeIf(cooldown -> cooldown.getCooldownExpiry() < now);
+        final StringBuilder lines = new StringBuilder();
+        for (Cooldown cooldown : cooldowns.values()) {
+            lines.append(journalGson.toJson(Record.put(cooldown))).append('\n');
+        }
+        FileUtils.writeAtomically(journalFile.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+        records = cooldowns.size();
+    }
+
+    private static String key(@NotNull String cooldownType, @NotNull String cooldownOwner) {
+        return cooldownType.toLowerCase() + ":" + cooldownOwner;
+    }
+
+    /**
+     * A single line of the journal. Either carries a cooldown that was created, or the type and owner of one that
+     * was deleted.
+     */
+    private static final class Record {
+        private Cooldown cooldown;
+        private String type;
+        private String owner;
+
+        private static Record put(@NotNull Cooldown cooldown) {
+            final Record record = new Record();
+            record.cooldown = cooldown;
+            return record;
+        }
+
+        private static Record delete(@NotNull String type, @NotNull String owner) {
+            final Record record = new Record();
+            record.type = type;
+            record.owner = owner;
+            return record;
+        }
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.cooldowns.provider;
+
+import com.google.gson.Gson;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.database.cooldowns.CooldownProvider;
+import me.glaremasters.guilds.database.log.LogStore;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores each cooldown as a record in an append-only log. Records are keyed by type and owner, since only one
+ * cooldown is kept per type and owner.
+ */
+public class CooldownLogProvider implements CooldownProvider {
+    private final LogStore store;
+    private final Gson gson;
+
+    public CooldownLogProvider(@NotNull LogStore store) {
+        this.store = store;
+        this.gson = Guilds.getGson();
+    }
+
+    @Override
+    public void createContainer(@Nullable String tablePrefix) {
+        // The log is opened together with the backend
+    }
+
+    @Override
+    public boolean cooldownExists(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) {
+        return store.contains(key(cooldownType, cooldownOwner));
+    }
+
+    @Override
+    public List<Cooldown> getAllCooldowns(@Nullable String tablePrefix) throws IOException {
+        final List<Cooldown> cooldowns = new ArrayList<>();
+        for (String key : store.keys()) {
+            final byte[] data = store.get(key);
+            if (data == null) continue;
+            try {
+                cooldowns.add(gson.fromJson(new String(data, StandardCharsets.UTF_8), Cooldown.class));
+            } catch (Exception ex) {
+                LoggingUtils.severe("There was an error loading a cooldown stored under: " + key);
+            }
+        }
+        return cooldowns;
+    }
+
+    @Override
+    public void createCooldown(@Nullable String tablePrefix, @NotNull String id, @NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull Timestamp cooldownExpiry) throws IOException {
+        if (cooldownExists(tablePrefix, cooldownType, cooldownOwner)) return;
+        store.put(key(cooldownType, cooldownOwner), serialize(id, cooldownType, cooldownOwner, cooldownExpiry));
+    }
+
+    @Override
+    public void upsertCooldowns(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> types, @NotNull List<String> owners, @NotNull List<Timestamp> expiries) throws IOException {
+        final List<String> keys = new ArrayList<>(ids.size());
+        final List<byte[]> values = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            keys.add(key(types.get(i), owners.get(i)));
+            values.add(serialize(ids.get(i), types.get(i), owners.get(i), expiries.get(i)));
+        }
+        store.putAll(keys, values);
+    }
+
+    @Override
+    public void deleteCooldown(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) throws IOException {
+        store.delete(key(cooldownType, cooldownOwner));
+    }
+
+    private byte[] serialize(@NotNull String id, @NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull Timestamp cooldownExpiry) {
+        final Cooldown cooldown = new Cooldown(UUID.fromString(id), Cooldown.Type.getByTypeName(cooldownType), UUID.fromString(cooldownOwner), cooldownExpiry.getTime());
+        return gson.toJson(cooldown).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String key(@NotNull String cooldownType, @NotNull String cooldownOwner) {
+        return cooldownType.toLowerCase() + ":" + cooldownOwner;
+    }
+}
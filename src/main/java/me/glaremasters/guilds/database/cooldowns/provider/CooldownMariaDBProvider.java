@@ -29,9 +29,12 @@ import me.glaremasters.guilds.database.cooldowns.CooldownRowMapper;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.sql.Timestamp;
@@ -63,6 +66,20 @@ public interface CooldownMariaDBProvider extends CooldownProvider {
     @SqlUpdate("INSERT INTO <prefix>cooldowns(id, type, owner, expiry) VALUES (:id, :type, :owner, :expiry)")
     void createCooldown(@Define("prefix") @NotNull String prefix, @NotNull @Bind("id") String id, @NotNull @Bind("type") String type, @NotNull @Bind("owner") String owner, @NotNull @Bind("expiry") Timestamp expiry);
 
+    @SqlBatch("DELETE FROM <prefix>cooldowns WHERE type = :type AND owner = :owner")
+    void deleteCooldowns(@Define("prefix") @NotNull String prefix, @NotNull @Bind("type") List<String> types, @NotNull @Bind("owner") List<String> owners);
+
+    @SqlBatch("INSERT INTO <prefix>cooldowns(id, type, owner, expiry) VALUES (:id, :type, :owner, :expiry)")
+    void insertCooldowns(@Define("prefix") @NotNull String prefix, @NotNull @Bind("id") List<String> ids, @NotNull @Bind("type") List<String> types, @NotNull @Bind("owner") List<String> owners, @NotNull @Bind("expiry") List<Timestamp> expiries);
+
+    // The table has no unique key on (type, owner), so replace the rows inside one transaction instead of a native upsert
+    @Override
+    @Transaction
+    default void upsertCooldowns(@Nullable String prefix, @NotNull List<String> ids, @NotNull List<String> types, @NotNull List<String> owners, @NotNull List<Timestamp> expiries) {
+        deleteCooldowns(prefix, types, owners);
+        insertCooldowns(prefix, ids, types, owners, expiries);
+    }
+
     @Override
     @SqlUpdate("DELETE FROM <prefix>cooldowns WHERE type = :type AND owner = :owner")
     void deleteCooldown(@Define("prefix") @NotNull String prefix, @NotNull @Bind("type") String type, @NotNull @Bind("owner") String owner) throws IOException;
@@ -23,42 +23,105 @@
  */
 package me.glaremasters.guilds.database.guild;
 
+import com.google.gson.JsonObject;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.database.DatabaseAdapter;
 import me.glaremasters.guilds.database.DatabaseBackend;
 import me.glaremasters.guilds.database.guild.provider.GuildJsonProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildLogProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildNormalizedProvider;
+import me.glaremasters.guilds.database.vaults.VaultProvider;
+import me.glaremasters.guilds.database.vaults.VaultRecord;
+import me.glaremasters.guilds.database.vaults.provider.VaultJsonProvider;
+import me.glaremasters.guilds.database.vaults.provider.VaultLogProvider;
 import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jdbi.v3.core.Jdbi;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class GuildAdapter {
     private final GuildProvider provider;
+    private final VaultProvider vaultProvider;
+    private final int batchSize;
+    private final Map<UUID, List<String>> writtenVaults = new ConcurrentHashMap<>();
     private String sqlTablePrefix;
+    // Only set when guilds are synchronized with other servers sharing the database
+    private Jdbi jdbi;
+    private Class<? extends GuildSyncProvider> syncClass;
+    private GuildSyncProvider sync;
+    private String serverId;
+    private final Map<UUID, SyncState> syncStates = new ConcurrentHashMap<>();
+    private final Set<UUID> writing = ConcurrentHashMap.newKeySet();
+    private volatile long changeCursor;
+    private volatile Consumer<UUID> conflictHandler;
 
     public GuildAdapter(Guilds guilds, DatabaseAdapter adapter) {
         DatabaseBackend backend = adapter.getBackend();
+        batchSize = adapter.getBatchSize();
         switch (backend) {
             default:
             case JSON:
                 File fileDataFolder = new File(guilds.getDataFolder(), "data");
                 provider = new GuildJsonProvider(fileDataFolder);
+                vaultProvider = new VaultJsonProvider(new File(guilds.getDataFolder(), "vaults"));
+                break;
+            case LOG:
+                provider = new GuildLogProvider(adapter.getLogStorage().getGuilds());
+                vaultProvider = new VaultLogProvider(adapter.getLogStorage().getVaults());
                 break;
             case MYSQL:
             case SQLITE:
             case MARIADB:
                 sqlTablePrefix = adapter.getSqlTablePrefix();
-                provider = adapter.getDatabaseManager().getJdbi().onDemand(backend.getGuildProvider());
+                if (adapter.isNormalizedSchema()) {
+                    provider = new GuildNormalizedProvider(adapter.getDatabaseManager().getJdbi(), backend);
+                } else {
+                    provider = adapter.getDatabaseManager().getJdbi().onDemand(backend.getGuildProvider());
+                }
+                vaultProvider = adapter.getDatabaseManager().getJdbi().onDemand(backend.getVaultProvider());
+                if (adapter.isSyncEnabled()) {
+                    if (adapter.isNormalizedSchema()) {
+                        LoggingUtils.warn("Synchronizing between servers doesn't support the normalized schema yet, it has been turned off.");
+                        break;
+                    }
+                    jdbi = adapter.getDatabaseManager().getJdbi();
+                    syncClass = backend.getGuildSyncProvider();
+                    sync = jdbi.onDemand(syncClass);
+                    serverId = adapter.getServerId();
+                }
                 break;
         }
     }
 
     public void createContainer() throws IOException {
         provider.createContainer(sqlTablePrefix);
+        vaultProvider.createContainer(sqlTablePrefix);
+        if (sync != null) {
+            sync.createChangeLog(sqlTablePrefix);
+            try {
+                sync.checkVersionColumn(sqlTablePrefix);
+            } catch (Exception ex) {
+                sync.addVersionColumn(sqlTablePrefix);
+            }
+            // Guilds written by a server that doesn't synchronize have no version yet
+            sync.initVersions(sqlTablePrefix);
+        }
     }
 
     public boolean guildExists(@NotNull String id) throws IOException {
@@ -69,20 +132,256 @@ public class GuildAdapter {
         return provider.getAllGuildIds(sqlTablePrefix);
     }
 
+    /**
+     * Loads every guild together with its vaults.
+     *
+     * Guilds that still carry their vaults inside the guild data are from before vaults got their own storage.
+     * Their vaults are moved out and the guild is saved again without them.
+     *
+     * @return the loaded guilds
+     * @throws IOException if an I/O error occurs
+     */
     public List<Guild> getAllGuilds() throws IOException {
-        return provider.getAllGuilds(sqlTablePrefix);
+        final List<Guild> guilds = sync != null ? getAllVersionedGuilds() : provider.getAllGuilds(sqlTablePrefix);
+
+        final Map<UUID, List<String>> stored = new HashMap<>();
+        for (VaultRecord vault : vaultProvider.getAllVaults(sqlTablePrefix)) {
+            stored.computeIfAbsent(vault.getGuildId(), id -> new ArrayList<>()).add(vault.getData());
+        }
+
+        final List<Guild> embedded = new ArrayList<>();
+        for (Guild guild : guilds) {
+            if (!guild.getVaults().isEmpty()) {
+                embedded.add(guild);
+                continue;
+            }
+            final List<String> vaults = stored.getOrDefault(guild.getId(), new ArrayList<>());
+            guild.setVaults(vaults);
+            writtenVaults.put(guild.getId(), new ArrayList<>(vaults));
+        }
+
+        if (!embedded.isEmpty()) {
+            final List<Guild> failed = saveGuilds(embedded);
+            LoggingUtils.info("Moved the vaults of " + (embedded.size() - failed.size()) + " guilds into their own storage.");
+            if (!failed.isEmpty()) {
+                LoggingUtils.warn("The vaults of " + failed.size() + " guilds could not be moved yet, this will be retried on the next start.");
+            }
+        }
+        return guilds;
+    }
+
+    /**
+     * Loads every guild and remembers the version and data each one was stored with. The position of the change log
+     * is read first, so nothing written while loading is missed.
+     *
+     * @return the loaded guilds
+     */
+    private List<Guild> getAllVersionedGuilds() {
+        changeCursor = sync.getLastChange(sqlTablePrefix);
+        final List<Guild> guilds = new ArrayList<>();
+        for (VersionedGuild stored : sync.getVersionedGuilds(sqlTablePrefix)) {
+            try {
+                final Guild guild = deserialize(stored.getData());
+                guild.getId();
+                guilds.add(guild);
+                markSynced(stored.getId(), stored.getVersion(), stored.getData());
+            } catch (Exception ex) {
+                LoggingUtils.severe("There was an error loading the Guild with the following uuid: " + stored.getId());
+                LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
+            }
+        }
+        return guilds;
     }
 
     public Guild getGuild(@NotNull String id) throws IOException {
         return provider.getGuild(sqlTablePrefix, id);
     }
 
-    public void saveGuilds(@NotNull Collection<Guild> guilds) throws IOException {
+    /**
+     * Saves the given guilds in batches. Each batch is written in its own transaction, so a batch that fails
+     * is rolled back on its own and the rest of the save carries on.
+     *
+     * Vaults are written to their own storage first, and only the ones that changed since they were last written.
+     *
+     * @param guilds the guilds to save
+     * @return the guilds that were part of a failed batch
+     * @throws IOException if an I/O error occurs
+     */
+    public List<Guild> saveGuilds(@NotNull Collection<Guild> guilds) throws IOException {
+        final List<Guild> toSave = new ArrayList<>(guilds);
+        final List<Guild> failed = new ArrayList<>();
+        for (int start = 0; start < toSave.size(); start += batchSize) {
+            final List<Guild> batch = toSave.subList(start, Math.min(start + batchSize, toSave.size()));
+            if (sync != null) {
+                failed.addAll(saveVersioned(batch));
+                continue;
+            }
+            final List<String> ids = new ArrayList<>(batch.size());
+            final List<String> data = new ArrayList<>(batch.size());
+            for (Guild guild : batch) {
+                ids.add(guild.getId().toString());
+                data.add(serialize(guild));
+            }
+            try {
+                saveVaults(batch);
+                provider.upsertGuilds(sqlTablePrefix, ids, data);
+            } catch (Exception ex) {
+                LoggingUtils.warn("Failed to save a batch of " + batch.size() + " guilds: " + ex.getMessage());
+                failed.addAll(batch);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Save a batch of guilds, checking each against the version it was changed from. The writes, the change log and
+     * reading back the new versions happen in one transaction.
+     *
+     * A guild that was changed by another server in the meantime isn't written. It's handed to the conflict handler
+     * to be merged and saved again, or counted as failed if there is none.
+     *
+     * @param batch the guilds to save
+     * @return the guilds that failed
+     */
+    private List<Guild> saveVersioned(@NotNull List<Guild> batch) {
+        final Map<String, String> data = new HashMap<>();
+        for (Guild guild : batch) {
+            data.put(guild.getId().toString(), serialize(guild));
+            writing.add(guild.getId());
+        }
+        try {
+            saveVaults(batch);
+            final List<VersionedGuild> stored = jdbi.inTransaction(handle -> writeVersioned(handle.attach(syncClass), batch, data));
+            final Set<UUID> written = new HashSet<>();
+            for (VersionedGuild guild : stored) {
+                written.add(guild.getId());
+                markSynced(guild.getId(), guild.getVersion(), data.get(guild.getId().toString()));
+            }
+            final List<Guild> failed = new ArrayList<>();
+            final Consumer<UUID> handler = conflictHandler;
+            for (Guild guild : batch) {
+                if (written.contains(guild.getId())) continue;
+                if (handler != null) {
+                    handler.accept(guild.getId());
+                } else {
+                    failed.add(guild);
+                }
+            }
+            return failed;
+        } catch (Exception ex) {
+            LoggingUtils.warn("Failed to save a batch of " + batch.size() + " guilds: " + ex.getMessage());
+            return new ArrayList<>(batch);
+        } finally {
+            batch.forEach(guild -> writing.remove(guild.getId()));
+        }
+    }
+
+    private List<VersionedGuild> writeVersioned(@NotNull GuildSyncProvider sync, @NotNull List<Guild> batch, @NotNull Map<String, String> data) {
+        final List<String> casIds = new ArrayList<>();
+        final List<String> casData = new ArrayList<>();
+        final List<Long> expected = new ArrayList<>();
+        final List<String> blindIds = new ArrayList<>();
+        final List<String> blindData = new ArrayList<>();
+        for (Guild guild : batch) {
+            final String id = guild.getId().toString();
+            // Guilds that weren't taken from a synchronized state, like recovered or restored ones, simply overwrite
+            if (guild.getSyncVersion() > 0) {
+                casIds.add(id);
+                casData.add(data.get(id));
+                expected.add(guild.getSyncVersion());
+            } else {
+                blindIds.add(id);
+                blindData.add(data.get(id));
+            }
+        }
+
+        final List<String> written = new ArrayList<>();
+        if (!casIds.isEmpty()) {
+            final int[] rows = sync.compareAndSet(sqlTablePrefix, casIds, casData, expected);
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] > 0) {
+                    written.add(casIds.get(i));
+                }
+            }
+        }
+        if (!blindIds.isEmpty()) {
+            final int[] rows = sync.overwriteGuilds(sqlTablePrefix, blindIds, blindData);
+            for (int i = 0; i < rows.length; i++) {
+                // Another server may insert the same guild in between, then it's overwritten after all
+                if (rows[i] == 0 && sync.insertGuild(sqlTablePrefix, blindIds.get(i), blindData.get(i)) == 0) {
+                    sync.overwriteGuilds(sqlTablePrefix, Collections.singletonList(blindIds.get(i)), Collections.singletonList(blindData.get(i)));
+                }
+                written.add(blindIds.get(i));
+            }
+        }
+        if (written.isEmpty()) {
+            return Collections.emptyList();
+        }
+        sync.logChanges(sqlTablePrefix, written, serverId, System.currentTimeMillis());
+        return sync.getVersions(sqlTablePrefix, written);
+    }
+
+    /**
+     * Write the vaults of the given guilds that changed since they were last written, and drop the ones that
+     * no longer exist.
+     *
+     * @param guilds the guilds to write the vaults of
+     * @throws IOException if an I/O error occurs
+     */
+    private void saveVaults(@NotNull List<Guild> guilds) throws IOException {
+        final List<String> guildIds = new ArrayList<>();
+        final List<Integer> indexes = new ArrayList<>();
+        final List<String> data = new ArrayList<>();
+        final Map<UUID, Integer> removed = new HashMap<>();
+        for (Guild guild : guilds) {
+            final List<String> current = guild.getVaults();
+            final List<String> previous = writtenVaults.getOrDefault(guild.getId(), Collections.emptyList());
+            for (int i = 0; i < current.size(); i++) {
+                // Unchanged vaults are usually the very same string, so this rarely compares the contents
+                if (i >= previous.size() || !current.get(i).equals(previous.get(i))) {
+                    guildIds.add(guild.getId().toString());
+                    indexes.add(i);
+                    data.add(current.get(i));
+                }
+            }
+            if (current.size() < previous.size()) {
+                removed.put(guild.getId(), current.size());
+            }
+        }
+
+        if (!guildIds.isEmpty()) {
+            vaultProvider.upsertVaults(sqlTablePrefix, guildIds, indexes, data);
+        }
+        for (Map.Entry<UUID, Integer> entry : removed.entrySet()) {
+            vaultProvider.deleteVaults(sqlTablePrefix, entry.getKey().toString(), entry.getValue());
+        }
         for (Guild guild : guilds) {
-            saveGuild(guild);
+            writtenVaults.put(guild.getId(), new ArrayList<>(guild.getVaults()));
         }
     }
 
+    /**
+     * Serialize a guild without its vaults, those are kept in their own storage.
+     *
+     * @param guild the guild to serialize
+     * @return the serialized guild
+     */
+    public static String serialize(@NotNull Guild guild) {
+        final JsonObject json = Guilds.getGson().toJsonTree(guild, Guild.class).getAsJsonObject();
+        json.remove("vaults");
+        return Guilds.getGson().toJson(json);
+    }
+
+    /**
+     * Read a guild from its stored data.
+     *
+     * @param data the serialized guild
+     * @return the guild, without its vaults
+     */
+    public Guild deserialize(@NotNull String data) {
+        return Guilds.getGson().fromJson(data, Guild.class);
+    }
+
     public void saveGuild(@NotNull Guild guild) throws IOException {
         if (!guildExists(guild.getId().toString())) {
             createGuild(guild);
@@ -92,14 +391,151 @@ public class GuildAdapter {
     }
 
     public void createGuild(@NotNull Guild guild) throws IOException {
-        provider.createGuild(sqlTablePrefix, guild.getId().toString(), Guilds.getGson().toJson(guild, Guild.class));
+        saveVaults(Collections.singletonList(guild));
+        provider.createGuild(sqlTablePrefix, guild.getId().toString(), serialize(guild));
     }
 
     public void updateGuild(@NotNull Guild guild) throws IOException {
-        provider.updateGuild(sqlTablePrefix, guild.getId().toString(), Guilds.getGson().toJson(guild, Guild.class));
+        saveVaults(Collections.singletonList(guild));
+        provider.updateGuild(sqlTablePrefix, guild.getId().toString(), serialize(guild));
     }
 
     public void deleteGuild(@NotNull String id) throws IOException {
-        provider.deleteGuild(sqlTablePrefix, id);
+        if (sync != null) {
+            jdbi.useTransaction(handle -> {
+                final GuildSyncProvider versioned = handle.attach(syncClass);
+                versioned.deleteGuild(sqlTablePrefix, id);
+                versioned.logDelete(sqlTablePrefix, id, serverId, System.currentTimeMillis());
+            });
+        } else {
+            provider.deleteGuild(sqlTablePrefix, id);
+        }
+        vaultProvider.deleteVaults(sqlTablePrefix, id, 0);
+        forget(UUID.fromString(id));
+    }
+
+    /**
+     * Drop everything remembered about a guild that no longer exists. Its state is replaced by a tombstone, so a
+     * change of another server that was read before the delete can't bring it back.
+     *
+     * @param id the id of the guild
+     */
+    public void forget(@NotNull UUID id) {
+        writtenVaults.remove(id);
+        if (sync != null) {
+            syncStates.put(id, SyncState.DELETED);
+        }
+    }
+
+    /**
+     * Check if guilds are synchronized with other servers sharing the database.
+     *
+     * @return true if synchronizing
+     */
+    public boolean isSyncing() {
+        return sync != null;
+    }
+
+    /**
+     * Get the version and data a guild was last stored with or read at, the base any local change was made on.
+     *
+     * @param id the id of the guild
+     * @return the state, or null if the guild isn't known to be stored
+     */
+    @Nullable
+    public SyncState getSyncState(@NotNull UUID id) {
+        return syncStates.get(id);
+    }
+
+    /**
+     * Get the version a guild was last stored with or read at.
+     *
+     * @param id the id of the guild
+     * @return the version, or 0 if it isn't known
+     */
+    public long getSyncVersion(@NotNull UUID id) {
+        final SyncState state = syncStates.get(id);
+        return state == null ? 0 : state.getVersion();
+    }
+
+    /**
+     * Remember the version and data a guild is stored with, unless a newer version is known already.
+     *
+     * @param id      the id of the guild
+     * @param version the stored version
+     * @param data    the stored data
+     */
+    public void markSynced(@NotNull UUID id, long version, @NotNull String data) {
+        syncStates.merge(id, new SyncState(version, data), (current, update) -> update.version > current.version ? update : current);
+    }
+
+    /**
+     * Check if a guild is being written right now.
+     *
+     * @param id the id of the guild
+     * @return true if a write of the guild is in progress
+     */
+    public boolean isWriting(@NotNull UUID id) {
+        return writing.contains(id);
+    }
+
+    /**
+     * Set what happens to guilds that couldn't be written since another server changed them first.
+     *
+     * @param conflictHandler receives the id of each conflicting guild, on the writer thread
+     */
+    public void setConflictHandler(@Nullable Consumer<UUID> conflictHandler) {
+        this.conflictHandler = conflictHandler;
+    }
+
+    /**
+     * Get the position of the change log at the time the guilds were loaded.
+     *
+     * @return the position to start polling after
+     */
+    public long getChangeCursor() {
+        return changeCursor;
+    }
+
+    public List<GuildChange> getChanges(long after, int limit) {
+        return sync.getChanges(sqlTablePrefix, after, limit);
+    }
+
+    public List<VersionedGuild> getVersionedGuilds(@NotNull Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return sync.getVersionedGuilds(sqlTablePrefix, ids.stream().map(UUID::toString).collect(Collectors.toList()));
+    }
+
+    public int pruneChanges(long before) {
+        return sync.pruneChanges(sqlTablePrefix, before);
+    }
+
+    /**
+     * The version and data a guild was last stored with or read at.
+     */
+    public static final class SyncState {
+        private static final SyncState DELETED = new SyncState(Long.MAX_VALUE, "");
+
+        private final long version;
+        private final String data;
+
+        private SyncState(long version, @NotNull String data) {
+            this.version = version;
+            this.data = data;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getData() {
+            return data;
+        }
+
+        public boolean isDeleted() {
+            return this == DELETED;
+        }
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database.guild;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * An entry of the change log, written whenever a server stores or deletes a guild.
+ */
+public final class GuildChange {
+    private final long seq;
+    private final UUID guildId;
+    private final long version;
+    private final String server;
+
+    public GuildChange(long seq, @NotNull UUID guildId, long version, @NotNull String server) {
+        this.seq = seq;
+        this.guildId = guildId;
+        this.version = version;
+        this.server = server;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public UUID getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * Get the version the guild was stored with.
+     *
+     * @return the version, or -1 if the guild was deleted
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isDelete() {
+        return version < 0;
+    }
+
+    public String getServer() {
+        return server;
+    }
+}
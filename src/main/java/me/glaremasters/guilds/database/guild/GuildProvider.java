@@ -102,6 +102,25 @@ public interface GuildProvider {
      */
     void updateGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException;
 
+    /**
+     * Saves a batch of guilds, creating the ones that don't exist yet and updating the rest.
+     * SQL providers override this with a single batched upsert that runs in one transaction.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param ids         the ids of the guilds to save.
+     * @param data        the data of the guilds, in the same order as the ids.
+     * @throws IOException if an error occurs while saving the guilds.
+     */
+    default void upsertGuilds(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data) throws IOException {
+        for (int i = 0; i < ids.size(); i++) {
+            if (guildExists(tablePrefix, ids.get(i))) {
+                updateGuild(tablePrefix, ids.get(i), data.get(i));
+            } else {
+                createGuild(tablePrefix, ids.get(i), data.get(i));
+            }
+        }
+    }
+
     /**
      * Deletes a guild from the database.
      *
@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database.guild;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A provider interface for keeping guilds in sync between servers sharing a SQL database.
+ *
+ * Every stored guild carries a version that is bumped on each write. A write only goes through if the version is
+ * still the one the server last saw, and every write is recorded in a change log the other servers poll.
+ */
+public interface GuildSyncProvider {
+
+    /**
+     * Creates the change log.
+     *
+     * @param tablePrefix the prefix to use.
+     */
+    void createChangeLog(@Nullable String tablePrefix);
+
+    /**
+     * Reads the version of a single guild, only used to check if the version column exists yet.
+     *
+     * @param tablePrefix the prefix to use.
+     * @return the version of any guild, if there is one.
+     */
+    List<Long> checkVersionColumn(@Nullable String tablePrefix);
+
+    /**
+     * Adds the version column to the guild table.
+     *
+     * @param tablePrefix the prefix to use.
+     */
+    void addVersionColumn(@Nullable String tablePrefix);
+
+    /**
+     * Gives every guild that was stored without a version its first one.
+     *
+     * @param tablePrefix the prefix to use.
+     */
+    void initVersions(@Nullable String tablePrefix);
+
+    /**
+     * Gets every guild together with its version.
+     *
+     * @param tablePrefix the prefix to use.
+     * @return all stored guilds.
+     */
+    List<VersionedGuild> getVersionedGuilds(@Nullable String tablePrefix);
+
+    /**
+     * Gets the given guilds together with their versions.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param ids         the ids of the guilds, must not be empty.
+     * @return the guilds that still exist.
+     */
+    List<VersionedGuild> getVersionedGuilds(@Nullable String tablePrefix, @NotNull List<String> ids);
+
+    /**
+     * Gets the versions of the given guilds, without their data.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param ids         the ids of the guilds, must not be empty.
+     * @return the versions of the guilds that exist.
+     */
+    List<VersionedGuild> getVersions(@Nullable String tablePrefix, @NotNull List<String> ids);
+
+    /**
+     * Writes a batch of guilds, each only if it's still stored with the expected version.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param ids         the ids of the guilds.
+     * @param data        the serialized guilds, in the same order as the ids.
+     * @param expected    the versions the guilds were changed from, in the same order as the ids.
+     * @return the amount of updated rows for each guild, 0 where the version didn't match.
+     */
+    int[] compareAndSet(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data, @NotNull List<Long> expected);
+
+    /**
+     * Writes a batch of guilds regardless of their version, for guilds whose version isn't known.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param ids         the ids of the guilds.
+     * @param data        the serialized guilds, in the same order as the ids.
+     * @return the amount of updated rows for each guild, 0 where the guild isn't stored yet.
+     */
+    int[] overwriteGuilds(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data);
+
+    /**
+     * Inserts a guild with its first version, unless it's stored already.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param id          the id of the guild.
+     * @param data        the serialized guild.
+     * @return 1 if the guild was inserted, 0 if it already existed.
+     */
+    int insertGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data);
+
+    /**
+     * Deletes a guild, together with {@link #logDelete(String, String, String, long)} in the same transaction.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param id          the id of the guild.
+     */
+    void deleteGuild(@Nullable String tablePrefix, @NotNull String id);
+
+    /**
+     * Records the current version of each of the given guilds in the change log.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param ids         the ids of the written guilds.
+     * @param server      the id of the server that wrote them.
+     * @param now         the current time in milliseconds.
+     */
+    void logChanges(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull String server, long now);
+
+    /**
+     * Records the deletion of a guild in the change log.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param id          the id of the deleted guild.
+     * @param server      the id of the server that deleted it.
+     * @param now         the current time in milliseconds.
+     */
+    void logDelete(@Nullable String tablePrefix, @NotNull String id, @NotNull String server, long now);
+
+    /**
+     * Gets the position of the newest entry in the change log.
+     *
+     * @param tablePrefix the prefix to use.
+     * @return the newest position, 0 if the log is empty.
+     */
+    long getLastChange(@Nullable String tablePrefix);
+
+    /**
+     * Gets the entries of the change log after a position, oldest first.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param after       the position to start after.
+     * @param limit       the maximum amount of entries.
+     * @return the entries.
+     */
+    List<GuildChange> getChanges(@Nullable String tablePrefix, long after, int limit);
+
+    /**
+     * Drops the entries of the change log older than the given time.
+     *
+     * @param tablePrefix the prefix to use.
+     * @param before      the time in milliseconds.
+     * @return the amount of dropped entries.
+     */
+    int pruneChanges(@Nullable String tablePrefix, long before);
+}
@@ -24,24 +24,28 @@
 package me.glaremasters.guilds.database.guild.provider;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.database.guild.GuildProvider;
 import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.utils.FileUtils;
 import me.glaremasters.guilds.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * Created by GlareMasters
@@ -50,6 +54,7 @@ import java.util.Objects;
  */
 public class GuildJsonProvider implements GuildProvider {
     private final File dataFolder;
+    private final Set<String> guildIds = ConcurrentHashMap.newKeySet();
     private Gson gson;
 
     public GuildJsonProvider(File dataFolder) {
@@ -62,79 +67,108 @@ public class GuildJsonProvider implements GuildProvider {
         if (!this.dataFolder.exists()) {
             this.dataFolder.mkdir();
         }
+        indexGuildFiles();
+    }
+
+    /**
+     * Scan the data folder once so existence checks don't have to list the folder every time.
+     * Leftover temp files from a save that never finished are cleaned up, the original file is still intact.
+     */
+    private void indexGuildFiles() {
+        guildIds.clear();
+        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
+            if (FileUtils.isTempFile(file.toPath())) {
+                file.delete();
+                continue;
+            }
+            if (file.getName().endsWith(".json")) {
+                guildIds.add(com.google.common.io.Files.getNameWithoutExtension(file.getName()));
+            }
+        }
     }
 
     @Override
     public boolean guildExists(@Nullable String tablePrefix, @NotNull String id) {
-        return Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .map(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()))
-                .anyMatch(n -> n.equals(id));
+        return guildIds.contains(id);
     }
 
     @Override
     public List<String> getAllGuildIds(@Nullable String tablePrefix) {
-        List<String> loadedGuildIds = new ArrayList<>();
-
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            loadedGuildIds.add(com.google.common.io.Files.getNameWithoutExtension(file.getName()));
-        }
-
-        return loadedGuildIds;
+        return new ArrayList<>(guildIds);
     }
 
     @Override
-    public List<Guild> getAllGuilds(@Nullable String tablePrefix) {
-        List<Guild> loadedGuilds = new ArrayList<>();
-
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            try {
-                Guild guild = gson.fromJson(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), Guild.class);
-                guild.getId();
-                loadedGuilds.add(guild);
-            } catch (Exception ex) {
-                LoggingUtils.severe("There was an error loading a Guild from the following file: " + file.getAbsolutePath());
-                LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
-            }
+    public List<Guild> getAllGuilds(@Nullable String tablePrefix) throws IOException {
+        // Parsing is the slow part of startup, so spread the files over a pool sized to the amount of cores
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            return pool.submit(() -> guildIds.parallelStream()
+                    .map(this::loadGuildFile)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading guilds", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to load guilds", ex.getCause());
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        return loadedGuilds;
+    /**
+     * Stream a single guild file into a guild object.
+     *
+     * @param id the id of the guild to load
+     * @return the loaded guild or null if the file couldn't be read
+     */
+    @Nullable
+    private Guild loadGuildFile(@NotNull String id) {
+        File file = getGuildFile(id);
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))) {
+            Guild guild = gson.fromJson(reader, Guild.class);
+            guild.getId();
+            return guild;
+        } catch (Exception ex) {
+            LoggingUtils.severe("There was an error loading a Guild from the following file: " + file.getAbsolutePath());
+            LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
+            return null;
+        }
     }
 
     @Override
     public Guild getGuild(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        File data = Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .filter(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()).equals(id))
-                .findFirst()
-                .orElse(null);
-
-        if (data == null) return null;
+        if (!guildExists(tablePrefix, id)) return null;
 
-        return gson.fromJson(new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8), Guild.class);
+        try (Reader reader = Files.newBufferedReader(getGuildFile(id).toPath(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Guild.class);
+        }
     }
 
     @Override
     public void createGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
         if (guildExists(tablePrefix, id)) return;
-        writeGuildFile(new File(dataFolder, id + ".json"), data);
+        writeGuildFile(id, data);
     }
 
     @Override
     public void updateGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
-        File file = new File(dataFolder, id + ".json");
-        deleteGuild(file);
-        writeGuildFile(file, data);
+        writeGuildFile(id, data);
     }
 
-    private void writeGuildFile(File file, String data) throws IOException {
-        Files.write(Paths.get(file.getPath()), data.getBytes(StandardCharsets.UTF_8));
+    private void writeGuildFile(String id, String data) throws IOException {
+        FileUtils.writeAtomically(getGuildFile(id).toPath(), data.getBytes(StandardCharsets.UTF_8));
+        guildIds.add(id);
     }
 
-    @Override
-    public void deleteGuild(@Nullable String tablePrefix, @NotNull String id) {
-        deleteGuild(new File(dataFolder, id + ".json"));
+    private File getGuildFile(String id) {
+        return new File(dataFolder, id + ".json");
     }
 
-    private void deleteGuild(File file) {
+    @Override
+    public void deleteGuild(@Nullable String tablePrefix, @NotNull String id) {
+        File file = getGuildFile(id);
         if (file.exists()) file.delete();
+        guildIds.remove(id);
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.guild.provider;
+
+import com.google.gson.Gson;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.guild.GuildProvider;
+import me.glaremasters.guilds.database.log.LogStore;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Stores each guild as a record in an append-only log, keyed by its id.
+ */
+public class GuildLogProvider implements GuildProvider {
+    private final LogStore store;
+    private final Gson gson;
+
+    public GuildLogProvider(@NotNull LogStore store) {
+        this.store = store;
+        this.gson = Guilds.getGson();
+    }
+
+    @Override
+    public void createContainer(@Nullable String tablePrefix) {
+        // The log is opened together with the backend
+    }
+
+    @Override
+    public boolean guildExists(@Nullable String tablePrefix, @NotNull String id) {
+        return store.contains(id);
+    }
+
+    @Override
+    public List<String> getAllGuildIds(@Nullable String tablePrefix) {
+        return store.keys();
+    }
+
+    @Override
+    public List<Guild> getAllGuilds(@Nullable String tablePrefix) {
+        return store.keys().parallelStream()
+                .map(this::loadGuild)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Nullable
+    private Guild loadGuild(@NotNull String id) {
+        try {
+            final Guild guild = getGuild(null, id);
+            if (guild != null) {
+                guild.getId();
+            }
+            return guild;
+        } catch (Exception ex) {
+            LoggingUtils.severe("There was an error loading a Guild with the following uuid: " + id);
+            LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
+            return null;
+        }
+    }
+
+    @Override
+    public Guild getGuild(@Nullable String tablePrefix, @NotNull String id) throws IOException {
+        final byte[] data = store.get(id);
+        return data == null ? null : gson.fromJson(new String(data, StandardCharsets.UTF_8), Guild.class);
+    }
+
+    @Override
+    public void createGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
+        if (guildExists(tablePrefix, id)) return;
+        store.put(id, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void updateGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
+        store.put(id, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void upsertGuilds(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data) throws IOException {
+        final List<byte[]> values = new ArrayList<>(data.size());
+        for (String value : data) {
+            values.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        store.putAll(ids, values);
+    }
+
+    @Override
+    public void deleteGuild(@Nullable String tablePrefix, @NotNull String id) throws IOException {
+        store.delete(id);
+    }
+}
@@ -29,6 +29,7 @@ import me.glaremasters.guilds.guild.Guild;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jetbrains.annotations.NotNull;
@@ -73,6 +74,10 @@ public interface GuildMariaDBProvider extends GuildProvider {
     @SqlUpdate("UPDATE <prefix>guild SET data = :data WHERE id = :id")
     void updateGuild(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("data") @NotNull String data) throws IOException;
 
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild(id, data) VALUES (:id, :data) ON DUPLICATE KEY UPDATE data = VALUES(data)")
+    void upsertGuilds(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("data") @NotNull List<String> data);
+
     @Override
     @SqlUpdate("DELETE FROM <prefix>guild WHERE id = :id")
     void deleteGuild(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id) throws IOException;
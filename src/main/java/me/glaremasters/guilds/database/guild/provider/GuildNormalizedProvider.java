@@ -0,0 +1,680 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database.guild.provider;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.DatabaseBackend;
+import me.glaremasters.guilds.database.guild.GuildProvider;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import me.glaremasters.guilds.utils.UUIDUtils;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Query;
+import org.jdbi.v3.core.statement.SqlStatement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link GuildProvider} that spreads a guild over relational tables instead of storing it as one JSON document.
+ * Members, allies, invites and codes each get their own table keyed by the guild's id, the rest of the guild
+ * is kept as a small document in the guild table. Vaults live in their own storage, see
+ * {@link me.glaremasters.guilds.database.vaults.VaultProvider}.
+ *
+ * The rows last written for every guild are remembered so a save only touches the rows that actually changed.
+ */
+public class GuildNormalizedProvider implements GuildProvider {
+    private static final Column GUILD_ID = new Column("guild_id", ColumnType.BINARY);
+    private static final Column ORDINAL = new Column("ordinal", ColumnType.INT);
+    private static final UUID NO_INVITER = new UUID(0L, 0L);
+    private static final List<Object> NO_REQUEST = Arrays.asList(0L, 0L, NO_INVITER);
+
+    private final Jdbi jdbi;
+    private final boolean sqlite;
+    private final Gson gson;
+    private final Map<UUID, GuildRows> written = new ConcurrentHashMap<>();
+
+    public GuildNormalizedProvider(@NotNull Jdbi jdbi, @NotNull DatabaseBackend backend) {
+        this.jdbi = jdbi;
+        this.sqlite = backend == DatabaseBackend.SQLITE;
+        this.gson = Guilds.getGson();
+    }
+
+    @Override
+    public void createContainer(@Nullable String tablePrefix) throws IOException {
+        final String prefix = tablePrefix == null ? "" : tablePrefix;
+        try {
+            jdbi.useHandle(handle -> {
+                final Connection connection = handle.getConnection();
+                // A guild table without a name column is the old single document layout
+                if (tableExists(connection, prefix + "guild") && !getColumns(connection, prefix + "guild").contains("name")) {
+                    handle.execute("ALTER TABLE " + prefix + "guild RENAME TO " + prefix + "guild_blob");
+                }
+
+                createTables(handle, prefix);
+
+                if (tableExists(connection, prefix + "guild_blob")) {
+                    convertBlobTable(handle, connection, prefix);
+                }
+            });
+        } catch (SQLException ex) {
+            throw new IOException("Failed to create the guild tables", ex);
+        }
+    }
+
+    private void createTables(@NotNull Handle handle, @NotNull String prefix) {
+        handle.execute("CREATE TABLE IF NOT EXISTS " + prefix + "guild (\n" +
+                "  `id` " + ColumnType.BINARY.sql(sqlite) + " NOT NULL,\n" +
+                "  `name` " + ColumnType.STRING.sql(sqlite) + " NOT NULL,\n" +
+                "  `data` " + ColumnType.TEXT.sql(sqlite) + " NOT NULL,\n" +
+                (sqlite ? "" : "  KEY `name_index` (`name`),\n") +
+                "  PRIMARY KEY (`id`));");
+        if (sqlite) {
+            handle.execute("CREATE INDEX IF NOT EXISTS " + prefix + "guild_name_index ON " + prefix + "guild (`name`)");
+        }
+
+        for (Table table : Table.values()) {
+            final StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS " + prefix + table.name + " (\n");
+            for (Column column : table.columns()) {
+                sql.append("  `").append(column.name).append("` ").append(column.type.sql(sqlite)).append(" NOT NULL,\n");
+            }
+            if (table.index != null && !sqlite) {
+                sql.append("  KEY `").append(table.index).append("_index` (`").append(table.index).append("`),\n");
+            }
+            sql.append("  PRIMARY KEY (").append(table.keyColumns().stream().map(c -> "`" + c.name + "`").collect(Collectors.joining(", "))).append("));");
+            handle.execute(sql.toString());
+
+            if (table.index != null && sqlite) {
+                handle.execute("CREATE INDEX IF NOT EXISTS " + prefix + table.name + "_" + table.index + "_index ON " + prefix + table.name + " (`" + table.index + "`)");
+            }
+        }
+    }
+
+    /**
+     * Convert every guild of the old single document table into rows. The old table is kept as a backup once
+     * the conversion went through, if it fails nothing is committed and it will be retried on the next start.
+     * A backup left behind by an earlier conversion is never overwritten, the new one gets the time in its name.
+     */
+    private void convertBlobTable(@NotNull Handle handle, @NotNull Connection connection, @NotNull String prefix) throws SQLException {
+        final List<String[]> documents = handle.createQuery("SELECT id, data FROM " + prefix + "guild_blob")
+                .map((rs, ctx) -> new String[]{rs.getString("id"), rs.getString("data")})
+                .list();
+
+        final Map<UUID, GuildRows> converted = new HashMap<>();
+        handle.useTransaction(h -> {
+            deleteEverything(h, prefix);
+            for (String[] document : documents) {
+                final UUID id = UUID.fromString(document[0]);
+                converted.put(id, writeGuild(h, prefix, id, document[1]));
+            }
+        });
+        written.putAll(converted);
+
+        String backup = prefix + "guild_blob_backup";
+        if (tableExists(connection, backup)) {
+            backup = backup + "_" + System.currentTimeMillis();
+        }
+        handle.execute("ALTER TABLE " + prefix + "guild_blob RENAME TO " + backup);
+        LoggingUtils.info("Converted " + converted.size() + " guilds to the normalized schema. The old table has been kept as " + backup + ".");
+    }
+
+    @Override
+    public boolean guildExists(@Nullable String tablePrefix, @NotNull String id) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM " + tablePrefix + "guild WHERE id = :id")
+                .bind("id", UUIDUtils.toBytes(UUID.fromString(id)))
+                .mapTo(Integer.class)
+                .one() > 0);
+    }
+
+    @Override
+    public List<String> getAllGuildIds(@Nullable String tablePrefix) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT id FROM " + tablePrefix + "guild")
+                .map((rs, ctx) -> UUIDUtils.fromBytes(rs.getBytes("id")).toString())
+                .list());
+    }
+
+    @Override
+    public List<Guild> getAllGuilds(@Nullable String tablePrefix) {
+        final Map<UUID, GuildRows> loaded = jdbi.withHandle(handle -> readGuilds(handle, tablePrefix, null));
+        final List<Guild> guilds = new ArrayList<>(loaded.size());
+        loaded.forEach((id, rows) -> {
+            try {
+                guilds.add(gson.fromJson(rows.toJson(id), Guild.class));
+                written.put(id, rows);
+            } catch (Exception ex) {
+                LoggingUtils.severe("There was an error loading the Guild with the id " + id + " from the database.");
+                LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
+            }
+        });
+        return guilds;
+    }
+
+    @Override
+    public Guild getGuild(@Nullable String tablePrefix, @NotNull String id) {
+        final UUID guildId = UUID.fromString(id);
+        final GuildRows rows = jdbi.withHandle(handle -> readGuilds(handle, tablePrefix, guildId)).get(guildId);
+        if (rows == null) return null;
+        written.put(guildId, rows);
+        return gson.fromJson(rows.toJson(guildId), Guild.class);
+    }
+
+    @Override
+    public void createGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) {
+        upsertGuilds(tablePrefix, Collections.singletonList(id), Collections.singletonList(data));
+    }
+
+    @Override
+    public void updateGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) {
+        upsertGuilds(tablePrefix, Collections.singletonList(id), Collections.singletonList(data));
+    }
+
+    @Override
+    public void upsertGuilds(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data) {
+        final Map<UUID, GuildRows> saved = new HashMap<>();
+        jdbi.useTransaction(handle -> {
+            for (int i = 0; i < ids.size(); i++) {
+                final UUID id = UUID.fromString(ids.get(i));
+                saved.put(id, writeGuild(handle, tablePrefix, id, data.get(i)));
+            }
+        });
+        // Only remember the rows once they are committed, a failed batch is diffed against the old rows next time
+        written.putAll(saved);
+    }
+
+    @Override
+    public void deleteGuild(@Nullable String tablePrefix, @NotNull String id) {
+        final UUID guildId = UUID.fromString(id);
+        jdbi.useTransaction(handle -> deleteGuildRows(handle, tablePrefix, guildId));
+        written.remove(guildId);
+    }
+
+    /**
+     * Write a guild, only touching the rows that changed since it was last written or read.
+     *
+     * @return the rows that are now stored for the guild
+     */
+    private GuildRows writeGuild(@NotNull Handle handle, @Nullable String prefix, @NotNull UUID id, @NotNull String data) {
+        final GuildRows rows = GuildRows.fromJson(JsonParser.parseString(data).getAsJsonObject());
+        final GuildRows previous = written.get(id);
+        final byte[] guildId = UUIDUtils.toBytes(id);
+
+        if (previous == null) {
+            // Nothing is known about what's stored, so start from a clean slate
+            deleteGuildRows(handle, prefix, id);
+            handle.createUpdate("INSERT INTO " + prefix + "guild(id, name, data) VALUES (:id, :name, :data)")
+                    .bind("id", guildId)
+                    .bind("name", rows.name)
+                    .bind("data", rows.core)
+                    .execute();
+            for (Table table : Table.values()) {
+                insertRows(handle, prefix, table, guildId, rows.tables.get(table));
+            }
+            return rows;
+        }
+
+        if (!previous.name.equals(rows.name) || !previous.core.equals(rows.core)) {
+            handle.createUpdate("UPDATE " + prefix + "guild SET name = :name, data = :data WHERE id = :id")
+                    .bind("id", guildId)
+                    .bind("name", rows.name)
+                    .bind("data", rows.core)
+                    .execute();
+        }
+
+        for (Table table : Table.values()) {
+            final Map<List<Object>, List<Object>> before = previous.tables.get(table);
+            final Map<List<Object>, List<Object>> after = rows.tables.get(table);
+
+            final Map<List<Object>, List<Object>> added = new LinkedHashMap<>();
+            final Map<List<Object>, List<Object>> changed = new LinkedHashMap<>();
+            after.forEach((key, values) -> {
+                final List<Object> old = before.get(key);
+                if (old == null) {
+                    added.put(key, values);
+                } else if (!old.equals(values)) {
+                    changed.put(key, values);
+                }
+            });
+            final Map<List<Object>, List<Object>> removed = new LinkedHashMap<>(before);
+            removed.keySet().removeAll(after.keySet());
+
+            deleteRows(handle, prefix, table, guildId, removed);
+            updateRows(handle, prefix, table, guildId, changed);
+            insertRows(handle, prefix, table, guildId, added);
+        }
+        return rows;
+    }
+
+    private void insertRows(@NotNull Handle handle, @Nullable String prefix, @NotNull Table table, byte[] guildId, @NotNull Map<List<Object>, List<Object>> rows) {
+        if (rows.isEmpty()) return;
+        final List<Column> columns = table.columns();
+        final PreparedBatch batch = handle.prepareBatch("INSERT INTO " + prefix + table.name + "(" +
+                columns.stream().map(c -> c.name).collect(Collectors.joining(", ")) + ") VALUES (" +
+                columns.stream().map(c -> ":" + c.name).collect(Collectors.joining(", ")) + ")");
+        rows.forEach((key, values) -> {
+            bindRow(batch, table, guildId, key, values);
+            batch.add();
+        });
+        batch.execute();
+    }
+
+    private void updateRows(@NotNull Handle handle, @Nullable String prefix, @NotNull Table table, byte[] guildId, @NotNull Map<List<Object>, List<Object>> rows) {
+        if (rows.isEmpty() || table.values.length == 0) return;
+        final PreparedBatch batch = handle.prepareBatch("UPDATE " + prefix + table.name + " SET " +
+                Arrays.stream(table.values).map(c -> c.name + " = :" + c.name).collect(Collectors.joining(", ")) +
+                " WHERE " + table.keyColumns().stream().map(c -> c.name + " = :" + c.name).collect(Collectors.joining(" AND ")));
+        rows.forEach((key, values) -> {
+            bindRow(batch, table, guildId, key, values);
+            batch.add();
+        });
+        batch.execute();
+    }
+
+    private void deleteRows(@NotNull Handle handle, @Nullable String prefix, @NotNull Table table, byte[] guildId, @NotNull Map<List<Object>, List<Object>> rows) {
+        if (rows.isEmpty()) return;
+        final PreparedBatch batch = handle.prepareBatch("DELETE FROM " + prefix + table.name + " WHERE " +
+                table.keyColumns().stream().map(c -> c.name + " = :" + c.name).collect(Collectors.joining(" AND ")));
+        rows.forEach((key, values) -> {
+            bindRow(batch, table, guildId, key, Collections.emptyList());
+            batch.add();
+        });
+        batch.execute();
+    }
+
+    private void deleteGuildRows(@NotNull Handle handle, @Nullable String prefix, @NotNull UUID id) {
+        final byte[] guildId = UUIDUtils.toBytes(id);
+        for (Table table : Table.values()) {
+            handle.createUpdate("DELETE FROM " + prefix + table.name + " WHERE guild_id = :guild_id")
+                    .bind("guild_id", guildId)
+                    .execute();
+        }
+        handle.createUpdate("DELETE FROM " + prefix + "guild WHERE id = :id")
+                .bind("id", guildId)
+                .execute();
+    }
+
+    private void deleteEverything(@NotNull Handle handle, @NotNull String prefix) {
+        for (Table table : Table.values()) {
+            handle.execute("DELETE FROM " + prefix + table.name);
+        }
+        handle.execute("DELETE FROM " + prefix + "guild");
+    }
+
+    private static void bindRow(@NotNull SqlStatement<?> statement, @NotNull Table table, byte[] guildId, @NotNull List<Object> key, @NotNull List<Object> values) {
+        statement.bind("guild_id", guildId);
+        for (int i = 0; i < table.keys.length; i++) {
+            bindValue(statement, table.keys[i].name, key.get(i));
+        }
+        for (int i = 0; i < values.size(); i++) {
+            bindValue(statement, table.values[i].name, values.get(i));
+        }
+    }
+
+    private static void bindValue(@NotNull SqlStatement<?> statement, @NotNull String name, @NotNull Object value) {
+        if (value instanceof UUID) {
+            statement.bind(name, UUIDUtils.toBytes((UUID) value));
+        } else {
+            statement.bind(name, value);
+        }
+    }
+
+    /**
+     * Read the rows of either every guild or a single one.
+     *
+     * @param id the guild to read or null to read them all
+     * @return the rows of each guild found
+     */
+    private Map<UUID, GuildRows> readGuilds(@NotNull Handle handle, @Nullable String prefix, @Nullable UUID id) {
+        final String filter = id == null ? "" : " WHERE guild_id = :guild_id";
+        final byte[] guildId = id == null ? null : UUIDUtils.toBytes(id);
+        final Map<UUID, GuildRows> loaded = new LinkedHashMap<>();
+
+        bindGuild(handle.createQuery("SELECT id, name, data FROM " + prefix + "guild" + (id == null ? "" : " WHERE id = :guild_id")), guildId)
+                .map((rs, ctx) -> {
+                    loaded.put(UUIDUtils.fromBytes(rs.getBytes("id")), new GuildRows(rs.getString("name"), rs.getString("data")));
+                    return Boolean.TRUE;
+                })
+                .list();
+
+        for (Table table : Table.values()) {
+            final List<Column> columns = table.columns();
+            bindGuild(handle.createQuery("SELECT " + columns.stream().map(c -> c.name).collect(Collectors.joining(", ")) +
+                    " FROM " + prefix + table.name + filter + " ORDER BY guild_id, ordinal"), guildId)
+                    .map((rs, ctx) -> {
+                        final GuildRows rows = loaded.get(UUIDUtils.fromBytes(rs.getBytes("guild_id")));
+                        if (rows == null) {
+                            // Orphaned row of a guild that no longer exists
+                            return Boolean.FALSE;
+                        }
+                        final List<Object> key = new ArrayList<>(table.keys.length);
+                        for (Column column : table.keys) {
+                            key.add(column.type.read(rs, column.name));
+                        }
+                        final List<Object> values = new ArrayList<>(table.values.length);
+                        for (Column column : table.values) {
+                            values.add(column.type.read(rs, column.name));
+                        }
+                        rows.tables.get(table).put(key, values);
+                        return Boolean.TRUE;
+                    })
+                    .list();
+        }
+        return loaded;
+    }
+
+    private static Query bindGuild(@NotNull Query query, @Nullable byte[] guildId) {
+        return guildId == null ? query : query.bind("guild_id", guildId);
+    }
+
+    private static boolean tableExists(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        final DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getTables(connection.getCatalog(), null, table, null)) {
+            return rs.next();
+        }
+    }
+
+    private static List<String> getColumns(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        final DatabaseMetaData meta = connection.getMetaData();
+        final List<String> columns = new ArrayList<>();
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                columns.add(rs.getString("COLUMN_NAME").toLowerCase());
+            }
+        }
+        return columns;
+    }
+
+    private enum ColumnType {
+        BINARY("BINARY(16)", "BLOB"),
+        INT("INT", "INTEGER"),
+        LONG("BIGINT", "INTEGER"),
+        BOOLEAN("BOOLEAN", "INTEGER"),
+        STRING("VARCHAR(255)", "TEXT"),
+        TEXT("MEDIUMTEXT", "TEXT");
+
+        private final String mysql;
+        private final String sqlite;
+
+        ColumnType(String mysql, String sqlite) {
+            this.mysql = mysql;
+            this.sqlite = sqlite;
+        }
+
+        private String sql(boolean sqlite) {
+            return sqlite ? this.sqlite : this.mysql;
+        }
+
+        private Object read(@NotNull ResultSet rs, @NotNull String column) throws SQLException {
+            switch (this) {
+                case BINARY:
+                    return UUIDUtils.fromBytes(rs.getBytes(column));
+                case INT:
+                    return rs.getInt(column);
+                case LONG:
+                    return rs.getLong(column);
+                case BOOLEAN:
+                    return rs.getBoolean(column);
+                default:
+                    return rs.getString(column);
+            }
+        }
+    }
+
+    private static final class Column {
+        private final String name;
+        private final ColumnType type;
+
+        private Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    /**
+     * The child tables of a guild. Every table is keyed by the guild id plus its own key columns, and every row keeps
+     * its position in the list it came from so the lists are read back in the order they were written.
+     */
+    private enum Table {
+        MEMBER("guild_member", "member_id",
+                new Column[]{new Column("member_id", ColumnType.BINARY)},
+                new Column[]{new Column("role", ColumnType.INT), new Column("join_date", ColumnType.LONG), new Column("last_login", ColumnType.LONG)}),
+        ALLY("guild_ally", "ally_id",
+                new Column[]{new Column("ally_id", ColumnType.BINARY), new Column("pending", ColumnType.BOOLEAN)},
+                requestColumns()),
+        INVITE("guild_invite", "player_id",
+                new Column[]{new Column("player_id", ColumnType.BINARY)},
+                requestColumns()),
+        CODE("guild_code", null,
+                new Column[]{new Column("code", ColumnType.STRING)},
+                new Column[]{new Column("uses", ColumnType.INT), new Column("creator", ColumnType.BINARY), new Column("redeemers", ColumnType.TEXT)});
+
+        private final String name;
+        private final String index;
+        private final Column[] keys;
+        private final Column[] values;
+
+        Table(String name, String index, Column[] keys, Column[] values) {
+            this.name = name;
+            this.index = index;
+            this.keys = keys;
+            this.values = Arrays.copyOf(values, values.length + 1);
+            this.values[values.length] = ORDINAL;
+        }
+
+        /**
+         * The columns of an invite or ally request. Allies that accepted have them zeroed.
+         */
+        private static Column[] requestColumns() {
+            return new Column[]{new Column("created_at", ColumnType.LONG), new Column("ttl", ColumnType.LONG), new Column("inviter", ColumnType.BINARY)};
+        }
+
+        private List<Column> keyColumns() {
+            final List<Column> columns = new ArrayList<>();
+            columns.add(GUILD_ID);
+            columns.addAll(Arrays.asList(keys));
+            return columns;
+        }
+
+        private List<Column> columns() {
+            final List<Column> columns = keyColumns();
+            columns.addAll(Arrays.asList(values));
+            return columns;
+        }
+    }
+
+    /**
+     * The rows that make up a single guild.
+     */
+    private static final class GuildRows {
+        private final String name;
+        private final String core;
+        private final Map<Table, Map<List<Object>, List<Object>>> tables = new EnumMap<>(Table.class);
+
+        private GuildRows(String name, String core) {
+            this.name = name;
+            this.core = core;
+            for (Table table : Table.values()) {
+                tables.put(table, new LinkedHashMap<>());
+            }
+        }
+
+        /**
+         * Split the JSON of a guild into rows. Whatever isn't moved into a child table stays in the core document.
+         */
+        private static GuildRows fromJson(@NotNull JsonObject guild) {
+            guild.remove("id");
+            final JsonElement name = guild.remove("name");
+            final JsonArray members = removeArray(guild, "members");
+            final JsonArray allies = removeArray(guild, "allies");
+            final JsonArray pendingAllies = removeArray(guild, "pendingAllies");
+            final JsonArray invites = removeArray(guild, "invitedMembers");
+            final JsonArray codes = removeArray(guild, "codes");
+
+            final GuildRows rows = new GuildRows(name == null ? "" : name.getAsString(), guild.toString());
+            for (JsonElement element : members) {
+                final JsonObject member = element.getAsJsonObject();
+                rows.add(Table.MEMBER,
+                        Collections.singletonList(UUID.fromString(member.get("uuid").getAsString())),
+                        Arrays.asList(member.getAsJsonObject("role").get("level").getAsInt(), getLong(member, "joinDate"), getLong(member, "lastLogin")));
+            }
+            for (JsonElement ally : allies) {
+                rows.add(Table.ALLY, Arrays.asList(UUID.fromString(ally.getAsString()), false), NO_REQUEST);
+            }
+            for (JsonElement ally : pendingAllies) {
+                rows.add(Table.ALLY, Arrays.asList(requestTarget(ally), true), requestValues(ally));
+            }
+            for (JsonElement invite : invites) {
+                rows.add(Table.INVITE, Collections.singletonList(requestTarget(invite)), requestValues(invite));
+            }
+            for (JsonElement element : codes) {
+                final JsonObject code = element.getAsJsonObject();
+                rows.add(Table.CODE,
+                        Collections.singletonList(code.get("id").getAsString()),
+                        Arrays.asList(code.get("uses").getAsInt(), UUID.fromString(code.get("creator").getAsString()), removeArray(code, "redeemers").toString()));
+            }
+            return rows;
+        }
+
+        /**
+         * Add a row to the end of a table, a key that's there already keeps its position.
+         */
+        private void add(@NotNull Table table, @NotNull List<Object> key, @NotNull List<Object> values) {
+            final Map<List<Object>, List<Object>> rows = tables.get(table);
+            final List<Object> previous = rows.get(key);
+            final List<Object> row = new ArrayList<>(values);
+            row.add(previous == null ? rows.size() : previous.get(previous.size() - 1));
+            rows.put(key, row);
+        }
+
+        /**
+         * Put the rows back together into the JSON of a guild.
+         */
+        private JsonObject toJson(@NotNull UUID id) {
+            final JsonObject guild = JsonParser.parseString(core).getAsJsonObject();
+            guild.addProperty("id", id.toString());
+            guild.addProperty("name", name);
+
+            final JsonArray members = new JsonArray();
+            tables.get(Table.MEMBER).forEach((key, values) -> {
+                final JsonObject member = new JsonObject();
+                final JsonObject role = new JsonObject();
+                role.addProperty("level", (Integer) values.get(0));
+                member.addProperty("uuid", key.get(0).toString());
+                member.add("role", role);
+                member.addProperty("joinDate", (Long) values.get(1));
+                member.addProperty("lastLogin", (Long) values.get(2));
+                members.add(member);
+            });
+            guild.add("members", members);
+
+            final JsonArray allies = new JsonArray();
+            final JsonArray pendingAllies = new JsonArray();
+            tables.get(Table.ALLY).forEach((key, values) -> {
+                if ((Boolean) key.get(1)) {
+                    pendingAllies.add(requestJson((UUID) key.get(0), values));
+                } else {
+                    allies.add(key.get(0).toString());
+                }
+            });
+            guild.add("allies", allies);
+            guild.add("pendingAllies", pendingAllies);
+
+            final JsonArray invites = new JsonArray();
+            tables.get(Table.INVITE).forEach((key, values) -> invites.add(requestJson((UUID) key.get(0), values)));
+            guild.add("invitedMembers", invites);
+
+            final JsonArray codes = new JsonArray();
+            tables.get(Table.CODE).forEach((key, values) -> {
+                final JsonObject code = new JsonObject();
+                code.addProperty("id", (String) key.get(0));
+                code.addProperty("uses", (Integer) values.get(0));
+                code.addProperty("creator", values.get(1).toString());
+                code.add("redeemers", JsonParser.parseString((String) values.get(2)));
+                codes.add(code);
+            });
+            guild.add("codes", codes);
+            return guild;
+        }
+
+        /**
+         * Invites and ally requests are stored as an array of their target, creation time, time to live and inviter,
+         * or as just the target if they were stored before they expired.
+         */
+        private static UUID requestTarget(@NotNull JsonElement request) {
+            return UUID.fromString((request.isJsonArray() ? request.getAsJsonArray().get(0) : request).getAsString());
+        }
+
+        private static List<Object> requestValues(@NotNull JsonElement request) {
+            if (!request.isJsonArray()) {
+                return NO_REQUEST;
+            }
+            final JsonArray array = request.getAsJsonArray();
+            final UUID inviter = array.size() > 3 && !array.get(3).isJsonNull() ? UUID.fromString(array.get(3).getAsString()) : NO_INVITER;
+            return Arrays.asList(array.get(1).getAsLong(), array.get(2).getAsLong(), inviter);
+        }
+
+        private static JsonArray requestJson(@NotNull UUID target, @NotNull List<Object> values) {
+            final JsonArray request = new JsonArray();
+            request.add(target.toString());
+            request.add((Long) values.get(0));
+            request.add((Long) values.get(1));
+            if (!NO_INVITER.equals(values.get(2))) {
+                request.add(values.get(2).toString());
+            }
+            return request;
+        }
+
+        private static JsonArray removeArray(@NotNull JsonObject object, @NotNull String key) {
+            final JsonElement element = object.remove(key);
+            return element != null && element.isJsonArray() ? element.getAsJsonArray() : new JsonArray();
+        }
+
+        private static long getLong(@NotNull JsonObject object, @NotNull String key) {
+            final JsonElement element = object.get(key);
+            return element == null ? 0L : element.getAsLong();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.database.guild.provider;
+
+import me.glaremasters.guilds.database.guild.GuildChange;
+import me.glaremasters.guilds.database.guild.GuildChangeMapper;
+import me.glaremasters.guilds.database.guild.GuildSyncProvider;
+import me.glaremasters.guilds.database.guild.VersionedGuild;
+import me.glaremasters.guilds.database.guild.VersionedGuildMapper;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public interface GuildSyncMySQLProvider extends GuildSyncProvider {
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_changes (\n" +
+                    "  `seq` BIGINT NOT NULL AUTO_INCREMENT,\n" +
+                    "  `guild_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `version` BIGINT NOT NULL,\n" +
+                    "  `server` VARCHAR(64) NOT NULL,\n" +
+                    "  `changed_at` BIGINT NOT NULL,\n" +
+                    "  PRIMARY KEY (`seq`),\n" +
+                    "  INDEX `<prefix>guild_changes_changed_at` (`changed_at`));"
+    )
+    void createChangeLog(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT version FROM <prefix>guild LIMIT 1")
+    List<Long> checkVersionColumn(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate("ALTER TABLE <prefix>guild ADD COLUMN version BIGINT NOT NULL DEFAULT 0")
+    void addVersionColumn(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate("UPDATE <prefix>guild SET version = 1 WHERE version = 0")
+    void initVersions(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT id, version, data FROM <prefix>guild")
+    @RegisterRowMapper(VersionedGuildMapper.class)
+    List<VersionedGuild> getVersionedGuilds(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT id, version, data FROM <prefix>guild WHERE id IN (<ids>)")
+    @RegisterRowMapper(VersionedGuildMapper.class)
+    List<VersionedGuild> getVersionedGuilds(@Define("prefix") @NotNull String prefix, @BindList("ids") @NotNull List<String> ids);
+
+    @Override
+    @SqlQuery("SELECT id, version, NULL AS data FROM <prefix>guild WHERE id IN (<ids>)")
+    @RegisterRowMapper(VersionedGuildMapper.class)
+    List<VersionedGuild> getVersions(@Define("prefix") @NotNull String prefix, @BindList("ids") @NotNull List<String> ids);
+
+    @Override
+    @SqlBatch("UPDATE <prefix>guild SET data = :data, version = :expected + 1 WHERE id = :id AND version = :expected")
+    int[] compareAndSet(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("data") @NotNull List<String> data, @Bind("expected") @NotNull List<Long> expected);
+
+    @Override
+    @SqlBatch("UPDATE <prefix>guild SET data = :data, version = version + 1 WHERE id = :id")
+    int[] overwriteGuilds(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("data") @NotNull List<String> data);
+
+    @Override
+    @SqlUpdate("INSERT IGNORE INTO <prefix>guild(id, data, version) VALUES (:id, :data, 1)")
+    int insertGuild(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("data") @NotNull String data);
+
+    @Override
+    @SqlUpdate("DELETE FROM <prefix>guild WHERE id = :id")
+    void deleteGuild(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_changes(guild_id, version, server, changed_at) SELECT id, version, :server, :now FROM <prefix>guild WHERE id = :id")
+    void logChanges(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("server") @NotNull String server, @Bind("now") long now);
+
+    @Override
+    @SqlUpdate("INSERT INTO <prefix>guild_changes(guild_id, version, server, changed_at) VALUES (:id, -1, :server, :now)")
+    void logDelete(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("server") @NotNull String server, @Bind("now") long now);
+
+    @Override
+    @SqlQuery("SELECT COALESCE(MAX(seq), 0) FROM <prefix>guild_changes")
+    long getLastChange(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT seq, guild_id, version, server FROM <prefix>guild_changes WHERE seq > :after ORDER BY seq LIMIT :limit")
+    @RegisterRowMapper(GuildChangeMapper.class)
+    List<GuildChange> getChanges(@Define("prefix") @NotNull String prefix, @Bind("after") long after, @Bind("limit") int limit);
+
+    @Override
+    @SqlUpdate("DELETE FROM <prefix>guild_changes WHERE changed_at < :before")
+    int pruneChanges(@Define("prefix") @NotNull String prefix, @Bind("before") long before);
+}
@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.log;
+
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the logs backing the log storage backend, one per type of data, and compacts them in the background.
+ */
+public final class LogStorage implements AutoCloseable {
+    private final LogStore guilds;
+    private final LogStore challenges;
+    private final LogStore challengeHistory;
+    private final LogStore arenas;
+    private final LogStore cooldowns;
+    private final LogStore vaults;
+    private final double compactionThreshold;
+    private final ScheduledExecutorService compactor;
+
+    /**
+     * Open the logs stored in a folder.
+     *
+     * @param folder              the folder to keep the logs in
+     * @param segmentSize         the size in bytes after which a new segment is started
+     * @param compactionThreshold the share of garbage, between 0 and 1, from which on a log is compacted
+     * @param compactionInterval  how often, in minutes, to check if a log needs compacting
+     * @throws IOException if a log could not be opened
+     */
+    public LogStorage(@NotNull File folder, long segmentSize, double compactionThreshold, int compactionInterval) throws IOException {
+        this.guilds = LogStore.open(new File(folder, "guilds").toPath(), segmentSize);
+        this.challenges = LogStore.open(new File(folder, "challenges").toPath(), segmentSize);
+        this.challengeHistory = LogStore.open(new File(folder, "challenge-history").toPath(), segmentSize);
+        this.arenas = LogStore.open(new File(folder, "arenas").toPath(), segmentSize);
+        this.cooldowns = LogStore.open(new File(folder, "cooldowns").toPath(), segmentSize);
+        this.vaults = LogStore.open(new File(folder, "vaults").toPath(), segmentSize);
+        this.compactionThreshold = compactionThreshold;
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Guilds Log Compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long interval = Math.max(1, compactionInterval);
+        this.compactor.scheduleWithFixedDelay(this::compact, interval, interval, TimeUnit.MINUTES);
+    }
+
+    private List<LogStore> stores() {
+        return Arrays.asList(guilds, challenges, challengeHistory, arenas, cooldowns, vaults);
+    }
+
+    /**
+     * Compact every log that holds enough garbage.
+     */
+    private void compact() {
+        for (LogStore store : stores()) {
+            store.deleteObsolete();
+            if (!store.needsCompaction(compactionThreshold)) {
+                continue;
+            }
+            try {
+                store.compact();
+            } catch (IOException ex) {
+                LoggingUtils.warn("Failed to compact a storage log: " + ex.getMessage());
+            }
+        }
+    }
+
+    public LogStore getGuilds() {
+        return guilds;
+    }
+
+    public LogStore getChallenges() {
+        return challenges;
+    }
+
+    public LogStore getChallengeHistory() {
+        return challengeHistory;
+    }
+
+    public LogStore getArenas() {
+        return arenas;
+    }
+
+    public LogStore getCooldowns() {
+        return cooldowns;
+    }
+
+    public LogStore getVaults() {
+        return vaults;
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogStore store : stores()) {
+            try {
+                store.close();
+            } catch (IOException ex) {
+                LoggingUtils.warn("Failed to close a storage log: " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,585 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.log;
+
+import me.glaremasters.guilds.utils.FileUtils;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A key/value store kept in a segmented append-only log.
+ *
+ * Every put or delete is appended to the active segment and an in-memory index points each key at its latest
+ * record, so reads never have to scan. Once the active segment outgrows the segment size it is sealed and
+ * memory-mapped for reads, and a new one is started. {@link #compact()} rewrites the live records of all sealed
+ * segments into a single segment that takes their place.
+ *
+ * Records are laid out as {@code [length][crc32][type][key length][key][value]}. A record that fails its checksum
+ * marks the end of the log, which is how a write torn by a crash is dropped again on the next start.
+ *
+ * Segments that can't be deleted yet, like on Windows while a mapping of them is still alive, are remembered and
+ * deleted by a later compaction. Whatever is left of them on the next start is ordered before the segment that
+ * replaced them and is dropped there.
+ */
+public final class LogStore implements AutoCloseable {
+    private static final String EXTENSION = ".seg";
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER = Integer.BYTES + Integer.BYTES + Byte.BYTES + Short.BYTES;
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final List<Segment> sealed = new CopyOnWriteArrayList<>();
+    private final List<Path> obsolete = new CopyOnWriteArrayList<>();
+    private Segment active;
+    private long nextId;
+    private boolean closed;
+
+    private LogStore(@NotNull Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Open the log in a directory, replaying every segment to rebuild the index.
+     *
+     * @param directory   the directory holding the segments
+     * @param segmentSize the size in bytes after which a new segment is started
+     * @return the opened store
+     * @throws IOException if the segments could not be read
+     */
+    public static LogStore open(@NotNull Path directory, long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        final LogStore store = new LogStore(directory, Math.max(1024, Math.min(segmentSize, Integer.MAX_VALUE)));
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        final List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.collect(Collectors.toList());
+        }
+
+        final List<Segment> segments = new ArrayList<>();
+        for (Path file : files) {
+            if (FileUtils.isTempFile(file)) {
+                // A compaction that never finished, the segments it was rewriting are still intact
+                delete(file);
+                continue;
+            }
+            final String name = file.getFileName().toString();
+            if (!name.endsWith(EXTENSION)) {
+                continue;
+            }
+            final String[] parts = name.substring(0, name.length() - EXTENSION.length()).split("-");
+            segments.add(Segment.open(file, Long.parseLong(parts[0]), Integer.parseInt(parts[1])));
+        }
+        segments.sort(Segment.ORDER);
+
+        // A compacted segment replaces everything ordered before it, whatever is left of those is a
+        // compaction that was interrupted while cleaning up
+        int start = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).generation > 0) {
+                start = i;
+            }
+        }
+        for (Segment replaced : segments.subList(0, start)) {
+            replaced.close();
+            delete(replaced.path);
+        }
+
+        final List<Segment> remaining = segments.subList(start, segments.size());
+        for (int i = 0; i < remaining.size(); i++) {
+            final Segment segment = remaining.get(i);
+            final boolean last = i == remaining.size() - 1;
+            final long valid = replay(segment);
+            if (valid < segment.size) {
+                if (last) {
+                    LoggingUtils.warn("Dropping " + (segment.size - valid) + " bytes of unfinished writes from " + segment.path);
+                    segment.channel.truncate(valid);
+                    segment.size = valid;
+                } else {
+                    LoggingUtils.severe("The segment " + segment.path + " is damaged, the records after offset " + valid + " could not be read.");
+                }
+            }
+            if (last && segment.generation == 0) {
+                active = segment;
+            } else {
+                segment.seal();
+                sealed.add(segment);
+            }
+        }
+
+        nextId = remaining.isEmpty() ? 1 : remaining.get(remaining.size() - 1).id + 1;
+        if (active == null) {
+            active = Segment.create(directory, nextId++, 0);
+        }
+    }
+
+    /**
+     * Replay the records of a segment into the index.
+     *
+     * @param segment the segment to replay
+     * @return the offset after the last valid record
+     * @throws IOException if the segment could not be read
+     */
+    private long replay(@NotNull Segment segment) throws IOException {
+        long offset = 0;
+        while (offset + HEADER <= segment.size) {
+            final int rest = ByteBuffer.wrap(segment.read(offset, Integer.BYTES)).getInt();
+            if (rest < HEADER - Integer.BYTES || offset + Integer.BYTES + rest > segment.size) {
+                break;
+            }
+            final int length = Integer.BYTES + rest;
+            final ByteBuffer record = ByteBuffer.wrap(segment.read(offset, length));
+            if (!isValid(record)) {
+                break;
+            }
+            final Location location = new Location(segment, offset, length);
+            if (record.get(8) == PUT) {
+                track(index.put(keyOf(record), location), location);
+            } else {
+                track(index.remove(keyOf(record)), null);
+            }
+            offset += length;
+        }
+        return offset;
+    }
+
+    /**
+     * Get the value stored for a key.
+     *
+     * @param key the key to look up
+     * @return the value or null if the key isn't stored
+     * @throws IOException if the value could not be read
+     */
+    @Nullable
+    public byte[] get(@NotNull String key) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            final Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            try {
+                return valueOf(ByteBuffer.wrap(location.segment.read(location.offset, location.length)));
+            } catch (ClosedChannelException ex) {
+                // The segment was compacted away underneath us, the index points at the new copy by now
+                if (attempt >= MAX_READ_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a key is stored.
+     *
+     * @param key the key to check
+     * @return true if there's a value for the key
+     */
+    public boolean contains(@NotNull String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Get all stored keys.
+     *
+     * @return a copy of the stored keys
+     */
+    @NotNull
+    public List<String> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Store a value for a key, replacing the current one.
+     *
+     * @param key   the key to store the value under
+     * @param value the value to store
+     * @throws IOException if the value could not be written
+     */
+    public void put(@NotNull String key, @NotNull byte[] value) throws IOException {
+        putAll(Collections.singletonList(key), Collections.singletonList(value));
+    }
+
+    /**
+     * Store a batch of values. The batch is synced to disk once at the end rather than per record.
+     *
+     * @param keys   the keys to store the values under
+     * @param values the values, in the same order as the keys
+     * @throws IOException if the values could not be written
+     */
+    public synchronized void putAll(@NotNull List<String> keys, @NotNull List<byte[]> values) throws IOException {
+        ensureOpen();
+        for (int i = 0; i < keys.size(); i++) {
+            final Location location = append(PUT, keys.get(i), values.get(i));
+            track(index.put(keys.get(i), location), location);
+        }
+        active.channel.force(false);
+    }
+
+    /**
+     * Remove the value stored for a key.
+     *
+     * @param key the key to remove
+     * @throws IOException if the removal could not be written
+     */
+    public void delete(@NotNull String key) throws IOException {
+        deleteAll(Collections.singletonList(key));
+    }
+
+    /**
+     * Remove a batch of keys. The batch is synced to disk once at the end rather than per record.
+     *
+     * @param keys the keys to remove
+     * @throws IOException if the removals could not be written
+     */
+    public synchronized void deleteAll(@NotNull List<String> keys) throws IOException {
+        ensureOpen();
+        boolean written = false;
+        for (String key : keys) {
+            if (!index.containsKey(key)) {
+                continue;
+            }
+            append(DELETE, key, new byte[0]);
+            track(index.remove(key), null);
+            written = true;
+        }
+        if (written) {
+            active.channel.force(false);
+        }
+    }
+
+    /**
+     * Check if the sealed segments hold enough overwritten or deleted records to be worth compacting.
+     *
+     * @param threshold the share of garbage, between 0 and 1, from which on to compact
+     * @return true if {@link #compact()} should run
+     */
+    public boolean needsCompaction(double threshold) {
+        long size = 0;
+        long live = 0;
+        for (Segment segment : sealed) {
+            size += segment.size;
+            live += segment.live.get();
+        }
+        return size > 0 && (size - live) >= size * threshold;
+    }
+
+    /**
+     * Rewrite the live records of all sealed segments into a single new segment and drop the old ones.
+     * Writes carry on in the active segment while this runs.
+     *
+     * @throws IOException if the compacted segment could not be written
+     */
+    public void compact() throws IOException {
+        deleteObsolete();
+        final List<Segment> targets;
+        synchronized (this) {
+            ensureOpen();
+            targets = new ArrayList<>(sealed);
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        final Set<Segment> covered = new HashSet<>(targets);
+        final Segment last = targets.get(targets.size() - 1);
+        final Path path = Segment.path(directory, last.id, last.generation + 1);
+        final Path temp = path.resolveSibling(path.getFileName() + FileUtils.TEMP_EXTENSION);
+
+        final List<String> keys = new ArrayList<>();
+        final List<Location> previous = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = 0;
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                final Location location = entry.getValue();
+                if (!covered.contains(location.segment)) {
+                    continue;
+                }
+                final ByteBuffer record = ByteBuffer.wrap(location.segment.read(location.offset, location.length));
+                while (record.hasRemaining()) {
+                    channel.write(record, offset + record.position());
+                }
+                keys.add(entry.getKey());
+                previous.add(location);
+                offsets.add(offset);
+                offset += location.length;
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path);
+        }
+
+        final Segment output = Segment.open(path, last.id, last.generation + 1);
+        output.seal();
+        synchronized (this) {
+            if (closed) {
+                output.close();
+                return;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                final Location location = new Location(output, offsets.get(i), previous.get(i).length);
+                // Only move keys that weren't written again or deleted while compacting
+                if (index.replace(keys.get(i), previous.get(i), location)) {
+                    track(previous.get(i), location);
+                }
+            }
+            sealed.removeAll(targets);
+            sealed.add(0, output);
+        }
+        // Oldest first, so an interrupted cleanup never leaves a put behind without the delete that followed it
+        for (Segment segment : targets) {
+            segment.close();
+            delete(segment.path);
+        }
+    }
+
+    /**
+     * Retry deleting the segments that couldn't be deleted when they were replaced.
+     */
+    void deleteObsolete() {
+        for (Path path : obsolete) {
+            try {
+                Files.deleteIfExists(path);
+                obsolete.remove(path);
+            } catch (IOException ex) {
+                // Still in use, try again next time
+            }
+        }
+    }
+
+    private void delete(@NotNull Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            LoggingUtils.warn("Could not delete " + path + " yet, it will be retried later: " + ex.getMessage());
+            obsolete.add(path);
+        }
+    }
+
+    /**
+     * Get the amount of stored keys.
+     *
+     * @return the amount of keys
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        active.channel.force(true);
+        active.close();
+        for (Segment segment : sealed) {
+            segment.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The log in " + directory + " is closed");
+        }
+    }
+
+    private Location append(byte type, @NotNull String key, @NotNull byte[] value) throws IOException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Key is too long: " + key);
+        }
+        final int length = HEADER + keyBytes.length + value.length;
+        if (active.size > 0 && active.size + length > segmentSize) {
+            roll();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(length - Integer.BYTES).putInt(0).put(type).putShort((short) keyBytes.length).put(keyBytes).put(value);
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, length - 8);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+
+        final long offset = active.size;
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, offset + buffer.position());
+        }
+        active.size += length;
+        return new Location(active, offset, length);
+    }
+
+    private void roll() throws IOException {
+        active.seal();
+        sealed.add(active);
+        active = Segment.create(directory, nextId++, 0);
+    }
+
+    private static void track(@Nullable Location previous, @Nullable Location current) {
+        if (previous != null) {
+            previous.segment.live.addAndGet(-previous.length);
+        }
+        if (current != null) {
+            current.segment.live.addAndGet(current.length);
+        }
+    }
+
+    private static boolean isValid(@NotNull ByteBuffer record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        return record.getInt(4) == (int) crc.getValue() && (record.get(8) == PUT || record.get(8) == DELETE)
+                && HEADER + record.getShort(9) <= record.capacity();
+    }
+
+    private static String keyOf(@NotNull ByteBuffer record) {
+        return new String(record.array(), HEADER, record.getShort(9), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] valueOf(@NotNull ByteBuffer record) {
+        final int start = HEADER + record.getShort(9);
+        final byte[] value = new byte[record.capacity() - start];
+        System.arraycopy(record.array(), start, value, 0, value.length);
+        return value;
+    }
+
+    /**
+     * Where the latest record of a key lives. Compared by identity so compaction only moves untouched keys.
+     */
+    private static final class Location {
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        private Location(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A single segment file. Named after its id and generation, where compacted segments take the id of the last
+     * segment they replace with the next generation so they are ordered right after it.
+     */
+    private static final class Segment {
+        private static final Comparator<Segment> ORDER = Comparator.<Segment>comparingLong(s -> s.id).thenComparingInt(s -> s.generation);
+
+        private final Path path;
+        private final long id;
+        private final int generation;
+        private final FileChannel channel;
+        private final AtomicLong live = new AtomicLong();
+        private volatile MappedByteBuffer mapped;
+        private volatile long size;
+
+        private Segment(Path path, long id, int generation, FileChannel channel) throws IOException {
+            this.path = path;
+            this.id = id;
+            this.generation = generation;
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        private static Path path(Path directory, long id, int generation) {
+            return directory.resolve(String.format(Locale.ROOT, "%012d-%d%s", id, generation, EXTENSION));
+        }
+
+        private static Segment open(Path path, long id, int generation) throws IOException {
+            return new Segment(path, id, generation, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        private static Segment create(Path directory, long id, int generation) throws IOException {
+            final Path path = path(directory, id, generation);
+            return new Segment(path, id, generation, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        /**
+         * Sync the segment and map it into memory, it won't be written to anymore.
+         */
+        private void seal() throws IOException {
+            channel.force(true);
+            if (size > 0 && size <= Integer.MAX_VALUE) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            final byte[] bytes = new byte[length];
+            final MappedByteBuffer buffer = mapped;
+            if (buffer != null) {
+                buffer.get((int) offset, bytes);
+                return bytes;
+            }
+            final ByteBuffer target = ByteBuffer.wrap(bytes);
+            while (target.hasRemaining()) {
+                if (channel.read(target, offset + target.position()) < 0) {
+                    throw new EOFException("Unexpected end of " + path);
+                }
+            }
+            return bytes;
+        }
+
+        private void close() throws IOException {
+            channel.close();
+            // Dropping the mapping lets it be unmapped, until then some platforms refuse to delete the file
+            mapped = null;
+        }
+    }
+}
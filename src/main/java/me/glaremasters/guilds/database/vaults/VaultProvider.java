@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.vaults;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A provider interface for storing guild vaults apart from the guild itself, keyed by guild id and vault index.
+ */
+public interface VaultProvider {
+
+    /**
+     * Creates the container that will hold vaults.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @throws IOException if an error occurs while creating the container.
+     */
+    void createContainer(@Nullable String tablePrefix) throws IOException;
+
+    /**
+     * Gets every stored vault, ordered by vault index.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @return all stored vaults.
+     * @throws IOException if an error occurs while retrieving the vaults.
+     */
+    List<VaultRecord> getAllVaults(@Nullable String tablePrefix) throws IOException;
+
+    /**
+     * Saves a batch of vaults, creating or replacing each one.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param guildIds    the ids of the guilds owning the vaults.
+     * @param indexes     the indexes of the vaults, in the same order as the guild ids.
+     * @param data        the serialized vaults, in the same order as the guild ids.
+     * @throws IOException if an error occurs while saving the vaults.
+     */
+    void upsertVaults(@Nullable String tablePrefix, @NotNull List<String> guildIds, @NotNull List<Integer> indexes, @NotNull List<String> data) throws IOException;
+
+    /**
+     * Deletes the vaults of a guild starting at an index.
+     *
+     * @param tablePrefix the prefix, if any, to use.
+     * @param guildId     the id of the guild owning the vaults.
+     * @param fromIndex   the first index to delete, 0 deletes every vault of the guild.
+     * @throws IOException if an error occurs while deleting the vaults.
+     */
+    void deleteVaults(@Nullable String tablePrefix, @NotNull String guildId, int fromIndex) throws IOException;
+}
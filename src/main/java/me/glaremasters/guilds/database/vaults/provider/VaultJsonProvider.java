@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.vaults.provider;
+
+import me.glaremasters.guilds.database.vaults.VaultProvider;
+import me.glaremasters.guilds.database.vaults.VaultRecord;
+import me.glaremasters.guilds.utils.FileUtils;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Stores every vault in its own file, in a folder per guild.
+ */
+public class VaultJsonProvider implements VaultProvider {
+    private static final String EXTENSION = ".vault";
+
+    private final File dataFolder;
+
+    public VaultJsonProvider(File dataFolder) {
+        this.dataFolder = dataFolder;
+    }
+
+    @Override
+    public void createContainer(@Nullable String tablePrefix) {
+        if (!this.dataFolder.exists()) {
+            this.dataFolder.mkdir();
+        }
+    }
+
+    @Override
+    public List<VaultRecord> getAllVaults(@Nullable String tablePrefix) {
+        final List<VaultRecord> vaults = new ArrayList<>();
+        for (File folder : Objects.requireNonNull(dataFolder.listFiles(File::isDirectory))) {
+            final UUID guildId;
+            try {
+                guildId = UUID.fromString(folder.getName());
+            } catch (IllegalArgumentException ex) {
+                continue;
+            }
+            for (File file : Objects.requireNonNull(folder.listFiles())) {
+                if (FileUtils.isTempFile(file.toPath())) {
+                    file.delete();
+                    continue;
+                }
+                if (!file.getName().endsWith(EXTENSION)) {
+                    continue;
+                }
+                try {
+                    final int index = Integer.parseInt(com.google.common.io.Files.getNameWithoutExtension(file.getName()));
+                    vaults.add(new VaultRecord(guildId, index, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)));
+                } catch (Exception ex) {
+                    LoggingUtils.severe("There was an error loading a vault from the following file: " + file.getAbsolutePath());
+                }
+            }
+        }
+        vaults.sort(Comparator.comparingInt(VaultRecord::getIndex));
+        return vaults;
+    }
+
+    @Override
+    public void upsertVaults(@Nullable String tablePrefix, @NotNull List<String> guildIds, @NotNull List<Integer> indexes, @NotNull List<String> data) throws IOException {
+        for (int i = 0; i < guildIds.size(); i++) {
+            final File folder = new File(dataFolder, guildIds.get(i));
+            if (!folder.exists()) {
+                folder.mkdir();
+            }
+            FileUtils.writeAtomically(new File(folder, indexes.get(i) + EXTENSION).toPath(), data.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void deleteVaults(@Nullable String tablePrefix, @NotNull String guildId, int fromIndex) {
+        final File folder = new File(dataFolder, guildId);
+        final File[] files = folder.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            try {
+                if (Integer.parseInt(com.google.common.io.Files.getNameWithoutExtension(file.getName())) >= fromIndex) {
+                    file.delete();
+                }
+            } catch (NumberFormatException ignored) {
+                // Not a vault file
+            }
+        }
+        if (fromIndex == 0) {
+            folder.delete();
+        }
+    }
+}
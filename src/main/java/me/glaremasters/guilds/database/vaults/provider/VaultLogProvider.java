@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.vaults.provider;
+
+import me.glaremasters.guilds.database.log.LogStore;
+import me.glaremasters.guilds.database.vaults.VaultProvider;
+import me.glaremasters.guilds.database.vaults.VaultRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores each vault as a record in an append-only log, keyed by guild id and vault index.
+ */
+public class VaultLogProvider implements VaultProvider {
+    private final LogStore store;
+
+    public VaultLogProvider(@NotNull LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void createContainer(@Nullable String tablePrefix) {
+        // The log is opened together with the backend
+    }
+
+    @Override
+    public List<VaultRecord> getAllVaults(@Nullable String tablePrefix) throws IOException {
+        final List<VaultRecord> vaults = new ArrayList<>();
+        for (String key : store.keys()) {
+            final byte[] data = store.get(key);
+            if (data == null) continue;
+            final int split = key.indexOf(':');
+            vaults.add(new VaultRecord(UUID.fromString(key.substring(0, split)), Integer.parseInt(key.substring(split + 1)), new String(data, StandardCharsets.UTF_8)));
+        }
+        vaults.sort(Comparator.comparingInt(VaultRecord::getIndex));
+        return vaults;
+    }
+
+    @Override
+    public void upsertVaults(@Nullable String tablePrefix, @NotNull List<String> guildIds, @NotNull List<Integer> indexes, @NotNull List<String> data) throws IOException {
+        final List<String> keys = new ArrayList<>(guildIds.size());
+        final List<byte[]> values = new ArrayList<>(guildIds.size());
+        for (int i = 0; i < guildIds.size(); i++) {
+            keys.add(key(guildIds.get(i), indexes.get(i)));
+            values.add(data.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        store.putAll(keys, values);
+    }
+
+    @Override
+    public void deleteVaults(@Nullable String tablePrefix, @NotNull String guildId, int fromIndex) throws IOException {
+        // The vaults of a guild are always written with consecutive indexes, so there's no need to scan every key
+        final List<String> keys = new ArrayList<>();
+        for (int index = fromIndex; store.contains(key(guildId, index)); index++) {
+            keys.add(key(guildId, index));
+        }
+        store.deleteAll(keys);
+    }
+
+    private static String key(@NotNull String guildId, int index) {
+        return guildId + ":" + index;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.vaults.provider;
+
+import me.glaremasters.guilds.database.vaults.VaultProvider;
+import me.glaremasters.guilds.database.vaults.VaultRecord;
+import me.glaremasters.guilds.database.vaults.VaultRowMapper;
+import me.glaremasters.guilds.utils.UUIDUtils;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public interface VaultSQLiteProvider extends VaultProvider {
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_vault (\n" +
+                    "  `guild_id` BLOB NOT NULL,\n" +
+                    "  `vault_index` INTEGER NOT NULL,\n" +
+                    "  `data` TEXT NOT NULL,\n" +
+                    "  PRIMARY KEY (`guild_id`, `vault_index`));"
+    )
+    void createContainer(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_vault ORDER BY vault_index")
+    @RegisterRowMapper(VaultRowMapper.class)
+    List<VaultRecord> getAllVaults(@Define("prefix") @NotNull String prefix);
+
+    @SqlBatch("INSERT INTO <prefix>guild_vault(guild_id, vault_index, data) VALUES (:guild_id, :vault_index, :data) ON CONFLICT(guild_id, vault_index) DO UPDATE SET data = excluded.data")
+    void upsertVaultRows(@Define("prefix") @NotNull String prefix, @Bind("guild_id") @NotNull List<byte[]> guildIds, @Bind("vault_index") @NotNull List<Integer> indexes, @Bind("data") @NotNull List<String> data);
+
+    @Override
+    default void upsertVaults(@Nullable String prefix, @NotNull List<String> guildIds, @NotNull List<Integer> indexes, @NotNull List<String> data) {
+        upsertVaultRows(prefix, guildIds.stream().map(id -> UUIDUtils.toBytes(UUID.fromString(id))).collect(Collectors.toList()), indexes, data);
+    }
+
+    @SqlUpdate("DELETE FROM <prefix>guild_vault WHERE guild_id = :guild_id AND vault_index >= :from_index")
+    void deleteVaultRows(@Define("prefix") @NotNull String prefix, @Bind("guild_id") @NotNull byte[] guildId, @Bind("from_index") int fromIndex);
+
+    @Override
+    default void deleteVaults(@Nullable String prefix, @NotNull String guildId, int fromIndex) {
+        deleteVaultRows(prefix, UUIDUtils.toBytes(UUID.fromString(guildId)), fromIndex);
+    }
+}
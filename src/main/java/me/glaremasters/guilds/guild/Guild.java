@@ -25,9 +25,12 @@ package me.glaremasters.guilds.guild;
 
 import ch.jalu.configme.SettingsManager;
 import co.aikar.commands.CommandManager;
+import com.google.gson.annotations.JsonAdapter;
 import fr.euphyllia.energie.model.SchedulerType;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.configuration.sections.GuildListSettings;
+import me.glaremasters.guilds.guild.adapters.GuildInvitesAdapter;
+import me.glaremasters.guilds.guild.adapters.GuildMembersAdapter;
 import me.glaremasters.guilds.messages.Messages;
 import net.milkbowl.vault.permission.Permission;
 import org.bukkit.Bukkit;
@@ -39,7 +42,14 @@ import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -49,7 +59,7 @@ public class Guild {
         this.id = id;
     }
 
-    public Guild(UUID id, String name, String prefix, String motd, GuildMember guildMaster, GuildHome home, GuildSkull guildSkull, Status status, GuildTier tier, GuildScore guildScore, double balance, List<GuildMember> members, List<UUID> invitedMembers, List<UUID> allies, List<UUID> pendingAllies, List<GuildCode> codes, List<String> vaults, long lastDefended) {
+    public Guild(UUID id, String name, String prefix, String motd, GuildMember guildMaster, GuildHome home, GuildSkull guildSkull, Status status, GuildTier tier, GuildScore guildScore, double balance, List<GuildMember> members, Map<UUID, GuildInvite> invitedMembers, List<UUID> allies, Map<UUID, GuildInvite> pendingAllies, List<GuildCode> codes, List<String> vaults, long lastDefended) {
         this.id = id;
         this.name = name;
         this.prefix = prefix;
@@ -61,9 +71,9 @@ public class Guild {
         this.tier = tier;
         this.guildScore = guildScore;
         this.balance = balance;
-        this.members = members;
+        this.members = byUuid(members);
         this.invitedMembers = invitedMembers;
-        this.allies = allies;
+        this.allies = allies == null ? null : new LinkedHashSet<>(allies);
         this.pendingAllies = pendingAllies;
         this.codes = codes;
         this.vaults = vaults;
@@ -76,70 +86,115 @@ public class Guild {
 
     public void setName(String name) {
         this.name = name;
+        markDirty();
     }
 
     public void setPrefix(String prefix) {
         this.prefix = prefix;
+        markDirty();
     }
 
     public void setMotd(String motd) {
         this.motd = motd;
+        markDirty();
     }
 
     public void setGuildMaster(GuildMember guildMaster) {
         this.guildMaster = guildMaster;
+        markDirty();
     }
 
     public void setHome(GuildHome home) {
         this.home = home;
+        markDirty();
     }
 
     public void setGuildSkull(GuildSkull guildSkull) {
         this.guildSkull = guildSkull;
+        markDirty();
     }
 
     public void setStatus(Status status) {
         this.status = status;
+        markDirty();
     }
 
     public void setTier(GuildTier tier) {
         this.tier = tier;
+        markDirty();
     }
 
     public void setGuildScore(GuildScore guildScore) {
         this.guildScore = guildScore;
+        markDirty();
     }
 
     public void setBalance(double balance) {
         this.balance = balance;
+        markDirty();
     }
 
     public void setMembers(List<GuildMember> members) {
-        this.members = members;
+        this.members = byUuid(members);
+        markDirty();
     }
 
-    public void setInvitedMembers(List<UUID> invitedMembers) {
+    public void setInvitedMembers(Map<UUID, GuildInvite> invitedMembers) {
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            getInvitedMembers().forEach(uuid -> observer.onInviteRemoved(this, uuid));
+        }
         this.invitedMembers = invitedMembers;
+        if (observer != null) {
+            getInvitedMembers().forEach(uuid -> observer.onInviteAdded(this, uuid));
+        }
+        markDirty();
     }
 
     public void setAllies(List<UUID> allies) {
-        this.allies = allies;
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            allies().forEach(ally -> observer.onAllyRemoved(this, ally));
+        }
+        this.allies = allies == null ? null : new LinkedHashSet<>(allies);
+        if (observer != null) {
+            allies().forEach(ally -> observer.onAllyAdded(this, ally));
+        }
+        markDirty();
     }
 
-    public void setPendingAllies(List<UUID> pendingAllies) {
+    public void setPendingAllies(Map<UUID, GuildInvite> pendingAllies) {
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            allyRequests().keySet().forEach(requester -> observer.onAllyRequestRemoved(this, requester));
+        }
         this.pendingAllies = pendingAllies;
+        if (observer != null) {
+            allyRequests().keySet().forEach(requester -> observer.onAllyRequestAdded(this, requester));
+        }
+        markDirty();
     }
 
     public void setCodes(List<GuildCode> codes) {
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            getCodes().forEach(code -> observer.onCodeRemoved(this, code.getId()));
+        }
         this.codes = codes;
+        if (observer != null) {
+            getCodes().forEach(code -> observer.onCodeAdded(this, code.getId()));
+        }
+        markDirty();
     }
 
     public void setVaults(List<String> vaults) {
         this.vaults = vaults;
+        markDirty();
     }
 
     public void setLastDefended(long lastDefended) {
         this.lastDefended = lastDefended;
+        markDirty();
     }
 
     public long getCreationDate() {
@@ -148,6 +203,44 @@ public class Guild {
 
     public void setCreationDate(long creationDate) {
         this.creationDate = creationDate;
+        markDirty();
+    }
+
+    /**
+     * Create a copy of this guild that can safely be serialized off the main thread while the original keeps changing.
+     * Members, codes and the score are copied as well, the copy has no observer.
+     *
+     * @return the snapshot of this guild
+     */
+    public Guild snapshot() {
+        final Guild copy = new Guild(id, name, prefix, motd, copyMember(guildMaster), home, guildSkull, status, tier,
+                copyScore(getGuildScore()), balance,
+                members().values().stream().map(Guild::copyMember).collect(Collectors.toList()),
+                new LinkedHashMap<>(invites()),
+                getAllies(),
+                new LinkedHashMap<>(allyRequests()),
+                getCodes().stream().map(c -> new GuildCode(c.getId(), c.getUses(), c.getCreator(), new ArrayList<>(c.getRedeemers()))).collect(Collectors.toList()),
+                new ArrayList<>(getVaults()),
+                lastDefended);
+        copy.creationDate = creationDate;
+        return copy;
+    }
+
+    private static GuildMember copyMember(GuildMember member) {
+        if (member == null) {
+            return null;
+        }
+        final GuildMember copy = new GuildMember(member.getUuid(), member.getRole());
+        copy.setJoinDate(member.getJoinDate());
+        copy.setLastLogin(member.getLastLogin());
+        return copy;
+    }
+
+    private static GuildScore copyScore(GuildScore score) {
+        final GuildScore copy = new GuildScore();
+        copy.setWins(score.getWins());
+        copy.setLoses(score.getLoses());
+        return copy;
     }
 
     public enum Status {
@@ -169,11 +262,14 @@ public class Guild {
     private GuildScore guildScore;
     private double balance;
 
-    private List<GuildMember> members;
+    @JsonAdapter(GuildMembersAdapter.class)
+    private Map<UUID, GuildMember> members;
 
-    private List<UUID> invitedMembers;
-    private List<UUID> allies;
-    private List<UUID> pendingAllies;
+    @JsonAdapter(GuildInvitesAdapter.class)
+    private Map<UUID, GuildInvite> invitedMembers;
+    private Set<UUID> allies;
+    @JsonAdapter(GuildInvitesAdapter.class)
+    private Map<UUID, GuildInvite> pendingAllies;
 
     private List<GuildCode> codes;
 
@@ -182,13 +278,113 @@ public class Guild {
     private long lastDefended;
     private long creationDate;
 
+    private transient volatile boolean dirty;
+    private transient GuildObserver observer;
+    private transient long syncVersion;
+
     /**
      * Get a member in the guild
      * @param uuid the uuid of the member
      * @return the member which was found
      */
     public GuildMember getMember(UUID uuid) {
-        return members.stream().filter(m -> m.getUuid().equals(uuid)).findFirst().orElse(null);
+        return members().get(uuid);
+    }
+
+    private Map<UUID, GuildMember> members() {
+        if (this.members == null) {
+            this.members = new LinkedHashMap<>();
+        }
+        return this.members;
+    }
+
+    private static Map<UUID, GuildMember> byUuid(List<GuildMember> members) {
+        if (members == null) {
+            return null;
+        }
+        final Map<UUID, GuildMember> byUuid = new LinkedHashMap<>();
+        members.forEach(member -> byUuid.put(member.getUuid(), member));
+        return byUuid;
+    }
+
+    /**
+     * Flag the guild as changed so it gets written on the next save round.
+     * Callers that modify nested objects (members, codes, score) directly should call this afterwards.
+     */
+    public void markDirty() {
+        this.dirty = true;
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            observer.onChange(this);
+        }
+    }
+
+    /**
+     * Check if the guild has changed since it was last handed to storage
+     * @return changed or not
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Set the observer that gets notified whenever this guild changes.
+     *
+     * @param observer the observer, or null to stop notifying
+     */
+    public void setObserver(GuildObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Clear the changed flag once the guild has been handed to storage
+     */
+    public void clearDirty() {
+        this.dirty = false;
+    }
+
+    /**
+     * Get the stored version a snapshot was changed from, when synchronizing with other servers.
+     *
+     * @return the version, or 0 if it isn't known
+     */
+    public long getSyncVersion() {
+        return syncVersion;
+    }
+
+    /**
+     * Set the stored version a snapshot was changed from. Only set on snapshots, right before they are written.
+     *
+     * @param syncVersion the version
+     */
+    public void setSyncVersion(long syncVersion) {
+        this.syncVersion = syncVersion;
+    }
+
+    /**
+     * Take over the state of another copy of this guild, keeping the vaults and the observer of this one.
+     * Doesn't flag the guild as changed.
+     *
+     * @param other the copy to take the state of
+     */
+    void copyFrom(Guild other) {
+        this.name = other.name;
+        this.prefix = other.prefix;
+        this.motd = other.motd;
+        this.guildMaster = other.guildMaster;
+        this.home = other.home;
+        this.guildSkull = other.guildSkull;
+        this.status = other.status;
+        this.tier = other.tier;
+        this.guildScore = other.guildScore;
+        this.balance = other.balance;
+        this.members = other.members;
+        this.invitedMembers = other.invitedMembers;
+        this.allies = other.allies;
+        this.pendingAllies = other.pendingAllies;
+        this.codes = other.codes;
+        this.lastDefended = other.lastDefended;
+        this.creationDate = other.creationDate;
     }
 
     /**
@@ -207,10 +403,11 @@ public class Guild {
      */
     public void addMember(OfflinePlayer player, GuildHandler guildHandler) {
         GuildMember member = new GuildMember(player.getUniqueId(), guildHandler.getLowestGuildRole());
-        if (members.contains(member)) return;
+        if (members().containsKey(member.getUuid())) return;
         removeInvitedMember(member.getUuid());
-        members.add(member);
+        members().put(member.getUuid(), member);
         member.setJoinDate(System.currentTimeMillis());
+        markDirty();
     }
 
     /**
@@ -218,7 +415,8 @@ public class Guild {
      * @param guildMember
      */
     public void addMemberByCode(GuildMember guildMember) {
-        members.add(guildMember);
+        members().put(guildMember.getUuid(), guildMember);
+        markDirty();
     }
 
     /**
@@ -226,7 +424,8 @@ public class Guild {
      * @param guildMember the guildmember to remove
      */
     public void removeMember(GuildMember guildMember){
-        members.remove(guildMember);
+        if (guildMember == null || members().remove(guildMember.getUuid()) == null) return;
+        markDirty();
     }
 
     /**
@@ -242,15 +441,42 @@ public class Guild {
      * @param guild the guild to remove
      */
     public void removeAlly(Guild guild) {
-        allies.remove(guild.getId());
+        removeAlly(guild.getId());
+    }
+
+    /**
+     * Removes an ally's id from the set
+     * @param guild the id of the guild to remove
+     */
+    public void removeAlly(UUID guild) {
+        if (!allies().remove(guild)) return;
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            observer.onAllyRemoved(this, guild);
+        }
+        markDirty();
     }
 
     /**
-     * Add an ally's id to the list
+     * Add an ally's id to the set
      * @param guild the guild to add
      */
     public void addAlly(Guild guild) {
-        allies.add(guild.getId());
+        if (!allies().add(guild.getId())) return;
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            observer.onAllyAdded(this, guild.getId());
+        }
+        markDirty();
+    }
+
+    /**
+     * Check if another guild is an ally of this one
+     * @param guild the id of the other guild
+     * @return allies or not
+     */
+    public boolean isAlly(UUID guild) {
+        return allies().contains(guild);
     }
 
     /**
@@ -258,7 +484,7 @@ public class Guild {
      * @return if they have allies or not
      */
     public boolean hasAllies() {
-        return !allies.isEmpty();
+        return !allies().isEmpty();
     }
 
     /**
@@ -266,15 +492,25 @@ public class Guild {
      * @return if a guild has pending allies or not
      */
     public boolean hasPendingAllies() {
-        return !pendingAllies.isEmpty();
+        return !allyRequests().isEmpty();
     }
 
     /**
-     * Adds a pending ally's id to the list
-     * @param guild the guild to add
+     * Adds an ally request from another guild, replacing one that expired
+     * @param guild the guild asking to become allies
+     * @param inviter the player who sent the request, or null if it isn't known
+     * @param ttl how long the request stays valid, in seconds
      */
-    public void addPendingAlly(Guild guild) {
-        pendingAllies.add(guild.getId());
+    public void addPendingAlly(Guild guild, UUID inviter, long ttl) {
+        final long now = System.currentTimeMillis();
+        final GuildInvite existing = allyRequests().get(guild.getId());
+        if (existing != null && !existing.isExpired(now)) return;
+        allyRequests().put(guild.getId(), new GuildInvite(guild.getId(), inviter, now, ttl));
+        final GuildObserver observer = this.observer;
+        if (existing == null && observer != null) {
+            observer.onAllyRequestAdded(this, guild.getId());
+        }
+        markDirty();
     }
 
     /**
@@ -283,7 +519,8 @@ public class Guild {
      * @return if they have a pending invite
      */
     public boolean isAllyPending(Guild guild) {
-        return pendingAllies.contains(guild.getId());
+        final GuildInvite request = allyRequests().get(guild.getId());
+        return request != null && !request.isExpired(System.currentTimeMillis());
     }
 
     /**
@@ -291,17 +528,40 @@ public class Guild {
      * @param guild the guild to remove
      */
     public void removePendingAlly(Guild guild) {
-        pendingAllies.remove(guild.getId());
+        removePendingAlly(guild.getId());
     }
 
     /**
-     * Invites a member to this guild.
+     * Removes the ally request of another guild
+     * @param guild the id of the guild to remove
+     */
+    public void removePendingAlly(UUID guild) {
+        if (allyRequests().remove(guild) != null) {
+            final GuildObserver observer = this.observer;
+            if (observer != null) {
+                observer.onAllyRequestRemoved(this, guild);
+            }
+            markDirty();
+        }
+    }
+
+    /**
+     * Invites a member to this guild, replacing an invite that expired.
      *
      * @param uuid the UUID of the player.
+     * @param inviter the UUID of the player who sent the invite, or null if it isn't known.
+     * @param ttl how long the invite stays valid, in seconds.
      */
-    public void inviteMember(UUID uuid) {
-        if (invitedMembers.contains(uuid)) return;
-        invitedMembers.add(uuid);
+    public void inviteMember(UUID uuid, UUID inviter, long ttl) {
+        final long now = System.currentTimeMillis();
+        final GuildInvite existing = invites().get(uuid);
+        if (existing != null && !existing.isExpired(now)) return;
+        invites().put(uuid, new GuildInvite(uuid, inviter, now, ttl));
+        final GuildObserver observer = this.observer;
+        if (existing == null && observer != null) {
+            observer.onInviteAdded(this, uuid);
+        }
+        markDirty();
     }
 
     /**
@@ -310,7 +570,8 @@ public class Guild {
      * @return invited or not
      */
     public boolean checkIfInvited(Player player) {
-        return invitedMembers.contains(player.getUniqueId());
+        final GuildInvite invite = invites().get(player.getUniqueId());
+        return invite != null && !invite.isExpired(System.currentTimeMillis());
     }
 
     /**
@@ -319,15 +580,21 @@ public class Guild {
      * @param uuid the member to remove from the invites.
      */
     public void removeInvitedMember(UUID uuid) {
-        invitedMembers.remove(uuid);
+        if (invites().remove(uuid) != null) {
+            final GuildObserver observer = this.observer;
+            if (observer != null) {
+                observer.onInviteRemoved(this, uuid);
+            }
+            markDirty();
+        }
     }
 
     /**
      * Get the amount of members
-     * @return size of members list.
+     * @return amount of members.
      */
     public int getSize() {
-        return members.size();
+        return members().size();
     }
 
     /**
@@ -336,7 +603,7 @@ public class Guild {
      * @return a List of online members
      */
     public List<GuildMember> getOnlineMembers() {
-        return members.stream().filter(GuildMember::isOnline).collect(Collectors.toList());
+        return members().values().stream().filter(GuildMember::isOnline).collect(Collectors.toList());
     }
 
     /**
@@ -360,7 +627,7 @@ public class Guild {
      * @return list of players
      */
     public List<OfflinePlayer> getAllAsPlayers() {
-        return members.stream().map(GuildMember::getAsOfflinePlayer).collect(Collectors.toList());
+        return members().values().stream().map(GuildMember::getAsOfflinePlayer).collect(Collectors.toList());
     }
 
     /**
@@ -397,6 +664,11 @@ public class Guild {
      */
     public void addCode(String code, int uses, Player creator) {
         codes.add(new GuildCode(code, uses, creator.getUniqueId(), new ArrayList<>()));
+        final GuildObserver observer = this.observer;
+        if (observer != null) {
+            observer.onCodeAdded(this, code);
+        }
+        markDirty();
     }
 
     /**
@@ -404,7 +676,13 @@ public class Guild {
      * @param code the code being checked
      */
     public void removeCode(String code) {
-        codes.removeIf(s -> s.getId().equals(code));
+        if (codes.removeIf(s -> s.getId().equals(code))) {
+            final GuildObserver observer = this.observer;
+            if (observer != null) {
+                observer.onCodeRemoved(this, code);
+            }
+            markDirty();
+        }
     }
 
     /**
@@ -599,6 +877,7 @@ public class Guild {
             } catch (Exception ex) {
                 guildSkull = new GuildSkull(settingsManager.getProperty(GuildListSettings.GUILD_LIST_HEAD_DEFAULT_URL));
             }
+            markDirty();
         }).execute();
     }
 
@@ -646,34 +925,133 @@ public class Guild {
         return this.balance;
     }
 
+    /**
+     * Get the members of this guild in the order they joined.
+     *
+     * @return a copy of the members, use {@link #getMember(UUID)} to look a single one up
+     */
     public List<GuildMember> getMembers() {
-        if (this.members == null) {
-            this.members = new ArrayList<>();
-        }
-        return this.members;
+        return new ArrayList<>(members().values());
     }
 
+    /**
+     * Get the players invited to this guild, including invites that expired but weren't removed yet.
+     *
+     * @return a copy of the invited players
+     */
     public List<UUID> getInvitedMembers() {
+        return new ArrayList<>(invites().keySet());
+    }
+
+    /**
+     * Get the invites of this guild, including invites that expired but weren't removed yet.
+     *
+     * @return the invites, which can't be modified
+     */
+    public Collection<GuildInvite> getInvites() {
+        return Collections.unmodifiableCollection(invites().values());
+    }
+
+    /**
+     * Get the invite of a player to this guild.
+     *
+     * @param uuid the invited player
+     * @return the invite, or null if the player isn't invited
+     */
+    public GuildInvite getInvite(UUID uuid) {
+        return invites().get(uuid);
+    }
+
+    private Map<UUID, GuildInvite> invites() {
         if (this.invitedMembers == null) {
-            this.invitedMembers = new ArrayList<>();
+            this.invitedMembers = new LinkedHashMap<>();
         }
         return this.invitedMembers;
     }
 
+    /**
+     * Get the allies of this guild.
+     *
+     * @return a copy of the ids of the allies, use {@link #isAlly(UUID)} to check a single one
+     */
     public List<UUID> getAllies() {
+        return new ArrayList<>(allies());
+    }
+
+    private Set<UUID> allies() {
         if (this.allies == null) {
-            this.allies = new ArrayList<>();
+            this.allies = new LinkedHashSet<>();
         }
         return this.allies;
     }
 
+    /**
+     * Get the guilds that asked to become allies, including requests that expired but weren't removed yet.
+     *
+     * @return a copy of the requesting guilds
+     */
     public List<UUID> getPendingAllies() {
+        return new ArrayList<>(allyRequests().keySet());
+    }
+
+    /**
+     * Get the ally requests sent to this guild, including requests that expired but weren't removed yet.
+     *
+     * @return the requests, which can't be modified
+     */
+    public Collection<GuildInvite> getAllyRequests() {
+        return Collections.unmodifiableCollection(allyRequests().values());
+    }
+
+    /**
+     * Get the ally request of another guild.
+     *
+     * @param guild the id of the requesting guild
+     * @return the request, or null if there is none
+     */
+    public GuildInvite getAllyRequest(UUID guild) {
+        return allyRequests().get(guild);
+    }
+
+    private Map<UUID, GuildInvite> allyRequests() {
         if (this.pendingAllies == null) {
-            this.pendingAllies = new ArrayList<>();
+            this.pendingAllies = new LinkedHashMap<>();
         }
         return this.pendingAllies;
     }
 
+    /**
+     * Give invites and ally requests stored before they expired a time, and drop the ones that expired while the
+     * guild wasn't loaded. Called while the guild loads, before anything observes it.
+     *
+     * @param now            the current time in milliseconds
+     * @param inviteTtl      how long invites stay valid, in seconds
+     * @param allyRequestTtl how long ally requests stay valid, in seconds
+     * @return true if anything changed
+     */
+    boolean refreshRequests(long now, long inviteTtl, long allyRequestTtl) {
+        final boolean invitesChanged = refreshRequests(invites(), now, inviteTtl);
+        final boolean requestsChanged = refreshRequests(allyRequests(), now, allyRequestTtl);
+        return invitesChanged || requestsChanged;
+    }
+
+    private static boolean refreshRequests(Map<UUID, GuildInvite> requests, long now, long ttl) {
+        boolean changed = false;
+        final Iterator<Map.Entry<UUID, GuildInvite>> iterator = requests.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<UUID, GuildInvite> entry = iterator.next();
+            final GuildInvite request = entry.getValue();
+            if (request.getTtl() <= 0 && ttl > 0) {
+                entry.setValue(new GuildInvite(request.getTarget(), request.getInviter(), now, ttl));
+                changed = true;
+            } else if (request.isExpired(now)) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
     public GuildScore getGuildScore() {
         if (this.guildScore == null) {
             this.guildScore = new GuildScore();
@@ -712,9 +1090,9 @@ public class Guild {
         private GuildScore guildScore;
         private double balance;
         private List<GuildMember> members;
-        private List<UUID> invitedMembers;
+        private Map<UUID, GuildInvite> invitedMembers;
         private List<UUID> allies;
-        private List<UUID> pendingAllies;
+        private Map<UUID, GuildInvite> pendingAllies;
         private List<GuildCode> codes;
         private List<String> vaults;
         private long lastDefended;
@@ -782,7 +1160,7 @@ public class Guild {
             return this;
         }
 
-        public Guild.GuildBuilder invitedMembers(List<UUID> invitedMembers) {
+        public Guild.GuildBuilder invitedMembers(Map<UUID, GuildInvite> invitedMembers) {
             this.invitedMembers = invitedMembers;
             return this;
         }
@@ -792,7 +1170,7 @@ public class Guild {
             return this;
         }
 
-        public Guild.GuildBuilder pendingAllies(List<UUID> pendingAllies) {
+        public Guild.GuildBuilder pendingAllies(Map<UUID, GuildInvite> pendingAllies) {
             this.pendingAllies = pendingAllies;
             return this;
         }
@@ -27,11 +27,16 @@ import ch.jalu.configme.SettingsManager;
 import co.aikar.commands.ACFBukkitUtil;
 import co.aikar.commands.ACFUtil;
 import co.aikar.commands.PaperCommandManager;
+import fr.euphyllia.energie.model.SchedulerType;
 import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.configuration.sections.CooldownSettings;
 import me.glaremasters.guilds.configuration.sections.GuildSettings;
 import me.glaremasters.guilds.configuration.sections.GuildVaultSettings;
 import me.glaremasters.guilds.configuration.sections.PluginSettings;
+import me.glaremasters.guilds.configuration.sections.StorageSettings;
 import me.glaremasters.guilds.configuration.sections.TicketSettings;
+import me.glaremasters.guilds.database.DatabaseBackend;
+import me.glaremasters.guilds.database.GuildWriteQueue;
 import me.glaremasters.guilds.exceptions.ExpectationNotMet;
 import me.glaremasters.guilds.messages.Messages;
 import me.glaremasters.guilds.utils.ClaimUtils;
@@ -45,7 +50,6 @@ import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
@@ -57,11 +61,20 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -69,16 +82,31 @@ public class GuildHandler {
 
     private final Guilds guildsPlugin;
     private final SettingsManager settingsManager;
-    private final Map<UUID, Guild> guilds = new HashMap<>();
+    private final Map<UUID, Guild> guilds = new ConcurrentHashMap<>();
+    private final Map<String, Guild> nameIndex = new ConcurrentHashMap<>();
     private final List<GuildRole> roles = new ArrayList<>();
     private final List<GuildTier> tiers = new ArrayList<>();
     private final List<Player> spies = new ArrayList<>();
 
-    private final Map<Guild, List<Inventory>> vaults = new HashMap<>();
+    private final VaultCache vaultCache;
     private final List<Player> opened = new ArrayList<>();
-
-    private final Map<UUID, String> lookupCache = new HashMap<>();
-    private final Map<UUID, UUID> memberCache = new HashMap<>();
+    // The guild whose vault each viewer opened, which isn't their own guild for admins or other plugins
+    private final Map<UUID, UUID> openedVaults = new HashMap<>();
+    private final Set<UUID> changedVaults = ConcurrentHashMap.newKeySet();
+    // Guilds whose vaults were serialized since they were last put into the write-ahead log
+    private final Set<UUID> unloggedVaults = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> changedGuilds = ConcurrentHashMap.newKeySet();
+    private GuildWriteQueue writeQueue;
+    private final long snapshotBudget;
+
+    // Filled by the loader thread, then read from the main thread and async command completions
+    private final Map<UUID, String> lookupCache = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> memberCache = new ConcurrentHashMap<>();
+    private final Map<String, UUID> codeCache = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> inviteCache = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> allyCache = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> allyRequestCache = new ConcurrentHashMap<>();
+    private final GuildObserver observer = new HandlerObserver();
 
     private boolean migrating = false;
     public boolean papi = false;
@@ -88,55 +116,293 @@ public class GuildHandler {
     public GuildHandler(Guilds guildsPlugin, SettingsManager settingsManager) {
         this.guildsPlugin = guildsPlugin;
         this.settingsManager = settingsManager;
+        this.vaultCache = new VaultCache(this, settingsManager);
 
         loadRoles();
         loadTiers();
+        snapshotBudget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settingsManager.getProperty(StorageSettings.SNAPSHOT_BUDGET)));
+    }
+
+    /**
+     * Loads the guilds from the database and starts writing their changes. Runs off the main thread while the plugin
+     * enables, nothing else uses the guilds until the plugin reports its data as ready.
+     */
+    public void load() {
         try {
             loadGuilds();
         } catch (IOException e) {
             e.printStackTrace();
         }
+
+        // SQLite only allows a single writer at a time, more threads would just fight over the lock
+        final int writerThreads = guildsPlugin.getDatabase().getBackend() == DatabaseBackend.SQLITE ? 1 : settingsManager.getProperty(StorageSettings.WRITER_THREADS);
+        writeQueue = new GuildWriteQueue(guildsPlugin, this, settingsManager.getProperty(StorageSettings.WRITE_QUEUE_CAPACITY), guildsPlugin.getDatabase().getBatchSize(), writerThreads);
+        writeQueue.start();
+        guilds.values().forEach(guild -> guild.setObserver(observer));
+        // Only once observed, so invites that expire right away still update the caches
+        guilds.values().forEach(guild -> scheduleExpiries(guild, Collections.emptyMap(), Collections.emptyMap()));
+        // Guilds that were repaired while loading
+        saveData();
+        Guilds.getScheduler().scheduleSyncRepeating(SchedulerType.SYNC, task -> snapshotChanged(), 1L, 1L);
+        Guilds.getScheduler().scheduleSyncRepeating(SchedulerType.SYNC, task -> vaultCache.evictIdle(), 20L * 30, 20L * 30);
+    }
+
+    /**
+     * Remembers a guild to be snapshotted whenever it changes, and keeps the code, invite and ally caches up to date.
+     */
+    private final class HandlerObserver implements GuildObserver {
+        @Override
+        public void onChange(@NotNull Guild guild) {
+            changedGuilds.add(guild.getId());
+        }
+
+        @Override
+        public void onInviteAdded(@NotNull Guild guild, @NotNull UUID player) {
+            addToInviteCache(player, guild.getId());
+        }
+
+        @Override
+        public void onInviteRemoved(@NotNull Guild guild, @NotNull UUID player) {
+            removeFromInviteCache(player, guild.getId());
+        }
+
+        @Override
+        public void onAllyAdded(@NotNull Guild guild, @NotNull UUID ally) {
+            addEdge(allyCache, ally, guild.getId());
+        }
+
+        @Override
+        public void onAllyRemoved(@NotNull Guild guild, @NotNull UUID ally) {
+            removeEdge(allyCache, ally, guild.getId());
+        }
+
+        @Override
+        public void onAllyRequestAdded(@NotNull Guild guild, @NotNull UUID requester) {
+            addEdge(allyRequestCache, requester, guild.getId());
+        }
+
+        @Override
+        public void onAllyRequestRemoved(@NotNull Guild guild, @NotNull UUID requester) {
+            removeEdge(allyRequestCache, requester, guild.getId());
+        }
+
+        @Override
+        public void onCodeAdded(@NotNull Guild guild, @NotNull String code) {
+            codeCache.put(code, guild.getId());
+        }
+
+        @Override
+        public void onCodeRemoved(@NotNull Guild guild, @NotNull String code) {
+            codeCache.remove(code, guild.getId());
+        }
+    }
+
+    /**
+     * Add the codes, invites and allies of a guild to their caches.
+     *
+     * @param guild the guild to cache
+     */
+    private void cacheLookups(@NotNull final Guild guild) {
+        guild.getCodes().forEach(code -> codeCache.put(code.getId(), guild.getId()));
+        guild.getInvites().forEach(invite -> addToInviteCache(invite.getTarget(), guild.getId()));
+        guild.getAllies().forEach(ally -> addEdge(allyCache, ally, guild.getId()));
+        guild.getAllyRequests().forEach(request -> addEdge(allyRequestCache, request.getTarget(), guild.getId()));
+    }
+
+    /**
+     * Remove the codes, invites and allies of a guild from their caches.
+     *
+     * @param guild the guild to drop
+     */
+    private void uncacheLookups(@NotNull final Guild guild) {
+        guild.getCodes().forEach(code -> codeCache.remove(code.getId(), guild.getId()));
+        guild.getInvites().forEach(invite -> removeFromInviteCache(invite.getTarget(), guild.getId()));
+        guild.getAllies().forEach(ally -> removeEdge(allyCache, ally, guild.getId()));
+        guild.getAllyRequests().forEach(request -> removeEdge(allyRequestCache, request.getTarget(), guild.getId()));
+    }
+
+    private void addToInviteCache(@NotNull final UUID player, @NotNull final UUID guild) {
+        addEdge(inviteCache, player, guild);
+    }
+
+    private void removeFromInviteCache(@NotNull final UUID player, @NotNull final UUID guild) {
+        removeEdge(inviteCache, player, guild);
+    }
+
+    // Both run inside the map's lock for the key, so an edge can't be added to a set that is being dropped
+    private static void addEdge(@NotNull final Map<UUID, Set<UUID>> edges, @NotNull final UUID from, @NotNull final UUID to) {
+        edges.compute(from, (key, targets) -> {
+            final Set<UUID> updated = targets == null ? ConcurrentHashMap.newKeySet() : targets;
+            updated.add(to);
+            return updated;
+        });
+    }
+
+    private static void removeEdge(@NotNull final Map<UUID, Set<UUID>> edges, @NotNull final UUID from, @NotNull final UUID to) {
+        edges.computeIfPresent(from, (key, targets) -> {
+            targets.remove(to);
+            return targets.isEmpty() ? null : targets;
+        });
+    }
+
+    /**
+     * Snapshot changed guilds and hand them over to the write queue. Runs every tick on the main thread, so the
+     * snapshots can't observe a guild halfway through a change, and stops once the time budget for the tick is spent
+     * or the write queue is full. Whatever is left over is picked up on the next tick.
+     */
+    private void snapshotChanged() {
+        if (changedGuilds.isEmpty() || migrating) {
+            return;
+        }
+        final long deadline = System.nanoTime() + snapshotBudget;
+        final Iterator<UUID> iterator = changedGuilds.iterator();
+        while (iterator.hasNext() && System.nanoTime() < deadline && !writeQueue.isFull()) {
+            final Guild guild = guilds.get(iterator.next());
+            if (guild == null) {
+                // Removed in the meantime, the delete is queued already
+                iterator.remove();
+                continue;
+            }
+            queueSnapshot(guild);
+        }
+    }
+
+    /**
+     * Snapshot a guild, queue it to be written and log it to the write-ahead log. It's logged after it was queued,
+     * so a checkpoint that seals the log in between still waits for the write.
+     *
+     * @param guild the guild to snapshot
+     */
+    private void queueSnapshot(@NotNull final Guild guild) {
+        final Guild snapshot = takeSnapshot(guild);
+        writeQueue.enqueueSave(snapshot);
+        guildsPlugin.getWriteAheadLog().logGuild(snapshot, unloggedVaults.remove(guild.getId()));
+    }
+
+    /**
+     * Serialize any changed vaults of a guild and take a snapshot of it. Must be called on the main thread.
+     *
+     * @param guild the guild to snapshot
+     * @return the snapshot
+     */
+    @NotNull
+    private Guild takeSnapshot(@NotNull final Guild guild) {
+        flushVaults(guild);
+        // Cleared after the vaults are serialized since setting them flags the guild again
+        guild.clearDirty();
+        changedGuilds.remove(guild.getId());
+        final Guild snapshot = guild.snapshot();
+        snapshot.setSyncVersion(guildsPlugin.getDatabase().getGuildAdapter().getSyncVersion(guild.getId()));
+        return snapshot;
     }
 
     /**
      * Loads all guilds from the database and sets the necessary data for each guild and member.
      *
+     * Guilds are resolved in parallel on a pool sized to the amount of cores, the results are only
+     * published to the handler once every guild is done.
+     *
      * @throws IOException if there is an error while loading guilds from the database.
      */
     private void loadGuilds() throws IOException {
+        final long start = System.currentTimeMillis();
         final List<Guild> loaded = guildsPlugin.getDatabase().getGuildAdapter().getAllGuilds();
+        final long read = System.currentTimeMillis();
+
+        final Map<UUID, UUID> loadedMembers = new ConcurrentHashMap<>();
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            pool.submit(() -> loaded.parallelStream().forEach(guild -> resolveGuild(guild, loadedMembers))).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading guilds", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to load guilds", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        final long resolved = System.currentTimeMillis();
+
         loaded.forEach(guild -> guilds.put(guild.getId(), guild));
+        memberCache.putAll(loadedMembers);
+        indexNames(loaded);
+        loaded.forEach(this::cacheLookups);
+        final long published = System.currentTimeMillis();
 
-        // Loop through each guild and set the data needed
-        for (Guild guild : guilds.values()) {
-            // Create the vault cache
-            createVaultCache(guild);
-            // Create a temp tier object for the guild
-            GuildTier tier = getGuildTier(guild.getTier().getLevel());
-            if (tier != null) {
-                // Set the tier object
-                guild.setTier(tier);
-            } else {
-                guild.setTier(getLowestGuildTier());
-                LoggingUtils.severe("The guild (" + guild.getName() + ") had a tier level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest tier level on the server.");
-            }
-            // Check creation date
-            if (guild.getCreationDate() == 0) {
-                guild.setCreationDate(System.currentTimeMillis());
+        LoggingUtils.info("Loaded " + loaded.size() + " guilds in " + (published - start) + "ms (read: " + (read - start) + "ms, resolve: " + (resolved - read) + "ms, publish: " + (published - resolved) + "ms)");
+    }
+
+    /**
+     * Build the name index for freshly loaded guilds. Names only have to be unique once colors and case are ignored,
+     * guilds stored before that was enforced may clash. The first one keeps the name, the others are reported so they
+     * can be renamed.
+     *
+     * @param loaded the guilds to index
+     */
+    private void indexNames(@NotNull final List<Guild> loaded) {
+        for (Guild guild : loaded) {
+            final Guild existing = nameIndex.putIfAbsent(nameKey(guild.getName()), guild);
+            if (existing != null && existing != guild) {
+                LoggingUtils.warn("The guild " + guild.getName() + " (" + guild.getId() + ") has the same name as " + existing.getName() + " (" + existing.getId() + ") once colors and case are ignored. It can't be looked up by name until one of them is renamed.");
             }
-            // Loop through each member.
-            for (GuildMember member : guild.getMembers()) {
-                // Create a temp role
-                GuildRole role = getGuildRole(member.getRole().getLevel());
-                if (role != null) {
-                    // Set each member to their role
-                    member.setRole(role);
-                } else {
-                    member.setRole(getLowestGuildRole());
-                    LoggingUtils.severe("The player (" + member.getName() + ") had a role level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest role level on the server.");
-                }
-                addToMemberCache(member.getUuid(), guild.getId());
+        }
+    }
+
+    /**
+     * Get the key a guild name is indexed by, the name without colors in lower case.
+     *
+     * @param name the name of a guild
+     * @return the key of the name
+     */
+    @NotNull
+    private static String nameKey(@NotNull final String name) {
+        return ACFBukkitUtil.removeColors(name).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Set the tier and roles of a freshly loaded guild to the ones configured on the server.
+     *
+     * @param guild the guild to resolve
+     * @param members the member cache to add the guild's members to
+     */
+    private void resolveGuild(@NotNull final Guild guild, @NotNull final Map<UUID, UUID> members) {
+        // Only guilds that had to be repaired while loading need to be written back
+        boolean repaired = guild.refreshRequests(System.currentTimeMillis(),
+                settingsManager.getProperty(CooldownSettings.INVITE_EXPIRY),
+                settingsManager.getProperty(CooldownSettings.ALLY_REQUEST_EXPIRY));
+        // Create a temp tier object for the guild
+        GuildTier tier = getGuildTier(guild.getTier().getLevel());
+        if (tier != null) {
+            // Set the tier object
+            guild.setTier(tier);
+        } else {
+            guild.setTier(getLowestGuildTier());
+            repaired = true;
+            LoggingUtils.severe("The guild (" + guild.getName() + ") had a tier level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest tier level on the server.");
+        }
+        // Check creation date
+        if (guild.getCreationDate() == 0) {
+            guild.setCreationDate(System.currentTimeMillis());
+            repaired = true;
+        }
+        // Loop through each member.
+        for (GuildMember member : guild.getMembers()) {
+            // Create a temp role
+            GuildRole role = getGuildRole(member.getRole().getLevel());
+            if (role != null) {
+                // Set each member to their role
+                member.setRole(role);
+            } else {
+                member.setRole(getLowestGuildRole());
+                repaired = true;
+                LoggingUtils.severe("The player (" + member.getName() + ") had a role level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest role level on the server.");
             }
+            members.put(member.getUuid(), guild.getId());
+        }
+        if (repaired) {
+            guild.markDirty();
+        } else {
+            guild.clearDirty();
         }
     }
 
@@ -202,20 +468,46 @@ public class GuildHandler {
     }
 
     /**
-     * Saves the data of all guilds to the database.
+     * Picks up every changed guild for the next snapshot round.
      *
-     * This method saves the data of all guilds to the database, including their vault cache. The method iterates through
-     * the `guilds` list and calls the `saveVaultCache` method for each guild to save their vault cache. After that, the
-     * `saveGuilds` method of the database's `GuildAdapter` is called to save all guilds to the database.
+     * Changes are tracked as they happen, this catches any guild that was flagged without an observer attached.
+     */
+    public void saveData() {
+        guilds.values().stream().filter(Guild::isDirty).forEach(guild -> changedGuilds.add(guild.getId()));
+    }
+
+    /**
+     * Snapshots every guild right away and queues it to be written, regardless of whether it changed or the queue
+     * is full. Must be called on the main thread. Use
+     * {@link GuildWriteQueue#flushAndWait(long, java.util.concurrent.TimeUnit)} to wait for the writes.
      *
-     * @throws IOException if an I/O error occurs during the save process.
+     * @return the amount of guilds that were queued
      */
-    public void saveData() throws IOException {
-        guilds.values().forEach(this::saveVaultCache);
-        guildsPlugin.getDatabase().getGuildAdapter().saveGuilds(guilds.values());
+    public int saveAllData() {
+        final List<Guild> all = new ArrayList<>(guilds.values());
+        for (Guild guild : all) {
+            changedVaults.add(guild.getId());
+            queueSnapshot(guild);
+        }
+        return all.size();
     }
 
 
+    /**
+     * Snapshots every guild without queueing a write, for copying them somewhere else. Changed guilds stay flagged, so
+     * they are still written as usual. Must be called on the main thread.
+     *
+     * @return the snapshots
+     */
+    public List<Guild> snapshotGuilds() {
+        final List<Guild> snapshots = new ArrayList<>(guilds.size());
+        for (Guild guild : guilds.values()) {
+            flushVaults(guild);
+            snapshots.add(guild.snapshot());
+        }
+        return snapshots;
+    }
+
     /**
      * Adds the specified [guild] to the list of guilds.
      *
@@ -224,36 +516,113 @@ public class GuildHandler {
      */
     public void addGuild(@NotNull Guild guild) {
         guilds.put(guild.getId(), guild);
-        createVaultCache(guild);
+        nameIndex.put(nameKey(guild.getName()), guild);
+        cacheLookups(guild);
+        guild.setObserver(observer);
+        guild.markDirty();
     }
 
     /**
-     * Removes a [guild] from the list and deletes it from the database.
+     * Removes a [guild] from the list and queues it to be deleted from the database.
      *
      * @param guild the guild to remove
      */
     public void removeGuild(@NotNull Guild guild) {
-        vaults.remove(guild);
-        guild.getMembers().forEach(member -> removeFromMemberCache(member.getUuid()));
+        forgetGuild(guild);
+        writeQueue.enqueueDelete(guild.getId());
+        guildsPlugin.getWriteAheadLog().logGuildDelete(guild.getId());
+    }
+
+    /**
+     * Removes a [guild] from the list without deleting it from the database, for a guild that another server
+     * sharing the database deleted already.
+     *
+     * @param guild the guild to forget
+     */
+    public void forgetGuild(@NotNull Guild guild) {
+        guild.setObserver(null);
+        vaultCache.invalidate(guild);
+        changedVaults.remove(guild.getId());
+        unloggedVaults.remove(guild.getId());
+        changedGuilds.remove(guild.getId());
+        guild.getMembers().forEach(member -> memberCache.remove(member.getUuid(), guild.getId()));
+        nameIndex.remove(nameKey(guild.getName()), guild);
+        uncacheLookups(guild);
         guilds.remove(guild.getId());
+    }
 
-        try {
-            guildsPlugin.getDatabase().getGuildAdapter().deleteGuild(guild.getId().toString());
-        } catch (IOException e) {
-            LoggingUtils.warn("There was an error deleting a guild with the following uuid: " + guild.getId());
-            e.printStackTrace();
+    /**
+     * Give a [guild] a new name and move it in the name index.
+     *
+     * @param guild the guild to rename
+     * @param name  the new name, with colors already translated
+     */
+    public void renameGuild(@NotNull Guild guild, @NotNull String name) {
+        nameIndex.remove(nameKey(guild.getName()), guild);
+        guild.setName(name);
+        nameIndex.put(nameKey(name), guild);
+    }
+
+    /**
+     * Take over the state of a guild as another server sharing the database stored it. A known guild is updated in
+     * place, so anything holding on to it sees the change, and keeps its own vaults. Must be called on the main thread.
+     *
+     * @param fresh   the guild as it was read from the database
+     * @param changed true if the state still contains local changes that have to be written
+     */
+    public void applyRemoteGuild(@NotNull Guild fresh, boolean changed) {
+        Guild guild = guilds.get(fresh.getId());
+        Map<UUID, GuildInvite> previousInvites = Collections.emptyMap();
+        Map<UUID, GuildInvite> previousRequests = Collections.emptyMap();
+        if (guild == null) {
+            guild = fresh;
+            guilds.put(guild.getId(), guild);
+        } else {
+            final UUID id = guild.getId();
+            guild.getMembers().forEach(member -> memberCache.remove(member.getUuid(), id));
+            nameIndex.remove(nameKey(guild.getName()), guild);
+            uncacheLookups(guild);
+            previousInvites = byTarget(guild.getInvites());
+            previousRequests = byTarget(guild.getAllyRequests());
+            guild.copyFrom(fresh);
+        }
+        final Guild named = nameIndex.putIfAbsent(nameKey(guild.getName()), guild);
+        if (named != null && named != guild) {
+            LoggingUtils.warn("The guild " + guild.getName() + " (" + guild.getId() + ") synchronized from another server has the same name as " + named.getName() + " (" + named.getId() + ").");
+        }
+        guild.setObserver(observer);
+        final Map<UUID, UUID> members = new HashMap<>();
+        resolveGuild(guild, members);
+        memberCache.putAll(members);
+        cacheLookups(guild);
+        scheduleExpiries(guild, previousInvites, previousRequests);
+        if (changed) {
+            guild.markDirty();
         }
     }
 
     /**
-     * Retrieves a [guild] by its name.
+     * Check if a guild has changes of this server that aren't stored yet.
+     *
+     * @param guild the guild to check
+     * @return true if the guild changed since it was last written, or a write is still on its way
+     */
+    public boolean hasLocalChanges(@NotNull Guild guild) {
+        return guild.isDirty()
+                || changedGuilds.contains(guild.getId())
+                || writeQueue.isPending(guild.getId())
+                || guildsPlugin.getDatabase().getGuildAdapter().isWriting(guild.getId());
+    }
+
+    /**
+     * Retrieves a [guild] by its name, ignoring colors and case.
      *
      * @param name the name of the guild to retrieve
      * @return the guild with the given name, or {@code null} if no such guild exists
      */
     @Nullable
     public Guild getGuild(@NotNull String name) {
-        return guilds.values().stream().filter(guild -> ACFBukkitUtil.removeColors(guild.getName()).equals(name)).findFirst().orElse(null);
+        return nameIndex.get(nameKey(name));
     }
 
     /**
@@ -298,7 +667,8 @@ public class GuildHandler {
      */
     @Nullable
     public Guild getGuildByCode(@NotNull String code) {
-        return guilds.values().stream().filter(guild -> guild.hasInviteCode(code)).findFirst().orElse(null);
+        final UUID guild = codeCache.get(code);
+        return guild == null ? null : guilds.get(guild);
     }
 
     /**
@@ -345,6 +715,80 @@ public class GuildHandler {
         return roles.stream().filter(guildRole -> guildRole.getLevel() == level).findFirst().orElse(null);
     }
 
+    /**
+     * Invite a player to a guild for the configured time.
+     *
+     * @param guild   the guild that sends the invite
+     * @param player  the invited player
+     * @param inviter the player who sent the invite
+     */
+    public void invitePlayer(@NotNull Guild guild, @NotNull UUID player, @Nullable UUID inviter) {
+        guild.inviteMember(player, inviter, settingsManager.getProperty(CooldownSettings.INVITE_EXPIRY));
+        scheduleExpiry(guild, guild.getInvite(player), false);
+    }
+
+    /**
+     * Ask another guild to become allies, the request stays open for the configured time.
+     *
+     * @param guild     the guild the request is sent to
+     * @param requester the guild that sends the request
+     * @param inviter   the player who sent the request
+     */
+    public void requestAlly(@NotNull Guild guild, @NotNull Guild requester, @Nullable UUID inviter) {
+        guild.addPendingAlly(requester, inviter, settingsManager.getProperty(CooldownSettings.ALLY_REQUEST_EXPIRY));
+        scheduleExpiry(guild, guild.getAllyRequest(requester.getId()), true);
+    }
+
+    /**
+     * Schedule the invites and ally requests of a guild to be removed once they expire.
+     *
+     * @param guild            the guild to schedule
+     * @param previousInvites  the invites that are scheduled already
+     * @param previousRequests the ally requests that are scheduled already
+     */
+    private void scheduleExpiries(@NotNull final Guild guild, @NotNull final Map<UUID, GuildInvite> previousInvites, @NotNull final Map<UUID, GuildInvite> previousRequests) {
+        for (GuildInvite invite : guild.getInvites()) {
+            if (!sameRequest(previousInvites.get(invite.getTarget()), invite)) {
+                scheduleExpiry(guild, invite, false);
+            }
+        }
+        for (GuildInvite request : guild.getAllyRequests()) {
+            if (!sameRequest(previousRequests.get(request.getTarget()), request)) {
+                scheduleExpiry(guild, request, true);
+            }
+        }
+    }
+
+    private static Map<UUID, GuildInvite> byTarget(@NotNull final Collection<GuildInvite> requests) {
+        final Map<UUID, GuildInvite> byTarget = new HashMap<>();
+        requests.forEach(request -> byTarget.put(request.getTarget(), request));
+        return byTarget;
+    }
+
+    private static boolean sameRequest(@Nullable final GuildInvite a, @NotNull final GuildInvite b) {
+        return a != null && a.getCreatedAt() == b.getCreatedAt() && a.getTtl() == b.getTtl();
+    }
+
+    private void scheduleExpiry(@NotNull final Guild guild, @Nullable final GuildInvite invite, final boolean allyRequest) {
+        if (invite == null || invite.getTtl() <= 0) {
+            return;
+        }
+        final long delay = Math.max(0, invite.getExpiresAt() - System.currentTimeMillis());
+        final UUID target = invite.getTarget();
+        guildsPlugin.getTimingWheel().schedule(() -> {
+            // A newer invite for the same target has a timer of its own
+            final GuildInvite current = allyRequest ? guild.getAllyRequest(target) : guild.getInvite(target);
+            if (current == null || !current.isExpired(System.currentTimeMillis())) {
+                return;
+            }
+            if (allyRequest) {
+                guild.removePendingAlly(target);
+            } else {
+                guild.removeInvitedMember(target);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Adds an ally to both guilds
      *
@@ -365,7 +809,7 @@ public class GuildHandler {
      * @return allies or not
      */
     public boolean isAlly(Guild guild, Guild target) {
-        return guild.getAllies().contains(target.getId());
+        return guild.isAlly(target.getId());
     }
 
     /**
@@ -380,7 +824,7 @@ public class GuildHandler {
         Guild tGuild = getGuild(target);
         if (pGuild == null || tGuild == null)
             return false;
-        return pGuild.getAllies().contains(tGuild.getId());
+        return pGuild.isAlly(tGuild.getId());
     }
 
     /**
@@ -429,8 +873,8 @@ public class GuildHandler {
      * @param targetGuild the second pending guild
      */
     public void addPendingAlly(Guild guild, Guild targetGuild) {
-        guild.addPendingAlly(targetGuild);
-        targetGuild.addPendingAlly(guild);
+        requestAlly(guild, targetGuild, null);
+        requestAlly(targetGuild, guild, null);
     }
 
     /**
@@ -506,7 +950,11 @@ public class GuildHandler {
      * @return a list of the names of the invited guilds, or an empty list if the player has not been invited to any guilds
      */
     public List<String> getInvitedGuilds(OfflinePlayer player) {
-        return guilds.values().stream().filter(guild -> guild.getInvitedMembers().contains(player.getUniqueId())).map(Guild::getName).collect(Collectors.toList());
+        final Set<UUID> invites = inviteCache.get(player.getUniqueId());
+        if (invites == null) {
+            return new ArrayList<>();
+        }
+        return invites.stream().map(guilds::get).filter(Objects::nonNull).map(Guild::getName).collect(Collectors.toList());
     }
 
     /**
@@ -518,28 +966,6 @@ public class GuildHandler {
         return guilds.values().stream().map(Guild::getName).map(ACFBukkitUtil::removeColors).collect(Collectors.toList());
     }
 
-    /**
-     * Creates a cache of the vaults of a guild
-     *
-     * @param guild the guild for which to create the cache
-     */
-    private void createVaultCache(@NotNull final Guild guild) {
-        final List<Inventory> vaults = new ArrayList<>();
-        if (guild.getVaults() == null) {
-            return;
-        }
-        // Deserialize the vaults and add them to the list
-        guild.getVaults().forEach(v -> {
-            try {
-                vaults.add(Serialization.deserializeInventory(v, settingsManager));
-            } catch (InvalidConfigurationException e) {
-                e.printStackTrace();
-            }
-        });
-        // Add the guild's vaults to the cache
-        this.vaults.put(guild, vaults);
-    }
-
     /**
      * Save the cached inventories of the vaults belonging to a guild.
      *
@@ -547,11 +973,52 @@ public class GuildHandler {
      */
     private void saveVaultCache(@NotNull final Guild guild) {
         final List<String> vaults = new ArrayList<>();
-        if (guild.getVaults() == null) return;
+        final List<Inventory> loaded = vaultCache.getIfResident(guild);
+        // Vaults that were never loaded are still up to date in their serialized form
+        if (loaded == null) return;
         // Serialize the inventory objects in the cache and add them to a list.
-        this.vaults.get(guild).forEach(v -> vaults.add(Serialization.serializeInventory(v)));
+        loaded.forEach(v -> vaults.add(Serialization.serializeInventory(v)));
         // Set the serialized inventory data to the guild's vaults list.
         guild.setVaults(vaults);
+        unloggedVaults.add(guild.getId());
+    }
+
+    /**
+     * Flag the vaults of a guild as changed so they get serialized on the next save round.
+     *
+     * @param guild the guild whose vaults were opened or modified
+     */
+    public void markVaultChanged(@NotNull final Guild guild) {
+        changedVaults.add(guild.getId());
+        guild.markDirty();
+    }
+
+    /**
+     * Keep track of a player viewing a vault of a guild, so the vaults of that guild get saved once they close it.
+     *
+     * @param player the player viewing the vault
+     * @param guild  the guild whose vault they opened
+     */
+    public void openVault(@NotNull final Player player, @NotNull final Guild guild) {
+        opened.add(player);
+        openedVaults.put(player.getUniqueId(), guild.getId());
+        markVaultChanged(guild);
+    }
+
+    /**
+     * Stop keeping track of a player viewing a vault and flag the vaults they were looking at as changed.
+     *
+     * @param player the player who closed the vault
+     * @return {@code true} if the player had a vault open
+     */
+    public boolean closeVault(@NotNull final Player player) {
+        final boolean wasOpen = opened.remove(player);
+        final UUID guildId = openedVaults.remove(player.getUniqueId());
+        final Guild guild = guildId != null ? guilds.get(guildId) : null;
+        if (guild != null) {
+            markVaultChanged(guild);
+        }
+        return wasOpen;
     }
 
     /**
@@ -562,7 +1029,29 @@ public class GuildHandler {
      * @return The inventory of the specified guild vault.
      */
     public Inventory getGuildVault(Guild guild, int vault) {
-        return vaults.get(guild).get(vault - 1);
+        return vaultCache.get(guild).get(vault - 1);
+    }
+
+    /**
+     * Serialize the vaults of a guild into it if they changed since they were last saved.
+     *
+     * @param guild the guild whose vaults to write back
+     */
+    void flushVaults(@NotNull final Guild guild) {
+        if (changedVaults.remove(guild.getId())) {
+            saveVaultCache(guild);
+        }
+    }
+
+    /**
+     * Serialize the loaded vaults of a guild into it whether or not they were flagged, before they are unloaded.
+     * Inventories handed out through the API can be changed without anything flagging them.
+     *
+     * @param guild the guild whose vaults to write back
+     */
+    void unloadVaults(@NotNull final Guild guild) {
+        changedVaults.remove(guild.getId());
+        saveVaultCache(guild);
     }
 
     /**
@@ -982,13 +1471,22 @@ public class GuildHandler {
     }
 
     /**
-     * Remove a guild from all other guilds allies or pending allies when deleted
+     * Remove a guild from all other guilds allies or pending allies when deleted. Only the guilds that point at it
+     * are visited, the guild keeps its own allies so they can still be notified.
      *
      * @param guild the guild to check
      */
     public void removeAlliesOnDelete(Guild guild) {
-        getGuilds().values().forEach(g -> g.getPendingAllies().removeIf(x -> x.equals(guild.getId())));
-        getGuilds().values().forEach(g -> g.getAllies().removeIf(x -> x.equals(guild.getId())));
+        final UUID id = guild.getId();
+        // Removing an edge updates the cache, so walk over a copy
+        for (UUID requested : new ArrayList<>(allyRequestCache.getOrDefault(id, Collections.emptySet()))) {
+            final Guild g = getGuild(requested);
+            if (g != null) g.removePendingAlly(id);
+        }
+        for (UUID ally : new ArrayList<>(allyCache.getOrDefault(id, Collections.emptySet()))) {
+            final Guild g = getGuild(ally);
+            if (g != null) g.removeAlly(id);
+        }
     }
 
     /**
@@ -1024,13 +1522,13 @@ public class GuildHandler {
     }
 
     /**
-     * Check if a guild name already exists
+     * Check if a guild name already exists, ignoring colors and case
      *
      * @param name name to check
      * @return exists or not
      */
     public boolean checkGuildNames(String name) {
-        return guilds.values().stream().anyMatch(g -> g.getName().equalsIgnoreCase(name));
+        return nameIndex.containsKey(nameKey(name));
     }
 
     /**
@@ -1164,6 +1662,10 @@ public class GuildHandler {
         return this.guildsPlugin;
     }
 
+    public GuildWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
     public Map<UUID, Guild> getGuilds() {
         return this.guilds;
     }
@@ -1180,8 +1682,8 @@ public class GuildHandler {
         return this.roles;
     }
 
-    public Map<Guild, List<Inventory>> getVaults() {
-        return this.vaults;
+    public VaultCache getVaultCache() {
+        return this.vaultCache;
     }
 
     public List<Player> getOpened() {
@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.guild;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the changes two servers made to the same guild, starting from the state both changed.
+ *
+ * A field only one side changed takes that side. Counters both sides changed, like the bank balance or the score,
+ * keep both changes, other numbers like timestamps take the larger one. Lists are merged by their entries, so members,
+ * allies or invites added or removed on either side all end up in the result. Invites are small arrays starting with
+ * their target, they are kept whole rather than merged. Anything else both sides changed keeps the local value.
+ */
+final class GuildMerge {
+    private static final String[] ENTRY_KEYS = {"uuid", "id"};
+    private static final Set<String> COUNTERS = new HashSet<>(Arrays.asList("balance", "wins", "loses", "uses"));
+
+    private GuildMerge() {
+    }
+
+    /**
+     * Merge the serialized guilds.
+     *
+     * @param base   the guild both sides changed, or null if it isn't known
+     * @param local  the guild as this server changed it
+     * @param remote the guild as another server stored it
+     * @return the merged guild
+     */
+    @NotNull
+    static String merge(@Nullable String base, @NotNull String local, @NotNull String remote) {
+        final JsonElement baseTree = base == null ? JsonNull.INSTANCE : JsonParser.parseString(base);
+        return merge(null, baseTree, JsonParser.parseString(local), JsonParser.parseString(remote)).toString();
+    }
+
+    private static JsonElement merge(@Nullable String field, @NotNull JsonElement base, @NotNull JsonElement local, @NotNull JsonElement remote) {
+        if (base.equals(remote)) {
+            return local;
+        }
+        if (base.equals(local)) {
+            return remote;
+        }
+        // Two wars won at once end up with the same count on both sides, which still is two wins
+        if (isNumber(local) && isNumber(remote) && isNumber(base) && COUNTERS.contains(field)) {
+            return new JsonPrimitive(remote.getAsBigDecimal().add(local.getAsBigDecimal().subtract(base.getAsBigDecimal())));
+        }
+        if (local.equals(remote)) {
+            return local;
+        }
+        if (isNumber(local) && isNumber(remote)) {
+            return local.getAsBigDecimal().compareTo(remote.getAsBigDecimal()) >= 0 ? local : remote;
+        }
+        if (local.isJsonObject() && remote.isJsonObject()) {
+            return mergeObjects(base.isJsonObject() ? base.getAsJsonObject() : new JsonObject(), local.getAsJsonObject(), remote.getAsJsonObject());
+        }
+        // Arrays inside lists are invites, which are replaced as a whole
+        if (field != null && local.isJsonArray() && remote.isJsonArray()) {
+            return mergeArrays(base.isJsonArray() ? base.getAsJsonArray() : new JsonArray(), local.getAsJsonArray(), remote.getAsJsonArray());
+        }
+        return local;
+    }
+
+    private static JsonObject mergeObjects(@NotNull JsonObject base, @NotNull JsonObject local, @NotNull JsonObject remote) {
+        final Set<String> keys = new LinkedHashSet<>(local.keySet());
+        keys.addAll(remote.keySet());
+        final JsonObject merged = new JsonObject();
+        for (String key : keys) {
+            final JsonElement value = merge(key, orNull(base.get(key)), orNull(local.get(key)), orNull(remote.get(key)));
+            if (!value.isJsonNull()) {
+                merged.add(key, value);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Merge lists by their entries. Entries that are removed on one side and left alone on the other are removed,
+     * entries added on either side are added, and entries both sides kept are merged themselves.
+     */
+    private static JsonArray mergeArrays(@NotNull JsonArray base, @NotNull JsonArray local, @NotNull JsonArray remote) {
+        final Map<String, JsonElement> baseEntries = index(base);
+        final Map<String, JsonElement> localEntries = index(local);
+        final Map<String, JsonElement> remoteEntries = index(remote);
+        final JsonArray merged = new JsonArray();
+        for (Map.Entry<String, JsonElement> entry : localEntries.entrySet()) {
+            final JsonElement remoteEntry = remoteEntries.get(entry.getKey());
+            if (remoteEntry != null) {
+                merged.add(merge(null, orNull(baseEntries.get(entry.getKey())), entry.getValue(), remoteEntry));
+            } else if (!baseEntries.containsKey(entry.getKey())) {
+                merged.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, JsonElement> entry : remoteEntries.entrySet()) {
+            if (!localEntries.containsKey(entry.getKey()) && !baseEntries.containsKey(entry.getKey())) {
+                merged.add(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static Map<String, JsonElement> index(@NotNull JsonArray array) {
+        final Map<String, JsonElement> entries = new LinkedHashMap<>();
+        for (JsonElement element : array) {
+            entries.putIfAbsent(key(element), element);
+        }
+        return entries;
+    }
+
+    /**
+     * Get what identifies an entry of a list. Members and codes are identified by their id, so a member whose role
+     * changed on one side is still the same member on the other.
+     */
+    private static String key(@NotNull JsonElement element) {
+        if (element.isJsonObject()) {
+            for (String key : ENTRY_KEYS) {
+                final JsonElement id = element.getAsJsonObject().get(key);
+                if (id != null && id.isJsonPrimitive()) {
+                    return key + ":" + id.getAsString();
+                }
+            }
+        }
+        // Invites are identified by their target, which matches how they were stored before they expired
+        if (element.isJsonArray() && element.getAsJsonArray().size() > 0) {
+            return element.getAsJsonArray().get(0).toString();
+        }
+        return element.toString();
+    }
+
+    private static boolean isNumber(@NotNull JsonElement element) {
+        return element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber();
+    }
+
+    private static JsonElement orNull(@Nullable JsonElement element) {
+        return element == null ? JsonNull.INSTANCE : element;
+    }
+}
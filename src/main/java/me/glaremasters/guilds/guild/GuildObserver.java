@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.guild;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Gets notified whenever a guild is modified so the change can be persisted. Changes to the invites, allies and codes
+ * of a guild are reported on their own as well, so they can be indexed without scanning every guild.
+ */
+public interface GuildObserver {
+
+    /**
+     * Called after a guild has been modified.
+     *
+     * @param guild the guild that changed
+     */
+    void onChange(@NotNull Guild guild);
+
+    /**
+     * Called after a player has been invited to a guild.
+     *
+     * @param guild  the guild that sent the invite
+     * @param player the player that was invited
+     */
+    default void onInviteAdded(@NotNull Guild guild, @NotNull UUID player) {
+    }
+
+    /**
+     * Called after the invite of a player to a guild has been removed.
+     *
+     * @param guild  the guild that sent the invite
+     * @param player the player that was invited
+     */
+    default void onInviteRemoved(@NotNull Guild guild, @NotNull UUID player) {
+    }
+
+    /**
+     * Called after a guild became allies with another guild.
+     *
+     * @param guild the guild that gained the ally
+     * @param ally  the id of the ally
+     */
+    default void onAllyAdded(@NotNull Guild guild, @NotNull UUID ally) {
+    }
+
+    /**
+     * Called after a guild stopped being allies with another guild.
+     *
+     * @param guild the guild that lost the ally
+     * @param ally  the id of the former ally
+     */
+    default void onAllyRemoved(@NotNull Guild guild, @NotNull UUID ally) {
+    }
+
+    /**
+     * Called after another guild asked a guild to become allies.
+     *
+     * @param guild     the guild the request was sent to
+     * @param requester the id of the guild that sent it
+     */
+    default void onAllyRequestAdded(@NotNull Guild guild, @NotNull UUID requester) {
+    }
+
+    /**
+     * Called after an ally request to a guild has been removed.
+     *
+     * @param guild     the guild the request was sent to
+     * @param requester the id of the guild that sent it
+     */
+    default void onAllyRequestRemoved(@NotNull Guild guild, @NotNull UUID requester) {
+    }
+
+    /**
+     * Called after a code has been added to a guild.
+     *
+     * @param guild the guild the code belongs to
+     * @param code  the id of the code
+     */
+    default void onCodeAdded(@NotNull Guild guild, @NotNull String code) {
+    }
+
+    /**
+     * Called after a code has been removed from a guild.
+     *
+     * @param guild the guild the code belonged to
+     * @param code  the id of the code
+     */
+    default void onCodeRemoved(@NotNull Guild guild, @NotNull String code) {
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.guild;
+
+import fr.euphyllia.energie.model.SchedulerType;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.guild.GuildAdapter;
+import me.glaremasters.guilds.database.guild.GuildChange;
+import me.glaremasters.guilds.database.guild.VersionedGuild;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the guilds of this server up to date with the other servers sharing the same SQL database.
+ *
+ * The change log is polled off the main thread, and guilds that another server stored a newer version of are read
+ * again. Guilds without local changes simply take the stored state. Guilds this server changed as well, or that
+ * couldn't be written since another server got there first, are merged with the stored state and written again.
+ * The merged and stored states are applied on the main thread, where guilds are changed anyway.
+ */
+public final class GuildSync {
+    private static final int PAGE_SIZE = 500;
+    // Entries are numbered when they are written, not when their transaction commits, so a few are read again
+    private static final int OVERLAP = 100;
+    private static final long PRUNE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final GuildHandler guildHandler;
+    private final GuildAdapter adapter;
+    private final String serverId;
+    private final long retention;
+    private final Set<UUID> conflicted = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private volatile long cursor;
+    private long lastPrune;
+
+    /**
+     * @param guildHandler the guilds of this server
+     * @param adapter      the adapter the guilds are stored through
+     * @param serverId     the name this server writes to the change log
+     * @param retention    how long to keep entries in the change log, in minutes
+     */
+    public GuildSync(@NotNull GuildHandler guildHandler, @NotNull GuildAdapter adapter, @NotNull String serverId, int retention) {
+        this.guildHandler = guildHandler;
+        this.adapter = adapter;
+        this.serverId = serverId;
+        this.retention = TimeUnit.MINUTES.toMillis(retention);
+        this.cursor = adapter.getChangeCursor();
+    }
+
+    /**
+     * Start polling the change log.
+     *
+     * @param interval the time between polls, in seconds
+     */
+    public void start(int interval) {
+        adapter.setConflictHandler(conflicted::add);
+        final long ticks = 20L * Math.max(1, interval);
+        Guilds.getScheduler().scheduleSyncRepeating(SchedulerType.ASYNC, task -> poll(), ticks, ticks);
+    }
+
+    /**
+     * Stop merging conflicts. There is no time left to merge while shutting down, so a conflicting write counts as
+     * failed and stays in the write-ahead log for the next start.
+     */
+    public void close() {
+        adapter.setConflictHandler(null);
+    }
+
+    /**
+     * Read the changes other servers made since the last poll and hand them to the main thread.
+     */
+    private void poll() {
+        // After a migration the versions known to this server belong to the old database, it resumes after a restart
+        if (guildHandler.isMigrating() || guildHandler.getGuildsPlugin().getDatabase().getGuildAdapter() != adapter
+                || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        final Set<UUID> conflicts = new HashSet<>(conflicted);
+        conflicted.removeAll(conflicts);
+        try {
+            final Set<UUID> changed = new HashSet<>();
+            final Set<UUID> deleted = new HashSet<>();
+            long after = Math.max(0, cursor - OVERLAP);
+            long newest = cursor;
+            List<GuildChange> page;
+            do {
+                page = adapter.getChanges(after, PAGE_SIZE);
+                for (GuildChange change : page) {
+                    after = change.getSeq();
+                    newest = Math.max(newest, after);
+                    if (change.getServer().equals(serverId)) {
+                        continue;
+                    }
+                    if (change.isDelete()) {
+                        deleted.add(change.getGuildId());
+                        changed.remove(change.getGuildId());
+                    } else if (change.getVersion() > adapter.getSyncVersion(change.getGuildId())) {
+                        changed.add(change.getGuildId());
+                    }
+                }
+            } while (page.size() == PAGE_SIZE);
+
+            final Set<UUID> fetch = new HashSet<>(changed);
+            fetch.addAll(conflicts);
+            fetch.removeAll(deleted);
+            final List<VersionedGuild> fetched = adapter.getVersionedGuilds(fetch);
+            // A conflicting guild that isn't stored anymore was deleted by another server
+            final Set<UUID> missing = new HashSet<>(conflicts);
+            fetched.forEach(guild -> missing.remove(guild.getId()));
+            deleted.addAll(missing);
+            cursor = newest;
+
+            prune();
+            if (!fetched.isEmpty() || !deleted.isEmpty()) {
+                Guilds.newChain().sync(() -> apply(fetched, deleted, conflicts)).execute();
+            }
+        } catch (Exception ex) {
+            conflicted.addAll(conflicts);
+            LoggingUtils.warn("Failed to check for changes made by other servers: " + ex.getMessage());
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    private void prune() {
+        final long now = System.currentTimeMillis();
+        if (retention <= 0 || now - lastPrune < PRUNE_INTERVAL) {
+            return;
+        }
+        lastPrune = now;
+        adapter.pruneChanges(now - retention);
+    }
+
+    /**
+     * Apply what other servers changed. Runs on the main thread.
+     */
+    private void apply(@NotNull List<VersionedGuild> fetched, @NotNull Set<UUID> deleted, @NotNull Set<UUID> conflicts) {
+        for (UUID id : deleted) {
+            final Guild guild = guildHandler.getGuild(id);
+            adapter.forget(id);
+            if (guild != null) {
+                guildHandler.forgetGuild(guild);
+            }
+        }
+        for (VersionedGuild stored : fetched) {
+            try {
+                apply(stored, conflicts.contains(stored.getId()));
+            } catch (Exception ex) {
+                LoggingUtils.warn("Failed to apply the changes another server made to the guild " + stored.getId() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    private void apply(@NotNull VersionedGuild stored, boolean conflict) {
+        final UUID id = stored.getId();
+        final Guild guild = guildHandler.getGuild(id);
+        final GuildAdapter.SyncState state = adapter.getSyncState(id);
+        if (guild == null && state != null) {
+            // Deleted by this server, the delete is on its way
+            return;
+        }
+        if (state != null && stored.getVersion() <= state.getVersion()) {
+            // Nothing new, the conflict was with a write of this server that was still on its way
+            if (conflict) {
+                guild.markDirty();
+            }
+            return;
+        }
+        if (guild == null || (!conflict && !guildHandler.hasLocalChanges(guild))) {
+            guildHandler.applyRemoteGuild(adapter.deserialize(stored.getData()), false);
+        } else {
+            final String merged = GuildMerge.merge(state == null ? null : state.getData(), GuildAdapter.serialize(guild), stored.getData());
+            guildHandler.applyRemoteGuild(adapter.deserialize(merged), true);
+        }
+        adapter.markSynced(id, stored.getVersion(), stored.getData());
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import ch.jalu.configme.SettingsManager;
+import me.glaremasters.guilds.configuration.sections.GuildVaultSettings;
+import me.glaremasters.guilds.utils.Serialization;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.inventory.Inventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the vaults of a guild in their serialized form until someone opens one.
+ *
+ * Opened vaults are deserialized into inventories and kept around while anyone is looking at them. Once they've been
+ * idle for a while, or too many guilds have their vaults loaded, they are serialized back into the guild and dropped.
+ * Only accessed from the main thread.
+ */
+public final class VaultCache {
+    private final GuildHandler guildHandler;
+    private final SettingsManager settingsManager;
+    private final Map<UUID, List<Inventory>> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Long> lastAccess = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    VaultCache(@NotNull GuildHandler guildHandler, @NotNull SettingsManager settingsManager) {
+        this.guildHandler = guildHandler;
+        this.settingsManager = settingsManager;
+    }
+
+    /**
+     * Get the vaults of a guild, deserializing them first if they aren't loaded yet.
+     *
+     * @param guild the guild to get the vaults of
+     * @return the loaded vaults
+     */
+    @NotNull
+    public List<Inventory> get(@NotNull Guild guild) {
+        List<Inventory> vaults = resident.get(guild.getId());
+        if (vaults == null) {
+            misses++;
+            vaults = deserialize(guild);
+            resident.put(guild.getId(), vaults);
+            lastAccess.put(guild.getId(), System.currentTimeMillis());
+            evictOverflow(guild.getId());
+        } else {
+            hits++;
+            lastAccess.put(guild.getId(), System.currentTimeMillis());
+        }
+        return vaults;
+    }
+
+    /**
+     * Get the vaults of a guild only if they are loaded already.
+     *
+     * @param guild the guild to get the vaults of
+     * @return the loaded vaults or null if they are still serialized
+     */
+    @Nullable
+    public List<Inventory> getIfResident(@NotNull Guild guild) {
+        return resident.get(guild.getId());
+    }
+
+    /**
+     * Get the amount of vaults a guild has, without loading them.
+     *
+     * @param guild the guild to count the vaults of
+     * @return the amount of vaults
+     */
+    public int size(@NotNull Guild guild) {
+        final List<Inventory> vaults = resident.get(guild.getId());
+        return vaults != null ? vaults.size() : guild.getVaults().size();
+    }
+
+    /**
+     * Drop the loaded vaults of a guild without saving them, used when the guild is removed.
+     *
+     * @param guild the guild to drop the vaults of
+     */
+    public void invalidate(@NotNull Guild guild) {
+        resident.remove(guild.getId());
+        lastAccess.remove(guild.getId());
+    }
+
+    /**
+     * Unload the vaults nobody has looked at for longer than the configured idle time.
+     */
+    public void evictIdle() {
+        final long idle = TimeUnit.MINUTES.toMillis(settingsManager.getProperty(GuildVaultSettings.CACHE_IDLE_TIME));
+        final long now = System.currentTimeMillis();
+        final List<UUID> idleGuilds = new ArrayList<>();
+        for (Map.Entry<UUID, List<Inventory>> entry : resident.entrySet()) {
+            if (hasViewers(entry.getValue())) {
+                lastAccess.put(entry.getKey(), now);
+            } else if (now - lastAccess.getOrDefault(entry.getKey(), 0L) >= idle) {
+                idleGuilds.add(entry.getKey());
+            }
+        }
+        idleGuilds.forEach(this::evict);
+    }
+
+    /**
+     * Unload the least recently used vaults until the amount of loaded guilds fits the configured maximum.
+     * Vaults that are being viewed are never unloaded, and neither are the ones that were just loaded.
+     *
+     * @param loaded the guild whose vaults were just loaded
+     */
+    private void evictOverflow(@NotNull UUID loaded) {
+        final int overflow = resident.size() - Math.max(1, settingsManager.getProperty(GuildVaultSettings.CACHE_MAX_RESIDENT));
+        if (overflow <= 0) {
+            return;
+        }
+        // Collected first since flushing looks the vaults up again, which reorders the map
+        final List<UUID> leastRecent = new ArrayList<>(overflow);
+        for (Map.Entry<UUID, List<Inventory>> entry : resident.entrySet()) {
+            if (leastRecent.size() >= overflow) {
+                break;
+            }
+            if (!entry.getKey().equals(loaded) && !hasViewers(entry.getValue())) {
+                leastRecent.add(entry.getKey());
+            }
+        }
+        leastRecent.forEach(this::evict);
+    }
+
+    private void evict(@NotNull UUID id) {
+        final Guild guild = guildHandler.getGuilds().get(id);
+        if (guild != null) {
+            // Write the inventories back into the guild before they are gone, flagged or not
+            guildHandler.unloadVaults(guild);
+        }
+        resident.remove(id);
+        lastAccess.remove(id);
+        evictions++;
+    }
+
+    private boolean hasViewers(@NotNull List<Inventory> vaults) {
+        return vaults.stream().anyMatch(vault -> !vault.getViewers().isEmpty());
+    }
+
+    private List<Inventory> deserialize(@NotNull Guild guild) {
+        final List<Inventory> vaults = new ArrayList<>();
+        guild.getVaults().forEach(v -> {
+            try {
+                vaults.add(Serialization.deserializeInventory(v, settingsManager));
+            } catch (InvalidConfigurationException e) {
+                e.printStackTrace();
+            }
+        });
+        return vaults;
+    }
+
+    /**
+     * Get the amount of guilds that have their vaults loaded.
+     *
+     * @return the amount of loaded guilds
+     */
+    public int getResidentGuilds() {
+        return resident.size();
+    }
+
+    /**
+     * Get the amount of vault inventories that are loaded.
+     *
+     * @return the amount of loaded inventories
+     */
+    public int getResidentVaults() {
+        return resident.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Get the size of the serialized vaults of every guild, the form they are kept in while unloaded.
+     *
+     * @return the size in characters
+     */
+    public long getSerializedSize() {
+        return guildHandler.getGuilds().values().stream()
+                .flatMap(guild -> guild.getVaults().stream())
+                .mapToLong(String::length)
+                .sum();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
@@ -60,6 +60,7 @@ public class VaultBlacklistListener implements Listener {
 
     /**
      * Helps determine if a player has a Guild vault open by removing the player from the list of opened vaults.
+     * The vaults of the guild they were looking at are flagged so the contents get saved on the next round.
      *
      * @param event the close event
      */
@@ -67,7 +68,7 @@ public class VaultBlacklistListener implements Listener {
     public void onInventoryClose(InventoryCloseEvent event) {
         if (event.getPlayer() instanceof Player) {
             Player player = (Player) event.getPlayer();
-            guildHandler.getOpened().remove(player);
+            guildHandler.closeVault(player);
         }
     }
 
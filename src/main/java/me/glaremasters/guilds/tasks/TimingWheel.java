@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.tasks;
+
+import fr.euphyllia.energie.model.SchedulerType;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A hashed timing wheel that every expiring piece of state in the plugin registers into.
+ *
+ * Timers are kept in doubly linked buckets, one per slot, so scheduling and cancelling are constant time. The wheel
+ * is advanced once per server tick on the main thread and catches up on ticks it missed while the server lagged,
+ * timers whose deadline is further away than one turn of the wheel simply stay in their bucket until it comes around.
+ */
+public final class TimingWheel {
+    private static final long TICK_MILLIS = 50L;
+
+    private final Bucket[] buckets;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long startedAt;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates a new wheel.
+     *
+     * @param slots the amount of slots, rounded up to a power of two
+     */
+    public TimingWheel(final int slots) {
+        this(slots, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a new wheel that reads the time from the given clock.
+     *
+     * @param slots the amount of slots, rounded up to a power of two
+     * @param clock the current time in milliseconds
+     */
+    TimingWheel(final int slots, @NotNull final LongSupplier clock) {
+        final int capacity = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.buckets = new Bucket[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = capacity - 1;
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+    }
+
+    /**
+     * Start advancing the wheel every server tick.
+     */
+    public void start() {
+        Guilds.getScheduler().scheduleSyncRepeating(SchedulerType.SYNC, task -> advance(), 1L, 1L);
+    }
+
+    /**
+     * Run a task once the delay has passed. The task runs on the main thread.
+     *
+     * @param task  the task to run
+     * @param delay the delay
+     * @param unit  the unit of the delay
+     * @return the timer, which can be cancelled
+     */
+    public synchronized Timeout schedule(@NotNull final Runnable task, final long delay, @NotNull final TimeUnit unit) {
+        // Round up from the wall clock so a timer never fires before its delay has fully passed
+        final long due = clock.getAsLong() - startedAt + Math.max(0L, unit.toMillis(delay));
+        final long deadline = Math.max(currentTick + 1, (due + TICK_MILLIS - 1) / TICK_MILLIS);
+        final Timeout timeout = new Timeout(this, task, deadline);
+        buckets[(int) (timeout.deadline & mask)].add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Get the amount of timers that are waiting to fire.
+     *
+     * @return the amount of live timers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Advance the wheel up to the current time and run everything that expired along the way.
+     */
+    void advance() {
+        final List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            final long target = (clock.getAsLong() - startedAt) / TICK_MILLIS;
+            while (currentTick < target) {
+                currentTick++;
+                buckets[(int) (currentTick & mask)].expire(currentTick, expired);
+            }
+            size -= expired.size();
+        }
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (Exception ex) {
+                LoggingUtils.warn("A timer failed to run: " + ex.getMessage());
+            }
+        }
+    }
+
+    private synchronized boolean cancel(@NotNull final Timeout timeout) {
+        if (timeout.bucket == null) return false;
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * A timer registered in the wheel.
+     */
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(final TimingWheel wheel, final Runnable task, final long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stop the timer from firing.
+         *
+         * @return true if the timer was still waiting to fire
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(final Timeout timeout) {
+            timeout.bucket = this;
+            if (tail == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(final Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void expire(final long tick, final List<Timeout> expired) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.deadline <= tick) {
+                    remove(timeout);
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+    }
+}
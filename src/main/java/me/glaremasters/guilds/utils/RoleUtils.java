@@ -100,6 +100,7 @@ public class RoleUtils {
         guildHandler.removeRolePerm(permission, player);
         member.setRole(guildHandler.getGuildRole(member.getRole().getLevel() - 1));
         guildHandler.addRolePerm(permission, player);
+        guild.markDirty();
     }
 
     /**
@@ -114,6 +115,7 @@ public class RoleUtils {
         guildHandler.removeRolePerm(permission, player);
         member.setRole(guildHandler.getGuildRole(member.getRole().getLevel() + 1));
         guildHandler.addRolePerm(permission, player);
+        guild.markDirty();
     }
 
     /**
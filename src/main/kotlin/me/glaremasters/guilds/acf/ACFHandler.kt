@@ -35,7 +35,6 @@ import me.glaremasters.guilds.arena.ArenaHandler
 import me.glaremasters.guilds.challenges.ChallengeHandler
 import me.glaremasters.guilds.configuration.sections.PluginSettings
 import me.glaremasters.guilds.cooldowns.CooldownHandler
-import me.glaremasters.guilds.database.DatabaseAdapter
 import me.glaremasters.guilds.exceptions.ExpectationNotMet
 import me.glaremasters.guilds.exceptions.InvalidPermissionException
 import me.glaremasters.guilds.guild.Guild
@@ -64,7 +63,6 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
         loadSyntaxReplacements()
 
         loadCommands()
-        loadCompletionCache()
     }
 
     private fun loadSyntaxReplacements() {
@@ -85,8 +83,10 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
         commandManager.commandReplacements.addReplacement("uses", MessageUtils.asString(commandManager, Messages.SYNTAX__USES))
         commandManager.commandReplacements.addReplacement("language", MessageUtils.asString(commandManager, Messages.SYNTAX__LANGUAGE))
         commandManager.commandReplacements.addReplacement("new-backend", MessageUtils.asString(commandManager, Messages.SYNTAX__NEW_BACKEND))
+        commandManager.commandReplacements.addReplacement("backup", MessageUtils.asString(commandManager, Messages.SYNTAX__BACKUP))
         commandManager.commandReplacements.addReplacement("new-master", MessageUtils.asString(commandManager, Messages.SYNTAX__NEW_MASTER))
         commandManager.commandReplacements.addReplacement("optional", MessageUtils.asString(commandManager, Messages.SYNTAX__OPTIONAL))
+        commandManager.commandReplacements.addReplacement("page", MessageUtils.asString(commandManager, Messages.SYNTAX__PAGE))
     }
 
     fun loadLang() {
@@ -151,6 +151,11 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
                 throw ExpectationNotMet(Messages.ERROR__MIGRATING)
             }
         }
+        commandManager.commandConditions.addCondition("DataReady") {
+            if (!plugin.isDataReady) {
+                throw ExpectationNotMet(Messages.ERROR__DATA_LOADING)
+            }
+        }
     }
 
     private fun loadCompletions(guildHandler: GuildHandler, arenaHandler: ArenaHandler) {
@@ -160,7 +165,8 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
         commandManager.commandCompletions.registerCompletion("arenas") { arenaHandler.arenaNames() }
         commandManager.commandCompletions.registerStaticCompletion("locations") { listOf("challenger", "defender") }
         commandManager.commandCompletions.registerCompletion("languages") { languages.sorted() }
-        commandManager.commandCompletions.registerStaticCompletion("sources") { listOf("JSON", "MYSQL", "SQLITE", "MARIADB") }
+        commandManager.commandCompletions.registerStaticCompletion("sources") { listOf("JSON", "MYSQL", "SQLITE", "MARIADB", "LOG") }
+        commandManager.commandCompletions.registerCompletion("backups") { plugin.backupManager.backupNames }
 
         commandManager.commandCompletions.registerAsyncCompletion("members") { c ->
             val guild = guildHandler.getGuild(c.player) ?: return@registerAsyncCompletion emptyList()
@@ -196,8 +202,7 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
             if (guild.vaults == null) {
                 return@registerCompletion null
             }
-            val list = guildHandler.vaults[guild] ?: return@registerCompletion null
-            (1 until list.size).map(Any::toString)
+            (1 until guildHandler.vaultCache.size(guild)).map(Any::toString)
         }
     }
 
@@ -207,7 +212,10 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
                 .forEach { commandManager.registerCommand(it.newInstance() as BaseCommand) }
     }
 
-    private fun loadCompletionCache() {
+    /**
+     * Fill the name cache used for completions, once the guilds are loaded.
+     */
+    fun loadCompletionCache() {
         val handler = plugin.guildHandler
 
         handler.guilds.values.forEach { guild ->
@@ -226,6 +234,5 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
         commandManager.registerDependency(CooldownHandler::class.java, plugin.cooldownHandler)
         commandManager.registerDependency(ArenaHandler::class.java, plugin.arenaHandler)
         commandManager.registerDependency(ChallengeHandler::class.java, plugin.challengeHandler)
-        commandManager.registerDependency(DatabaseAdapter::class.java, plugin.database)
     }
 }
@@ -23,12 +23,17 @@
  */
 package me.glaremasters.guilds.actions
 
+import me.glaremasters.guilds.tasks.TimingWheel
 import org.bukkit.command.CommandSender
+import java.util.concurrent.TimeUnit
 
 /**
  * A class that handles and manages actions performed by [CommandSender].
+ *
+ * @param timingWheel the wheel actions register their expiry into.
+ * @param expiry the amount of seconds an action waits for confirmation before it is dropped.
  */
-class ActionHandler {
+class ActionHandler(private val timingWheel: TimingWheel, private val expiry: Int) {
 
     /**
      * A map that contains [CommandSender] as key and [ConfirmAction] as value.
@@ -36,13 +41,25 @@ class ActionHandler {
     private val actions = mutableMapOf<CommandSender, ConfirmAction>()
 
     /**
-     * Adds an action to the map.
+     * The timers that drop unconfirmed actions.
+     */
+    private val timers = mutableMapOf<CommandSender, TimingWheel.Timeout>()
+
+    /**
+     * Adds an action to the map. The action is dropped if it isn't confirmed or cancelled in time.
      *
      * @param sender [CommandSender] that performs the action.
      * @param action [ConfirmAction] to be performed.
      */
     fun addAction(sender: CommandSender, action: ConfirmAction) {
         actions[sender] = action
+        timers.remove(sender)?.cancel()
+        timers[sender] = timingWheel.schedule({
+            if (actions[sender] === action) {
+                actions.remove(sender)
+                timers.remove(sender)
+            }
+        }, expiry.toLong(), TimeUnit.SECONDS)
     }
 
     /**
@@ -52,6 +69,7 @@ class ActionHandler {
      */
     fun removeAction(sender: CommandSender?) {
         actions.remove(sender)
+        timers.remove(sender)?.cancel()
     }
 
     /**
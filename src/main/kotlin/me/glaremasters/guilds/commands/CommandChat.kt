@@ -40,6 +40,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandChat : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -47,6 +47,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandRequest : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
@@ -27,6 +27,7 @@ import co.aikar.commands.BaseCommand
 import co.aikar.commands.CommandIssuer
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Subcommand
@@ -38,6 +39,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.command.CommandSender
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandActions : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var actionHandler: ActionHandler
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.commands.admin
+
+import ch.jalu.configme.SettingsManager
+import co.aikar.commands.BaseCommand
+import co.aikar.commands.CommandIssuer
+import co.aikar.commands.annotation.CommandAlias
+import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
+import co.aikar.commands.annotation.Dependency
+import co.aikar.commands.annotation.Description
+import co.aikar.commands.annotation.Subcommand
+import java.util.concurrent.TimeUnit
+import me.glaremasters.guilds.Guilds
+import me.glaremasters.guilds.configuration.sections.StorageSettings
+import me.glaremasters.guilds.guild.GuildHandler
+import me.glaremasters.guilds.messages.Messages
+import me.glaremasters.guilds.utils.Constants
+
+@CommandAlias("%guilds")
+@Conditions("DataReady")
+internal class CommandAdminSave : BaseCommand() {
+    @Dependency lateinit var guilds: Guilds
+    @Dependency lateinit var guildHandler: GuildHandler
+    @Dependency lateinit var settingsManager: SettingsManager
+
+    @Subcommand("admin save")
+    @Description("{@@descriptions.admin-save}")
+    @CommandPermission(Constants.ADMIN_PERM)
+    @Conditions("NotMigrating")
+    fun save(issuer: CommandIssuer) {
+        currentCommandIssuer.sendInfo(Messages.ADMIN__SAVE_STARTED)
+        val start = System.currentTimeMillis()
+        Guilds.newChain<Int>().syncFirst {
+            guildHandler.saveAllData()
+        }.async { amount ->
+            val timeout = settingsManager.getProperty(StorageSettings.SHUTDOWN_TIMEOUT).toLong()
+            if (guildHandler.writeQueue.flushAndWait(timeout, TimeUnit.SECONDS)) amount else -1
+        }.syncLast { amount ->
+            val sender = guilds.commandManager.getCommandIssuer(issuer.getIssuer())
+            if (amount < 0) {
+                sender.sendInfo(Messages.ADMIN__SAVE_FAILED)
+            } else {
+                sender.sendInfo(Messages.ADMIN__SAVE_COMPLETE, "{amount}", amount.toString(), "{time}", (System.currentTimeMillis() - start).toString())
+            }
+        }.execute()
+    }
+}
@@ -26,6 +26,7 @@ package me.glaremasters.guilds.commands.admin
 import co.aikar.commands.BaseCommand
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Subcommand
@@ -34,6 +35,7 @@ import me.glaremasters.guilds.guild.GuildHandler
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminSpy : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
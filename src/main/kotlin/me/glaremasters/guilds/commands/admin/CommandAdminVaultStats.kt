@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.commands.admin
+
+import co.aikar.commands.BaseCommand
+import co.aikar.commands.annotation.CommandAlias
+import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
+import co.aikar.commands.annotation.Dependency
+import co.aikar.commands.annotation.Description
+import co.aikar.commands.annotation.Subcommand
+import me.glaremasters.guilds.guild.GuildHandler
+import me.glaremasters.guilds.messages.Messages
+import me.glaremasters.guilds.utils.Constants
+
+@CommandAlias("%guilds")
+@Conditions("DataReady")
+internal class CommandAdminVaultStats : BaseCommand() {
+    @Dependency lateinit var guildHandler: GuildHandler
+
+    @Subcommand("admin vaultstats")
+    @Description("{@@descriptions.admin-vaultstats}")
+    @CommandPermission(Constants.ADMIN_PERM)
+    fun stats() {
+        val cache = guildHandler.vaultCache
+        currentCommandIssuer.sendInfo(Messages.ADMIN__VAULT_STATS,
+                "{guilds}", cache.residentGuilds.toString(),
+                "{vaults}", cache.residentVaults.toString(),
+                "{size}", (cache.serializedSize / 1024).toString(),
+                "{hits}", cache.hits.toString(),
+                "{misses}", cache.misses.toString(),
+                "{evictions}", cache.evictions.toString())
+    }
+}
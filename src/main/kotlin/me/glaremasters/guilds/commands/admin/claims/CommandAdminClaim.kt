@@ -29,6 +29,7 @@ import co.aikar.commands.BaseCommand
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandCompletion
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Flags
@@ -46,6 +47,7 @@ import org.bukkit.entity.Player
 import org.codemc.worldguardwrapper.WorldGuardWrapper
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminClaim : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
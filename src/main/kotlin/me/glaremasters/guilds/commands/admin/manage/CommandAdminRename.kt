@@ -28,6 +28,7 @@ import co.aikar.commands.CommandIssuer
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandCompletion
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Flags
@@ -36,6 +37,7 @@ import co.aikar.commands.annotation.Subcommand
 import co.aikar.commands.annotation.Syntax
 import co.aikar.commands.annotation.Values
 import me.glaremasters.guilds.Guilds
+import me.glaremasters.guilds.exceptions.ExpectationNotMet
 import me.glaremasters.guilds.guild.Guild
 import me.glaremasters.guilds.guild.GuildHandler
 import me.glaremasters.guilds.messages.Messages
@@ -44,6 +46,7 @@ import me.glaremasters.guilds.utils.StringUtils
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminRename : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
@@ -54,7 +57,11 @@ internal class CommandAdminRename : BaseCommand() {
     @CommandCompletion("@guilds")
     @Syntax("%guild %new-name")
     fun rename(issuer: CommandIssuer, @Flags("other") @Values("@guilds") guild: Guild, @Single name: String) {
-        guild.name = StringUtils.color(name)
+        val existing = guildHandler.getGuild(name)
+        if (existing != null && existing != guild) {
+            throw ExpectationNotMet(Messages.CREATE__GUILD_NAME_TAKEN)
+        }
+        guildHandler.renameGuild(guild, StringUtils.color(name))
         currentCommandIssuer.sendInfo(Messages.RENAME__SUCCESSFUL, "{name}", guild.name)
     }
 }
@@ -27,6 +27,7 @@ import ch.jalu.configme.SettingsManager
 import co.aikar.commands.BaseCommand
 import co.aikar.commands.CommandIssuer
 import co.aikar.commands.annotation.*
+import co.aikar.commands.annotation.Conditions
 import me.glaremasters.guilds.Guilds
 import me.glaremasters.guilds.configuration.sections.PluginSettings
 import me.glaremasters.guilds.configuration.sections.TierSettings
@@ -38,6 +39,7 @@ import me.glaremasters.guilds.utils.Constants
 import net.milkbowl.vault.permission.Permission
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminUpgrade : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
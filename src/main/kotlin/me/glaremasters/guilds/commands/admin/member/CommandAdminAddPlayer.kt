@@ -28,6 +28,7 @@ import co.aikar.commands.CommandIssuer
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandCompletion
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Flags
@@ -44,6 +45,7 @@ import net.milkbowl.vault.permission.Permission
 import org.bukkit.Bukkit
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminAddPlayer : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
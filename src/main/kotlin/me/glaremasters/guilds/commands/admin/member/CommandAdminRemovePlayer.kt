@@ -27,6 +27,7 @@ import ch.jalu.configme.SettingsManager
 import co.aikar.commands.BaseCommand
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Subcommand
@@ -44,6 +45,7 @@ import org.bukkit.entity.Player
 
 // todo Fix the logic on this because what if you force remove the guild master?
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminRemovePlayer : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
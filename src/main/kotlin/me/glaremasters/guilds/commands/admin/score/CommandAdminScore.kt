@@ -28,6 +28,7 @@ import co.aikar.commands.CommandIssuer
 import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandCompletion
 import co.aikar.commands.annotation.CommandPermission
+import co.aikar.commands.annotation.Conditions
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Flags
@@ -41,6 +42,7 @@ import me.glaremasters.guilds.messages.Messages
 import me.glaremasters.guilds.utils.Constants
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAdminScore : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
@@ -52,6 +54,7 @@ internal class CommandAdminScore : BaseCommand() {
     @Syntax("%guild %amount")
     fun setWins(issuer: CommandIssuer, @Flags("other") @Values("@guilds") guild: Guild, amount: Int) {
         guild.guildScore.wins = amount
+        guild.markDirty()
         currentCommandIssuer.sendInfo(Messages.ADMIN__SCORE_SETWINS, "{guild}", guild.name, "{amount}", amount.toString())
     }
 
@@ -62,6 +65,7 @@ internal class CommandAdminScore : BaseCommand() {
     @Syntax("%guild %amount")
     fun setLoses(issuer: CommandIssuer, @Flags("other") @Values("@guilds") guild: Guild, amount: Int) {
         guild.guildScore.loses = amount
+        guild.markDirty()
         currentCommandIssuer.sendInfo(Messages.ADMIN__SCORE_SETLOSES, "{guild}", guild.name, "{amount}", amount.toString())
     }
 
@@ -71,6 +75,7 @@ internal class CommandAdminScore : BaseCommand() {
     fun resetAll(issuer: CommandIssuer) {
         guildHandler.guilds.values.forEach { guild ->
             guild.guildScore.reset()
+            guild.markDirty()
         }
         currentCommandIssuer.sendInfo(Messages.ADMIN__SCORE_RESETALL)
     }
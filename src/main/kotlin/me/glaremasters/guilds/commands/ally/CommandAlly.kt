@@ -44,6 +44,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAlly : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -95,7 +96,7 @@ internal class CommandAlly : BaseCommand() {
 
         currentCommandIssuer.sendInfo(Messages.ALLY__INVITE_SENT, "{guild}", target.name)
         target.sendMessage(currentCommandManager, Messages.ALLY__INCOMING_INVITE, "{guild}", guild.name)
-        target.addPendingAlly(guild)
+        guildHandler.requestAlly(target, guild, player.uniqueId)
     }
 
     @Subcommand("ally decline")
@@ -46,6 +46,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandBank : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -45,6 +45,7 @@ import org.bukkit.entity.Player
 import org.codemc.worldguardwrapper.WorldGuardWrapper
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandClaim : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
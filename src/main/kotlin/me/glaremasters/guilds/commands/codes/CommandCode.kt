@@ -48,6 +48,7 @@ import me.glaremasters.guilds.utils.StringUtils
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandCode : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -27,32 +27,38 @@ import ch.jalu.configme.SettingsManager
 import co.aikar.commands.BaseCommand
 import co.aikar.commands.CommandIssuer
 import co.aikar.commands.annotation.*
+import co.aikar.commands.annotation.Conditions
+import java.io.File
 import java.io.IOException
 import me.glaremasters.guilds.Guilds
 import me.glaremasters.guilds.actions.ActionHandler
 import me.glaremasters.guilds.actions.ConfirmAction
 import me.glaremasters.guilds.arena.ArenaHandler
-import me.glaremasters.guilds.challenges.ChallengeHandler
 import me.glaremasters.guilds.cooldowns.CooldownHandler
+import me.glaremasters.guilds.database.DatabaseAdapter
 import me.glaremasters.guilds.database.DatabaseBackend
+import me.glaremasters.guilds.database.DatabaseMigration
 import me.glaremasters.guilds.exceptions.ExpectationNotMet
 import me.glaremasters.guilds.guild.GuildHandler
 import me.glaremasters.guilds.messages.Messages
-import me.glaremasters.guilds.utils.BackupUtils
 import me.glaremasters.guilds.utils.ClaimUtils
 import me.glaremasters.guilds.utils.Constants
 import org.codemc.worldguardwrapper.WorldGuardWrapper
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandConsole : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
     @Dependency lateinit var actionHandler: ActionHandler
     @Dependency lateinit var arenaHandler: ArenaHandler
-    @Dependency lateinit var challengeHandler: ChallengeHandler
     @Dependency lateinit var cooldownHandler: CooldownHandler
     @Dependency lateinit var settingsManager: SettingsManager
 
+    companion object {
+        private const val MIGRATION_CHECKPOINT = "migration-checkpoint.json"
+    }
+
     @Subcommand("console backup")
     @Description("{@@descriptions.console-backup}")
     @CommandPermission(Constants.ADMIN_PERM)
@@ -64,20 +70,57 @@ internal class CommandConsole : BaseCommand() {
         currentCommandIssuer.sendInfo(Messages.BACKUP__WARNING)
         actionHandler.addAction(issuer.getIssuer(), object : ConfirmAction {
             override fun accept() {
-                guilds.commandManager.getCommandIssuer(issuer.getIssuer()).sendInfo(Messages.BACKUP__STARTED)
+                val sender = guilds.commandManager.getCommandIssuer(issuer.getIssuer())
+                sender.sendInfo(Messages.BACKUP__STARTED)
+                actionHandler.removeAction(issuer.getIssuer())
+                guilds.backupManager.backup(true).whenComplete { file, ex ->
+                    if (ex != null) {
+                        notify(sender, Messages.BACKUP__FAILED, "{reason}", ex.cause?.message ?: ex.message ?: "")
+                    } else {
+                        notify(sender, Messages.BACKUP__FINISHED, "{file}", file.name)
+                    }
+                }
+            }
+
+            override fun decline() {
+                actionHandler.removeAction(issuer.getIssuer())
+                currentCommandIssuer.sendInfo(Messages.BACKUP__CANCELLED)
+            }
+        })
+    }
+
+    @Subcommand("console restore")
+    @Description("{@@descriptions.console-restore}")
+    @CommandPermission(Constants.ADMIN_PERM)
+    @Syntax("%backup")
+    @CommandCompletion("@backups")
+    fun restore(issuer: CommandIssuer, backup: String) {
+        if (issuer.isPlayer) {
+            throw ExpectationNotMet(Messages.ERROR__CONSOLE_COMMAND)
+        }
+
+        currentCommandIssuer.sendInfo(Messages.RESTORE__WARNING, "{backup}", backup)
+        actionHandler.addAction(issuer.getIssuer(), object : ConfirmAction {
+            override fun accept() {
+                val sender = guilds.commandManager.getCommandIssuer(issuer.getIssuer())
+                actionHandler.removeAction(issuer.getIssuer())
                 Guilds.newChain<Any>().async {
                     try {
-                        BackupUtils.zipDir("guilds-backup-" + System.currentTimeMillis() + ".zip", guilds.dataFolder.path)
-                    } catch (e: Exception) {
-                        e.printStackTrace()
+                        if (guilds.backupManager.scheduleRestore(backup)) {
+                            notify(sender, Messages.RESTORE__SCHEDULED, "{backup}", backup)
+                        } else {
+                            notify(sender, Messages.RESTORE__NOT_FOUND, "{backup}", backup)
+                        }
+                    } catch (ex: IOException) {
+                        ex.printStackTrace()
+                        notify(sender, Messages.RESTORE__FAILED, "{backup}", backup, "{reason}", ex.message ?: ex.javaClass.simpleName)
                     }
-                }.sync { guilds.commandManager.getCommandIssuer(issuer.getIssuer()).sendInfo(Messages.BACKUP__FINISHED) }.execute()
-                actionHandler.removeAction(issuer.getIssuer())
+                }.execute()
             }
 
             override fun decline() {
+                currentCommandIssuer.sendInfo(Messages.RESTORE__CANCELLED)
                 actionHandler.removeAction(issuer.getIssuer())
-                currentCommandIssuer.sendInfo(Messages.BACKUP__CANCELLED)
             }
         })
     }
@@ -96,35 +139,48 @@ internal class CommandConsole : BaseCommand() {
         actionHandler.addAction(issuer.getIssuer(), object : ConfirmAction {
             override fun accept() {
                 val resolvedBackend = DatabaseBackend.getByBackendName(toBackend) ?: throw ExpectationNotMet(Messages.MIGRATE__INVALID_BACKEND)
+                val sender = guilds.commandManager.getCommandIssuer(issuer.getIssuer())
+                actionHandler.removeAction(issuer.getIssuer())
+
+                // Taken up front on the main thread, changes made in the meantime are still written once it's done
+                guildHandler.isMigrating = true
+                val snapshots = guildHandler.snapshotGuilds()
+                val arenas = ArrayList(arenaHandler.getArenas())
+                val cooldowns = ArrayList(cooldownHandler.cooldowns.values)
+
                 Guilds.newChain<Any>().async {
+                    var resolvedAdapter: DatabaseAdapter? = null
                     try {
-                        guildHandler.isMigrating = true
-                        val resolvedAdapter = guilds.database.cloneWith(resolvedBackend)
+                        resolvedAdapter = guilds.database.cloneWith(resolvedBackend)
                         if (!resolvedAdapter.isConnected) {
-                            guildHandler.isMigrating = false
-                            throw ExpectationNotMet(Messages.MIGRATE__CONNECTION_FAILED)
+                            notify(sender, Messages.MIGRATE__CONNECTION_FAILED)
+                            return@async
                         }
 
-                        resolvedAdapter.guildAdapter.saveGuilds(guildHandler.guilds.values)
-                        resolvedAdapter.arenaAdapter.saveArenas(arenaHandler.getArenas())
-                        resolvedAdapter.cooldownAdapter.saveCooldowns(cooldownHandler.cooldowns.values)
-                        resolvedAdapter.challengeAdapter.saveChallenges(challengeHandler.challenges)
+                        val migration = DatabaseMigration(guilds.database, resolvedAdapter, File(guilds.dataFolder, MIGRATION_CHECKPOINT), resolvedAdapter.batchSize) { step, done, total, rate ->
+                            notify(sender, Messages.MIGRATE__PROGRESS, "{type}", step.displayName, "{done}", done.toString(), "{total}", total.toString(), "{rate}", rate.toString())
+                        }
+                        if (migration.isResumed) {
+                            notify(sender, Messages.MIGRATE__RESUMING, "{backend}", resolvedBackend.backendName)
+                        }
+                        migration.run(snapshots, arenas, cooldowns)
 
                         val old = guilds.database
                         guilds.database = resolvedAdapter
+                        resolvedAdapter = null
                         old.close()
-
-                        guildHandler.isMigrating = false
+                        notify(sender, Messages.MIGRATE__COMPLETE, "{amount}", snapshots.size.toString())
                     } catch (ex: IllegalArgumentException) {
-                        guildHandler.isMigrating = false
-                        throw ExpectationNotMet(Messages.MIGRATE__SAME_BACKEND)
+                        notify(sender, Messages.MIGRATE__SAME_BACKEND)
+                    } catch (ex: DatabaseMigration.VerificationException) {
+                        notify(sender, Messages.MIGRATE__VERIFY_FAILED, "{type}", ex.step.displayName, "{reason}", ex.message ?: "")
                     } catch (ex: IOException) {
-                        guildHandler.isMigrating = false
                         ex.printStackTrace()
+                        notify(sender, Messages.MIGRATE__FAILED, "{reason}", ex.message ?: ex.javaClass.simpleName)
+                    } finally {
+                        resolvedAdapter?.close()
+                        guildHandler.isMigrating = false
                     }
-                }.sync {
-                    guilds.commandManager.getCommandIssuer(issuer.getIssuer()).sendInfo(Messages.MIGRATE__COMPLETE, "{amount}", guildHandler.guildsSize.toString())
-                    actionHandler.removeAction(issuer.getIssuer())
                 }.execute()
             }
 
@@ -135,6 +191,13 @@ internal class CommandConsole : BaseCommand() {
         })
     }
 
+    /**
+     * Send a message to an issuer from the main thread.
+     */
+    private fun notify(issuer: CommandIssuer, message: Messages, vararg replacements: String) {
+        Guilds.newChain<Any>().sync { issuer.sendInfo(message, *replacements) }.execute()
+    }
+
     @Subcommand("console unclaimall")
     @Description("{@@descriptions.console-unclaim-all}")
     @CommandPermission(Constants.ADMIN_PERM)
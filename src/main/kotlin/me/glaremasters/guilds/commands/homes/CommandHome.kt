@@ -51,6 +51,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandHome : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
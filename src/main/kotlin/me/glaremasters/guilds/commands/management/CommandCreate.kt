@@ -57,6 +57,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandCreate : BaseCommand() {
     @Dependency lateinit var guilds: Guilds
     @Dependency lateinit var guildHandler: GuildHandler
@@ -138,9 +139,9 @@ internal class CommandCreate : BaseCommand() {
                 gb.balance(0.0)
                 gb.tier(guildHandler.getGuildTier(1))
 
-                gb.invitedMembers(arrayListOf())
+                gb.invitedMembers(linkedMapOf())
                 gb.allies(arrayListOf())
-                gb.pendingAllies(arrayListOf())
+                gb.pendingAllies(linkedMapOf())
 
                 gb.vaults(arrayListOf())
                 gb.codes(arrayListOf())
@@ -55,6 +55,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandKick : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -45,6 +45,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandPrefix : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
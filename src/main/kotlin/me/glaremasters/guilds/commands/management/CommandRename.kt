@@ -49,6 +49,7 @@ import org.bukkit.entity.Player
 import org.codemc.worldguardwrapper.WorldGuardWrapper
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandRename : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -62,7 +63,8 @@ internal class CommandRename : BaseCommand() {
     @CommandPermission(Constants.BASE_PERM + "rename")
     @Syntax("%name")
     fun rename(player: Player, @Conditions("perm:perm=RENAME") guild: Guild, name: String) {
-        if (guildHandler.checkGuildNames(name)) {
+        val existing = guildHandler.getGuild(name)
+        if (existing != null && existing != guild) {
             throw ExpectationNotMet(Messages.CREATE__GUILD_NAME_TAKEN)
         }
 
@@ -90,7 +92,7 @@ internal class CommandRename : BaseCommand() {
 
         guild.balance = guild.balance - renameCost
 
-        guild.name = StringUtils.color(name)
+        guildHandler.renameGuild(guild, StringUtils.color(name))
 
         if (ClaimUtils.isEnabled(settingsManager)) {
             val wrapper = WorldGuardWrapper.getInstance()
@@ -39,6 +39,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandStatus : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
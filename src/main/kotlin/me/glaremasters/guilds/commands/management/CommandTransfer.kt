@@ -47,6 +47,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandTransfer : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
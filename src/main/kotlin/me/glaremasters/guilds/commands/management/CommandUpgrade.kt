@@ -49,6 +49,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandUpgrade : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
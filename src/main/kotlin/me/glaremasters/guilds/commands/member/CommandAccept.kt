@@ -50,6 +50,7 @@ import org.bukkit.entity.Player
 import org.codemc.worldguardwrapper.WorldGuardWrapper
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandAccept : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
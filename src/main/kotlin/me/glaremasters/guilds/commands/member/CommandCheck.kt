@@ -36,6 +36,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandCheck : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -42,6 +42,7 @@ import me.glaremasters.guilds.utils.Constants
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandDecline : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -45,6 +45,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandInvite : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -78,7 +79,7 @@ internal class CommandInvite : BaseCommand() {
             return
         }
 
-        guild.inviteMember(user.uniqueId)
+        guildHandler.invitePlayer(guild, user.uniqueId, player.uniqueId)
         currentCommandManager.getCommandIssuer(user).sendInfo(Messages.INVITE__MESSAGE, "{player}", player.name, "{guild}", guild.name)
         currentCommandIssuer.sendInfo(Messages.INVITE__SUCCESSFUL, "{player}", user.name)
     }
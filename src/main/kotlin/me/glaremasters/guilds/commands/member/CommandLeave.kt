@@ -52,6 +52,7 @@ import org.bukkit.entity.Player
 import org.codemc.worldguardwrapper.WorldGuardWrapper
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandLeave : BaseCommand() {
     @Dependency
     lateinit var guilds: Guilds
@@ -41,6 +41,7 @@ import me.glaremasters.guilds.utils.StringUtils
 import org.bukkit.entity.Player
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandMotd : BaseCommand() {
     @Dependency
     lateinit var guildHandler: GuildHandler
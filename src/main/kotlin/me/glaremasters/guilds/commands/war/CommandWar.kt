@@ -29,6 +29,7 @@ import co.aikar.commands.annotation.CommandAlias
 import co.aikar.commands.annotation.CommandCompletion
 import co.aikar.commands.annotation.CommandPermission
 import co.aikar.commands.annotation.Conditions
+import co.aikar.commands.annotation.Default
 import co.aikar.commands.annotation.Dependency
 import co.aikar.commands.annotation.Description
 import co.aikar.commands.annotation.Flags
@@ -44,9 +45,11 @@ import me.glaremasters.guilds.api.events.challenges.GuildWarDeclineEvent
 import me.glaremasters.guilds.api.events.challenges.GuildWarPlayerJoinEvent
 import me.glaremasters.guilds.arena.ArenaHandler
 import me.glaremasters.guilds.challenges.ChallengeHandler
+import me.glaremasters.guilds.configuration.sections.GuildListSettings
 import me.glaremasters.guilds.configuration.sections.WarSettings
 import me.glaremasters.guilds.exceptions.ExpectationNotMet
 import me.glaremasters.guilds.guild.Guild
+import me.glaremasters.guilds.guild.GuildChallenge
 import me.glaremasters.guilds.guild.GuildHandler
 import me.glaremasters.guilds.messages.Messages
 import me.glaremasters.guilds.tasks.GuildWarChallengeCheckTask
@@ -54,9 +57,18 @@ import me.glaremasters.guilds.tasks.GuildWarJoinTask
 import me.glaremasters.guilds.utils.Constants
 import org.bukkit.Bukkit
 import org.bukkit.entity.Player
+import java.io.IOException
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.concurrent.TimeUnit
 
 @CommandAlias("%guilds")
+@Conditions("DataReady")
 internal class CommandWar : BaseCommand() {
+    companion object {
+        private const val HISTORY_PAGE_SIZE = 10
+    }
+
     @Dependency
     lateinit var guildHandler: GuildHandler
 
@@ -167,7 +179,7 @@ internal class CommandWar : BaseCommand() {
 
         challengeHandler.pingOnlineDefenders(targetGuild, guilds.commandManager, guild.name, acceptTime)
 
-        Guilds.getScheduler().runDelayed(SchedulerType.SYNC, { GuildWarChallengeCheckTask(guilds, challenge, challengeHandler) }, (acceptTime * 20).toLong())
+        guilds.timingWheel.schedule({ GuildWarChallengeCheckTask(guilds, challenge, challengeHandler).run() }, acceptTime.toLong(), TimeUnit.SECONDS)
     }
 
     @Subcommand("war deny")
@@ -189,6 +201,44 @@ internal class CommandWar : BaseCommand() {
         challengeHandler.removeChallenge(challenge)
     }
 
+    @Subcommand("war history")
+    @Description("{@@descriptions.war-history}")
+    @CommandPermission(Constants.WAR_PERM + "history")
+    @Syntax("%page")
+    fun history(player: Player, guild: Guild, @Default("1") page: Int) {
+        val issuer = currentCommandIssuer
+        Guilds.newChain<Pair<Int, List<GuildChallenge>>>().asyncFirst {
+            try {
+                Pair(challengeHandler.countHistory(guild), challengeHandler.getHistory(guild, page, HISTORY_PAGE_SIZE))
+            } catch (ex: IOException) {
+                ex.printStackTrace()
+                Pair(0, emptyList())
+            }
+        }.syncLast { (total, challenges) ->
+            if (challenges.isEmpty()) {
+                issuer.sendInfo(Messages.WAR__HISTORY_EMPTY)
+                return@syncLast
+            }
+            val pages = (total + HISTORY_PAGE_SIZE - 1) / HISTORY_PAGE_SIZE
+            issuer.sendInfo(Messages.WAR__HISTORY_HEADER, "{guild}", guild.name, "{page}", page.toString(), "{pages}", pages.toString())
+            val sdf = SimpleDateFormat(settingsManager.getProperty(GuildListSettings.GUI_TIME_FORMAT))
+            challenges.forEach { challenge ->
+                issuer.sendInfo(Messages.WAR__HISTORY_ENTRY,
+                    "{date}", sdf.format(Date(challenge.initiateTime)),
+                    "{challenger}", nameOf(challenge.challenger),
+                    "{defender}", nameOf(challenge.defender),
+                    "{winner}", challenge.winner?.let { nameOf(it) } ?: "-")
+            }
+        }.execute()
+    }
+
+    /**
+     * Guilds in the history are only stored by id and may have been deleted since.
+     */
+    private fun nameOf(guild: Guild): String {
+        return guildHandler.getGuild(guild.id)?.name ?: "?"
+    }
+
     @Subcommand("war join")
     @Description("{@@descriptions.war-join}")
     @Syntax("")
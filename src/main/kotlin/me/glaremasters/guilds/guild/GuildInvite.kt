@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.guild
+
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * An invite of a player to a guild, or a request of another guild to become allies, that is only valid for a while.
+ *
+ * @param target The UUID of the invited player, or of the guild that asked to become allies.
+ * @param inviter The UUID of the player who sent it, or null if it isn't known.
+ * @param createdAt When it was sent, in milliseconds since the epoch.
+ * @param ttl How long it stays valid, in seconds. 0 if it doesn't expire.
+ */
+class GuildInvite(
+    val target: UUID,
+    val inviter: UUID?,
+    val createdAt: Long,
+    val ttl: Long
+) {
+
+    /**
+     * When the invite stops being valid, in milliseconds since the epoch.
+     */
+    val expiresAt: Long
+        get() = createdAt + TimeUnit.SECONDS.toMillis(ttl)
+
+    /**
+     * Checks whether the invite is no longer valid.
+     *
+     * @param now The current time in milliseconds since the epoch.
+     * @return true if the invite has expired.
+     */
+    fun isExpired(now: Long): Boolean {
+        return ttl > 0 && now >= expiresAt
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.guild.adapters
+
+import com.google.gson.TypeAdapter
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.google.gson.stream.JsonWriter
+import me.glaremasters.guilds.guild.GuildInvite
+import java.util.UUID
+
+/**
+ * GuildInvitesAdapter is a [TypeAdapter] for the invites of a guild, keyed by their target.
+ *
+ * Every invite is written as a small array of its target, when it was created, how long it is valid for and, if known,
+ * who sent it. Guilds stored before invites expired hold a plain list of targets, those are read as invites that were
+ * never given a time, the guild handler gives them one when the guild is loaded.
+ */
+class GuildInvitesAdapter : TypeAdapter<MutableMap<UUID, GuildInvite>>() {
+
+    /**
+     * Writes the given invites to a [JsonWriter].
+     *
+     * @param out The [JsonWriter] to write the invites to.
+     * @param invites The invites to write.
+     */
+    override fun write(out: JsonWriter, invites: MutableMap<UUID, GuildInvite>) {
+        out.beginArray()
+        for (invite in invites.values) {
+            out.beginArray()
+            out.value(invite.target.toString())
+            out.value(invite.createdAt)
+            out.value(invite.ttl)
+            invite.inviter?.let { out.value(it.toString()) }
+            out.endArray()
+        }
+        out.endArray()
+    }
+
+    /**
+     * Reads the invites from a [JsonReader].
+     *
+     * @param reader The [JsonReader] to read the invites from.
+     * @return The invites that were read, keyed by their target.
+     */
+    override fun read(reader: JsonReader): MutableMap<UUID, GuildInvite> {
+        val invites = LinkedHashMap<UUID, GuildInvite>()
+        reader.beginArray()
+        while (reader.hasNext()) {
+            val invite = if (reader.peek() == JsonToken.STRING) {
+                GuildInvite(UUID.fromString(reader.nextString()), null, 0L, 0L)
+            } else {
+                reader.beginArray()
+                val target = UUID.fromString(reader.nextString())
+                val createdAt = reader.nextLong()
+                val ttl = reader.nextLong()
+                val inviter = if (reader.hasNext() && reader.peek() == JsonToken.STRING) UUID.fromString(reader.nextString()) else null
+                while (reader.hasNext()) {
+                    reader.skipValue()
+                }
+                reader.endArray()
+                GuildInvite(target, inviter, createdAt, ttl)
+            }
+            invites[invite.target] = invite
+        }
+        reader.endArray()
+        return invites
+    }
+}
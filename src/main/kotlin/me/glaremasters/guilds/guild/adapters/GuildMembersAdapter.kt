@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.guild.adapters
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import com.google.gson.TypeAdapterFactory
+import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonWriter
+import me.glaremasters.guilds.guild.GuildMember
+import java.util.UUID
+
+/**
+ * GuildMembersAdapter is a [TypeAdapterFactory] for the members of a guild, keyed by their UUID.
+ *
+ * The members are written as the same list of member objects they were stored as before they were kept in a map, so
+ * existing guilds load unchanged. The order of the list is kept.
+ */
+class GuildMembersAdapter : TypeAdapterFactory {
+
+    /**
+     * Creates the adapter, writing each member with the adapter [Gson] has for [GuildMember].
+     *
+     * @param gson The [Gson] instance the adapter is created for.
+     * @param type The type of the members field.
+     * @return The adapter for the members.
+     */
+    override fun <T> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T> {
+        val memberAdapter = gson.getAdapter(GuildMember::class.java)
+
+        val adapter = object : TypeAdapter<MutableMap<UUID, GuildMember>>() {
+            override fun write(out: JsonWriter, members: MutableMap<UUID, GuildMember>) {
+                out.beginArray()
+                for (member in members.values) {
+                    memberAdapter.write(out, member)
+                }
+                out.endArray()
+            }
+
+            override fun read(reader: JsonReader): MutableMap<UUID, GuildMember> {
+                val members = LinkedHashMap<UUID, GuildMember>()
+                reader.beginArray()
+                while (reader.hasNext()) {
+                    val member = memberAdapter.read(reader) ?: continue
+                    members[member.uuid] = member
+                }
+                reader.endArray()
+                return members
+            }
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        return adapter.nullSafe() as TypeAdapter<T>
+    }
+}
@@ -83,10 +83,10 @@ class VaultGUI(private val guilds: Guilds, private val settingsManager: Settings
                 try {
                     guildHandler.getGuildVault(guild, event.rawSlot + 1)
                 } catch (ex: IndexOutOfBoundsException) {
-                    guildHandler.vaults[guild]?.add(guildHandler.createNewVault(settingsManager))
+                    guildHandler.vaultCache.get(guild).add(guildHandler.createNewVault(settingsManager))
                 }
                 player.openInventory(guildHandler.getGuildVault(guild, event.rawSlot + 1))
-                guildHandler.opened.add(player)
+                guildHandler.openVault(player, guild)
             }
 
             gui.addItem(item)
@@ -73,44 +73,57 @@ class PlayerListener(private val guilds: Guilds, private val settingsManager: Se
 
     @EventHandler
     fun PlayerJoinEvent.onMOTD() {
-        val guild = guildHandler.getGuild(player) ?: return
-        val motd = guild.motd ?: return
+        guilds.whenDataReady {
+            if (!player.isOnline) return@whenDataReady
+            val guild = guildHandler.getGuild(player) ?: return@whenDataReady
+            val motd = guild.motd ?: return@whenDataReady
 
-        if (!settingsManager.getProperty(GuildSettings.MOTD_ON_LOGIN)) {
-            return
+            if (!settingsManager.getProperty(GuildSettings.MOTD_ON_LOGIN)) {
+                return@whenDataReady
+            }
+            Guilds.getScheduler().runDelayed(SchedulerType.SYNC, {
+                guilds.commandManager.getCommandIssuer(player).sendInfo(Messages.MOTD__MOTD, "{motd}", motd)
+            }, 100L)
         }
-        Guilds.getScheduler().runDelayed(SchedulerType.SYNC, {
-            guilds.commandManager.getCommandIssuer(player).sendInfo(Messages.MOTD__MOTD, "{motd}", motd)
-        }, 100L)
     }
 
     @EventHandler
     fun PlayerJoinEvent.onLastLoginUpdate() {
-        val guild = guildHandler.getGuild(player) ?: return
-        val member = guild.getMember(player.uniqueId)
+        guilds.whenDataReady {
+            if (!player.isOnline) return@whenDataReady
+            val guild = guildHandler.getGuild(player) ?: return@whenDataReady
+            val member = guild.getMember(player.uniqueId)
 
-        if (member.joinDate == 0L) {
-            member.joinDate = System.currentTimeMillis()
-        }
+            if (member.joinDate == 0L) {
+                member.joinDate = System.currentTimeMillis()
+            }
 
-        member.lastLogin = System.currentTimeMillis()
+            member.lastLogin = System.currentTimeMillis()
+            guild.markDirty()
+        }
     }
 
     @EventHandler
     fun PlayerJoinEvent.onUpdateSkullCheck() {
-        val guild = guildHandler.getGuild(player) ?: return
+        guilds.whenDataReady {
+            if (!player.isOnline) return@whenDataReady
+            val guild = guildHandler.getGuild(player) ?: return@whenDataReady
 
-        if (!guild.isMaster(player)) {
-            return
-        }
+            if (!guild.isMaster(player)) {
+                return@whenDataReady
+            }
 
-        guild.updateGuildSkull(player, settingsManager)
+            guild.updateGuildSkull(player, settingsManager)
+        }
     }
 
     @EventHandler
     fun PlayerJoinEvent.onPermCheck() {
-        guildHandler.addGuildPerms(permission, player)
-        guildHandler.addRolePerm(permission, player)
+        guilds.whenDataReady {
+            if (!player.isOnline) return@whenDataReady
+            guildHandler.addGuildPerms(permission, player)
+            guildHandler.addRolePerm(permission, player)
+        }
     }
 
     @EventHandler
@@ -48,8 +48,10 @@ enum class Messages : MessageKeyProvider {
     SYNTAX__USES,
     SYNTAX__LANGUAGE,
     SYNTAX__NEW_BACKEND,
+    SYNTAX__BACKUP,
     SYNTAX__NEW_MASTER,
     SYNTAX__OPTIONAL,
+    SYNTAX__PAGE,
 
     CREATE__SUCCESSFUL,
     CREATE__REQUIREMENTS,
@@ -73,6 +75,7 @@ enum class Messages : MessageKeyProvider {
     ERROR__NO_PENDING_INVITES,
     ERROR__BUFF_NO_PERMISSION,
     ERROR__MIGRATING,
+    ERROR__DATA_LOADING,
     ERROR__CONSOLE_COMMAND,
     ERROR__TRANSFER_SAME_PERSON,
     ERROR__PLAYER_NO_EXIST,
@@ -106,6 +109,10 @@ enum class Messages : MessageKeyProvider {
     ADMIN__SCORE_SETWINS,
     ADMIN__SCORE_SETLOSES,
     ADMIN__SCORE_RESETALL,
+    ADMIN__SAVE_STARTED,
+    ADMIN__SAVE_COMPLETE,
+    ADMIN__SAVE_FAILED,
+    ADMIN__VAULT_STATS,
 
     BOOT__PLAYER_KICKED,
     BOOT__SUCCESSFUL,
@@ -245,6 +252,13 @@ enum class Messages : MessageKeyProvider {
     BACKUP__FINISHED,
     BACKUP__WARNING,
     BACKUP__CANCELLED,
+    BACKUP__FAILED,
+
+    RESTORE__WARNING,
+    RESTORE__SCHEDULED,
+    RESTORE__NOT_FOUND,
+    RESTORE__FAILED,
+    RESTORE__CANCELLED,
 
     MOTD__SUCCESS,
     MOTD__REMOVE,
@@ -292,13 +306,20 @@ enum class Messages : MessageKeyProvider {
     WAR__PLAYER_KILLED_OTHER,
     WAR__TELEPORTED_BACK,
     WAR__PLAYER_KILLED_QUIT,
+    WAR__HISTORY_HEADER,
+    WAR__HISTORY_ENTRY,
+    WAR__HISTORY_EMPTY,
 
     MIGRATE__INVALID_BACKEND,
     MIGRATE__CONNECTION_FAILED,
     MIGRATE__SAME_BACKEND,
     MIGRATE__COMPLETE,
     MIGRATE__WARNING,
-    MIGRATE__CANCELLED;
+    MIGRATE__CANCELLED,
+    MIGRATE__RESUMING,
+    MIGRATE__PROGRESS,
+    MIGRATE__VERIFY_FAILED,
+    MIGRATE__FAILED;
 
     /**
      * Message keys that grab from the config to send messages
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.cooldowns;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpiryMapTest {
+    private static final int CAPACITY = 16;
+
+    @Test
+    void shiftsBackProbeChainThatWrapsAround() {
+        final Random random = new Random(1);
+        final UUID a = keyWithHome(random, CAPACITY - 1);
+        final UUID b = keyWithHome(random, CAPACITY - 1);
+        final UUID c = keyWithHome(random, CAPACITY - 1);
+        final UUID d = keyWithHome(random, 0);
+
+        // a sits in the last slot, b and c wrap around to the start and push d, whose home is slot 0, to slot 2
+        final ExpiryMap map = new ExpiryMap();
+        map.put(a, 1);
+        map.put(b, 2);
+        map.put(c, 3);
+        map.put(d, 4);
+
+        map.remove(a);
+        assertEquals(0, map.get(a));
+        assertEquals(2, map.get(b));
+        assertEquals(3, map.get(c));
+        assertEquals(4, map.get(d));
+        assertEquals(3, map.size());
+
+        map.remove(b);
+        assertEquals(3, map.get(c));
+        assertEquals(4, map.get(d));
+
+        map.remove(d);
+        assertEquals(3, map.get(c));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void keepsEntriesBeforeTheirHomeWhenShifting() {
+        final Random random = new Random(2);
+        final UUID a = keyWithHome(random, CAPACITY - 2);
+        final UUID b = keyWithHome(random, CAPACITY - 2);
+        final UUID c = keyWithHome(random, 0);
+        final UUID d = keyWithHome(random, CAPACITY - 1);
+
+        // a and b fill the last two slots, c stays in its home at 0 and d wraps past it to slot 1
+        final ExpiryMap map = new ExpiryMap();
+        map.put(a, 1);
+        map.put(b, 2);
+        map.put(c, 3);
+        map.put(d, 4);
+
+        // d may move back into the last slot, c has to stay where it is
+        map.remove(b);
+        assertEquals(1, map.get(a));
+        assertEquals(3, map.get(c));
+        assertEquals(4, map.get(d));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomChanges() {
+        final Random random = new Random(3);
+        final List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        // Staying at a handful of entries keeps the table small, so probe chains wrap around often
+        final ExpiryMap map = new ExpiryMap();
+        final Map<UUID, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            final UUID key = keys.get(random.nextInt(keys.size()));
+            if (expected.size() < 8 && random.nextBoolean()) {
+                final long expiry = 1 + random.nextInt(1000);
+                map.put(key, expiry);
+                expected.put(key, expiry);
+            } else {
+                map.remove(key);
+                expected.remove(key);
+            }
+            assertEquals(expected.size(), map.size());
+            for (UUID check : keys) {
+                assertEquals((long) expected.getOrDefault(check, 0L), map.get(check));
+            }
+        }
+    }
+
+    @Test
+    void removesExpiredEntries() {
+        final ExpiryMap map = new ExpiryMap();
+        final Map<UUID, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            final UUID key = UUID.randomUUID();
+            map.put(key, i);
+            if (i > 50) {
+                expected.put(key, (long) i);
+            }
+        }
+        map.removeExpired(50);
+        final Map<UUID, Long> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Find a key whose home slot in a table of {@link #CAPACITY} slots is the given one, using the same mix as
+     * the map itself.
+     */
+    private static UUID keyWithHome(Random random, int home) {
+        while (true) {
+            final UUID key = new UUID(random.nextLong(), random.nextLong());
+            long hash = key.getMostSignificantBits() ^ key.getLeastSignificantBits();
+            hash ^= hash >>> 32;
+            hash *= 0x9E3779B97F4A7C15L;
+            if (((int) (hash >>> 33) & (CAPACITY - 1)) == home) {
+                return key;
+            }
+        }
+    }
+}
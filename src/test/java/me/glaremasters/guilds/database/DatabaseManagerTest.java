@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database;
+
+import ch.jalu.configme.SettingsManager;
+import ch.jalu.configme.SettingsManagerBuilder;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import me.glaremasters.guilds.configuration.sections.StorageSettings;
+import me.glaremasters.guilds.database.guild.provider.GuildSQLiteProvider;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseManagerTest {
+    private static final int GUILDS = 10_000;
+    private static final String PREFIX = "guilds_";
+
+    @TempDir
+    File folder;
+
+    @Test
+    void opensSqliteDatabaseInDataFolder() {
+        final DatabaseManager manager = new DatabaseManager(settings(), DatabaseBackend.SQLITE, folder);
+        try {
+            assertTrue(manager.isConnected());
+            assertTrue(new File(folder, "guilds.db").exists());
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    void failsStartupWhenSqliteCantBeOpened() throws IOException {
+        // A file where the data folder should be, so the database can't be created
+        final File notAFolder = new File(folder, "data");
+        Files.createFile(notAFolder.toPath());
+        assertThrows(IllegalStateException.class, () -> new DatabaseManager(settings(), DatabaseBackend.SQLITE, notAFolder));
+    }
+
+    /**
+     * Saves 10k guilds in batches the way the write queue does, once through a plain pool on a default SQLite
+     * connection and once through the writer of the SQLite setup. Run with {@code -Dguilds.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "guilds.benchmark", matches = "true")
+    void benchmarkSavingGuilds() throws IOException {
+        final SettingsManager settings = settings();
+        final int batchSize = settings.getProperty(StorageSettings.SQL_BATCH_SIZE);
+        final List<String> ids = new ArrayList<>(GUILDS);
+        final List<String> data = new ArrayList<>(GUILDS);
+        for (int i = 0; i < GUILDS; i++) {
+            final String id = UUID.randomUUID().toString();
+            ids.add(id);
+            data.add(document(id, i));
+        }
+
+        final File plainFolder = new File(folder, "plain");
+        Files.createDirectories(plainFolder.toPath());
+        final HikariConfig plain = new HikariConfig();
+        plain.setJdbcUrl("jdbc:sqlite:" + new File(plainFolder, "guilds.db").getAbsolutePath());
+        try (HikariDataSource source = new HikariDataSource(plain)) {
+            final Jdbi jdbi = Jdbi.create(source);
+            jdbi.installPlugin(new SqlObjectPlugin());
+            report("default connection", save(jdbi, ids, data, batchSize));
+        }
+
+        final File tunedFolder = new File(folder, "tuned");
+        Files.createDirectories(tunedFolder.toPath());
+        final DatabaseManager manager = new DatabaseManager(settings, DatabaseBackend.SQLITE, tunedFolder);
+        try {
+            report("single writer in WAL mode", save(manager.getJdbi(), ids, data, batchSize));
+        } finally {
+            manager.close();
+        }
+    }
+
+    private SettingsManager settings() {
+        return SettingsManagerBuilder.withYamlFile(new File(folder, "config.yml"))
+                .configurationData(StorageSettings.class)
+                .useDefaultMigrationService()
+                .create();
+    }
+
+    private static long save(Jdbi jdbi, List<String> ids, List<String> data, int batchSize) throws IOException {
+        final GuildSQLiteProvider provider = jdbi.onDemand(GuildSQLiteProvider.class);
+        provider.createContainer(PREFIX);
+        final long start = System.nanoTime();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            final int to = Math.min(ids.size(), from + batchSize);
+            provider.upsertGuilds(PREFIX, ids.subList(from, to), data.subList(from, to));
+        }
+        final long elapsed = System.nanoTime() - start;
+        assertEquals(ids.size(), provider.getAllGuildIds(PREFIX).size());
+        return elapsed;
+    }
+
+    private static void report(String setup, long nanos) {
+        final double millis = nanos / 1_000_000.0;
+        System.out.printf("Saved %d guilds through the %s in %.1f ms (%.0f guilds/s)%n", GUILDS, setup, millis, GUILDS / (millis / 1000));
+    }
+
+    private static String document(String id, int index) {
+        return "{\"id\":\"" + id + "\",\"name\":\"guild-" + index + "\",\"prefix\":\"G" + index + "\",\"status\":\"Private\"," +
+                "\"balance\":" + index + ".0,\"tier\":{\"level\":1},\"members\":[{\"uuid\":\"" + UUID.randomUUID() + "\"," +
+                "\"role\":{\"name\":\"GuildMaster\",\"level\":0}}],\"allies\":[],\"pendingAllies\":[],\"invitedMembers\":[]," +
+                "\"codes\":[],\"guildScore\":{\"wins\":0,\"loses\":0}}";
+    }
+}
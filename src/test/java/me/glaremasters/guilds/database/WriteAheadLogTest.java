@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database;
+
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+    private static final UUID FIRST = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID SECOND = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @TempDir
+    File folder;
+
+    @Test
+    void keepsLastStateAcrossSegments() throws IOException {
+        final WriteAheadLog log = start();
+        log.logCooldown(Cooldown.Type.Home, FIRST, 1000);
+        log.rotate();
+        log.logCooldown(Cooldown.Type.Home, FIRST, 2000);
+        log.logGuildDelete(SECOND);
+        log.close(false);
+
+        final WriteAheadLog.Records records = WriteAheadLog.read(folder);
+        assertEquals(3, records.count);
+        assertEquals(1, records.cooldowns.size());
+        assertEquals(2000L, expiry(records, FIRST));
+        assertTrue(records.guilds.containsKey(SECOND));
+        assertNull(records.guilds.get(SECOND));
+    }
+
+    @Test
+    void truncateOnlyDropsSealedSegments() throws IOException {
+        final WriteAheadLog log = start();
+        log.logCooldown(Cooldown.Type.Home, FIRST, 1000);
+        final long sealed = log.rotate();
+        log.logCooldown(Cooldown.Type.Home, SECOND, 2000);
+        log.truncate(sealed);
+        log.close(false);
+
+        final WriteAheadLog.Records records = WriteAheadLog.read(folder);
+        assertEquals(1, records.count);
+        assertEquals(2000L, expiry(records, SECOND));
+        assertEquals(1, segments().length);
+    }
+
+    @Test
+    void tornRecordOnlyEndsItsOwnSegment() throws IOException {
+        final WriteAheadLog log = start();
+        log.logCooldown(Cooldown.Type.Home, FIRST, 1000);
+        log.logCooldown(Cooldown.Type.Buffs, FIRST, 1000);
+        log.rotate();
+        log.logCooldown(Cooldown.Type.Home, SECOND, 2000);
+        log.close(false);
+
+        // Cut the last record of the sealed segment short, as if the server died while writing it
+        try (RandomAccessFile file = new RandomAccessFile(segments()[0], "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        final WriteAheadLog.Records records = WriteAheadLog.read(folder);
+        assertEquals(2, records.count);
+        assertEquals(1000L, expiry(records, FIRST));
+        assertEquals(2000L, expiry(records, SECOND));
+    }
+
+    @Test
+    void closeAfterCheckpointDeletesEverySegment() throws IOException {
+        final WriteAheadLog log = start();
+        log.logCooldown(Cooldown.Type.Home, FIRST, 1000);
+        log.rotate();
+        log.logGuildDelete(SECOND);
+        log.close(true);
+
+        assertEquals(0, segments().length);
+        assertEquals(0, WriteAheadLog.read(folder).count);
+    }
+
+    @Test
+    void continuesAfterSegmentsOfPreviousRun() throws IOException {
+        final WriteAheadLog first = start();
+        first.logCooldown(Cooldown.Type.Home, FIRST, 1000);
+        first.close(false);
+        final WriteAheadLog second = start();
+        second.logCooldown(Cooldown.Type.Home, FIRST, 2000);
+        second.close(false);
+
+        assertEquals(2, segments().length);
+        assertEquals(2000L, expiry(WriteAheadLog.read(folder), FIRST));
+    }
+
+    private WriteAheadLog start() throws IOException {
+        final WriteAheadLog log = new WriteAheadLog(folder, true, 0);
+        log.start();
+        return log;
+    }
+
+    private File[] segments() {
+        final File[] files = folder.listFiles((dir, name) -> name.endsWith(".wal"));
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long expiry(WriteAheadLog.Records records, UUID owner) {
+        return records.cooldowns.get(Cooldown.Type.Home.getTypeName() + ":" + owner).getCooldownExpiry();
+    }
+}
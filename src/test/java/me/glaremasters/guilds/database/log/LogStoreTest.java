@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStoreTest {
+    private static final long SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsRecordThatFailsItsChecksum() throws IOException {
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            store.put("a", bytes("first"));
+            store.put("b", bytes("second"));
+        }
+        final Path segment = single(segments());
+        final long intact = Files.size(segment) - recordLength("b", "second");
+
+        // Flip the last byte of the value, as if the write was torn halfway through
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0xFF));
+            last.rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            assertArrayEquals(bytes("first"), store.get("a"));
+            assertFalse(store.contains("b"));
+            assertEquals(intact, Files.size(segment));
+            store.put("c", bytes("third"));
+        }
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            assertArrayEquals(bytes("first"), store.get("a"));
+            assertArrayEquals(bytes("third"), store.get("c"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    void dropsRecordCutOffHalfway() throws IOException {
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            store.put("a", bytes("first"));
+        }
+        final Path segment = single(segments());
+        final long intact = Files.size(segment);
+        // A length that points past the end of the file followed by a few bytes of the record
+        Files.write(segment, new byte[]{0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            assertArrayEquals(bytes("first"), store.get("a"));
+            assertEquals(1, store.size());
+            assertEquals(intact, Files.size(segment));
+        }
+    }
+
+    @Test
+    void ignoresCompactionThatNeverFinished() throws IOException {
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            fill(store);
+        }
+        final List<Path> before = segments();
+        final Path temp = directory.resolve(String.format("%012d-1.seg.tmp", before.size() - 1));
+        Files.write(temp, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            assertFilled(store);
+        }
+        assertFalse(Files.exists(temp));
+        assertEquals(before, segments());
+    }
+
+    @Test
+    void recoversFromCompactionInterruptedWhileCleaningUp() throws IOException {
+        final Map<Path, byte[]> replaced = new HashMap<>();
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            fill(store);
+            assertTrue(store.needsCompaction(0.1));
+            for (Path segment : segments()) {
+                replaced.put(segment, Files.readAllBytes(segment));
+            }
+            store.compact();
+            assertFilled(store);
+        }
+        // Put back the segments the compaction deleted, as if it crashed before getting to them
+        final List<Path> after = segments();
+        int restored = 0;
+        for (Map.Entry<Path, byte[]> entry : replaced.entrySet()) {
+            if (!after.contains(entry.getKey())) {
+                Files.write(entry.getKey(), entry.getValue());
+                restored++;
+            }
+        }
+        assertTrue(restored > 1);
+
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            assertFilled(store);
+        }
+        assertEquals(after, segments());
+    }
+
+    @Test
+    void deletesBatchOfKeys() throws IOException {
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+            store.put("c", bytes("3"));
+            store.deleteAll(Arrays.asList("a", "c", "missing"));
+        }
+        try (LogStore store = LogStore.open(directory, SEGMENT_SIZE)) {
+            assertEquals(List.of("b"), store.keys());
+        }
+    }
+
+    /**
+     * Writes enough records to seal several segments, overwriting some keys and deleting one that lives in the
+     * first segment, so compaction has garbage to drop.
+     */
+    private static void fill(LogStore store) throws IOException {
+        store.put("deleted", value('d'));
+        for (int round = 0; round < 3; round++) {
+            for (int key = 0; key < 4; key++) {
+                store.put("key-" + key, value((char) ('a' + round)));
+            }
+            if (round == 0) {
+                store.delete("deleted");
+            }
+        }
+        // Roll once more so every write above ends up in a sealed segment
+        store.put("last", value('z'));
+        store.put("last", value('z'));
+        store.put("last", value('z'));
+    }
+
+    private static void assertFilled(LogStore store) throws IOException {
+        assertNull(store.get("deleted"));
+        for (int key = 0; key < 4; key++) {
+            assertArrayEquals(value('c'), store.get("key-" + key));
+        }
+        assertArrayEquals(value('z'), store.get("last"));
+        assertEquals(5, store.size());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".seg")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Path single(List<Path> paths) {
+        assertEquals(1, paths.size());
+        return paths.get(0);
+    }
+
+    private static long recordLength(String key, String value) {
+        return 4 + 4 + 1 + 2 + bytes(key).length + bytes(value).length;
+    }
+
+    private static byte[] value(char fill) {
+        final byte[] value = new byte[300];
+        Arrays.fill(value, (byte) fill);
+        return value;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
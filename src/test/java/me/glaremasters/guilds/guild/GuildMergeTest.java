@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GuildMergeTest {
+
+    @Test
+    void keepsChangesOfBothSidesToCounters() {
+        final String base = "{\"balance\":100.0,\"guildScore\":{\"wins\":1,\"loses\":0}}";
+        final String local = "{\"balance\":150.0,\"guildScore\":{\"wins\":2,\"loses\":0}}";
+        final String remote = "{\"balance\":80.0,\"guildScore\":{\"wins\":2,\"loses\":1}}";
+
+        final JsonObject merged = merge(base, local, remote);
+        assertEquals(130.0, merged.get("balance").getAsDouble(), 0.0001);
+        assertEquals(3, merged.getAsJsonObject("guildScore").get("wins").getAsInt());
+        assertEquals(1, merged.getAsJsonObject("guildScore").get("loses").getAsInt());
+    }
+
+    @Test
+    void countsUsesOfCodesRedeemedOnBothSides() {
+        final String base = "{\"codes\":[{\"id\":\"abc\",\"uses\":5}]}";
+        final String local = "{\"codes\":[{\"id\":\"abc\",\"uses\":4}]}";
+        final String remote = "{\"codes\":[{\"id\":\"abc\",\"uses\":3}]}";
+
+        final JsonArray codes = merge(base, local, remote).getAsJsonArray("codes");
+        assertEquals(1, codes.size());
+        assertEquals(2, codes.get(0).getAsJsonObject().get("uses").getAsInt());
+    }
+
+    @Test
+    void takesTheSideThatChangedAField() {
+        final String base = "{\"name\":\"Old\",\"motd\":\"Hello\"}";
+        final String local = "{\"name\":\"Old\",\"motd\":\"Welcome\"}";
+        final String remote = "{\"name\":\"New\",\"motd\":\"Hello\"}";
+
+        final JsonObject merged = merge(base, local, remote);
+        assertEquals("New", merged.get("name").getAsString());
+        assertEquals("Welcome", merged.get("motd").getAsString());
+    }
+
+    @Test
+    void keepsLocalValueWhenBothSidesChangedIt() {
+        final JsonObject merged = merge("{\"name\":\"Old\"}", "{\"name\":\"Local\"}", "{\"name\":\"Remote\"}");
+        assertEquals("Local", merged.get("name").getAsString());
+    }
+
+    @Test
+    void takesLargerOfOtherNumbers() {
+        final JsonObject merged = merge("{\"lastDefended\":1}", "{\"lastDefended\":5}", "{\"lastDefended\":9}");
+        assertEquals(9, merged.get("lastDefended").getAsLong());
+    }
+
+    @Test
+    void takesLargerCounterWithoutBase() {
+        final JsonObject merged = merge(null, "{\"balance\":10.0}", "{\"balance\":20.0}");
+        assertEquals(20.0, merged.get("balance").getAsDouble(), 0.0001);
+    }
+
+    @Test
+    void mergesListsByTheirEntries() {
+        final String base = "{\"allies\":[\"a\",\"b\"]}";
+        final String local = "{\"allies\":[\"a\",\"b\",\"c\"]}";
+        final String remote = "{\"allies\":[\"b\",\"d\"]}";
+
+        final Set<String> allies = new HashSet<>();
+        for (JsonElement ally : merge(base, local, remote).getAsJsonArray("allies")) {
+            allies.add(ally.getAsString());
+        }
+        // a was removed remotely, c was added locally and d remotely
+        assertEquals(new HashSet<>(java.util.Arrays.asList("b", "c", "d")), allies);
+    }
+
+    @Test
+    void keepsMembersAddedAndDropsMembersRemovedOnEitherSide() {
+        final String base = "{\"members\":{\"m1\":{\"uuid\":\"m1\",\"role\":1},\"m2\":{\"uuid\":\"m2\",\"role\":3}}}";
+        final String local = "{\"members\":{\"m1\":{\"uuid\":\"m1\",\"role\":2},\"m2\":{\"uuid\":\"m2\",\"role\":3},\"m3\":{\"uuid\":\"m3\",\"role\":3}}}";
+        final String remote = "{\"members\":{\"m1\":{\"uuid\":\"m1\",\"role\":1}}}";
+
+        final JsonObject members = merge(base, local, remote).getAsJsonObject("members");
+        assertEquals(2, members.getAsJsonObject("m1").get("role").getAsInt());
+        assertFalse(members.has("m2"));
+        assertTrue(members.has("m3"));
+    }
+
+    @Test
+    void replacesInvitesAsAWhole() {
+        final String base = "{\"invites\":[[\"p1\",100]]}";
+        final String local = "{\"invites\":[[\"p1\",200]]}";
+        final String remote = "{\"invites\":[[\"p1\",100],[\"p2\",300]]}";
+
+        final JsonArray invites = merge(base, local, remote).getAsJsonArray("invites");
+        assertEquals(2, invites.size());
+        assertEquals(200, invites.get(0).getAsJsonArray().get(1).getAsInt());
+        assertEquals("p2", invites.get(1).getAsJsonArray().get(0).getAsString());
+    }
+
+    private static JsonObject merge(String base, String local, String remote) {
+        return JsonParser.parseString(GuildMerge.merge(base, local, remote)).getAsJsonObject();
+    }
+}
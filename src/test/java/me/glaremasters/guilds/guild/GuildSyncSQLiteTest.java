@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import ch.jalu.configme.SettingsManager;
+import ch.jalu.configme.SettingsManagerBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.glaremasters.guilds.configuration.sections.StorageSettings;
+import me.glaremasters.guilds.database.DatabaseBackend;
+import me.glaremasters.guilds.database.DatabaseManager;
+import me.glaremasters.guilds.database.guild.GuildChange;
+import me.glaremasters.guilds.database.guild.VersionedGuild;
+import me.glaremasters.guilds.database.guild.provider.GuildSQLiteProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildSyncSQLiteProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two servers sharing one SQLite file, each through its own connections, changing the same guild at once.
+ */
+class GuildSyncSQLiteTest {
+    private static final String PREFIX = "guilds_";
+    private static final String ID = UUID.randomUUID().toString();
+    private static final List<String> IDS = Collections.singletonList(ID);
+
+    @TempDir
+    File folder;
+
+    private DatabaseManager firstDatabase;
+    private DatabaseManager secondDatabase;
+    private GuildSyncSQLiteProvider first;
+    private GuildSyncSQLiteProvider second;
+
+    @BeforeEach
+    void setUp() {
+        final SettingsManager settings = SettingsManagerBuilder.withYamlFile(new File(folder, "config.yml"))
+                .configurationData(StorageSettings.class)
+                .useDefaultMigrationService()
+                .create();
+        firstDatabase = new DatabaseManager(settings, DatabaseBackend.SQLITE, folder);
+        secondDatabase = new DatabaseManager(settings, DatabaseBackend.SQLITE, folder);
+
+        // The same steps the guild adapter takes when synchronizing is turned on
+        firstDatabase.getJdbi().onDemand(GuildSQLiteProvider.class).createContainer(PREFIX);
+        first = firstDatabase.getJdbi().onDemand(GuildSyncSQLiteProvider.class);
+        first.createChangeLog(PREFIX);
+        first.addVersionColumn(PREFIX);
+        first.initVersions(PREFIX);
+        second = secondDatabase.getJdbi().onDemand(GuildSyncSQLiteProvider.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        firstDatabase.close();
+        secondDatabase.close();
+    }
+
+    @Test
+    void mergesConflictingWritesAndBumpsTheVersion() {
+        final String base = guild(100.0, 1, 0, 5);
+        assertEquals(1, first.insertGuild(PREFIX, ID, base));
+        assertEquals(1, stored(second).getVersion());
+
+        // The first server gets a deposit of 50 and wins a war
+        final String fromFirst = guild(150.0, 2, 0, 5);
+        assertArrayEquals(new int[]{1}, first.compareAndSet(PREFIX, IDS, Collections.singletonList(fromFirst), Collections.singletonList(1L)));
+        first.logChanges(PREFIX, IDS, "first", System.currentTimeMillis());
+
+        // The second server changed the same version: a withdrawal of 20, a war won, a war lost and a code redeemed
+        final String fromSecond = guild(80.0, 2, 1, 4);
+        assertArrayEquals(new int[]{0}, second.compareAndSet(PREFIX, IDS, Collections.singletonList(fromSecond), Collections.singletonList(1L)));
+        assertEquals(fromFirst, stored(first).getData());
+
+        // So it reads what the first server stored, merges its own changes into it and tries again
+        final VersionedGuild conflicting = stored(second);
+        assertEquals(2, conflicting.getVersion());
+        final String merged = GuildMerge.merge(base, fromSecond, conflicting.getData());
+        assertArrayEquals(new int[]{1}, second.compareAndSet(PREFIX, IDS, Collections.singletonList(merged), Collections.singletonList(conflicting.getVersion())));
+        second.logChanges(PREFIX, IDS, "second", System.currentTimeMillis());
+
+        final VersionedGuild result = stored(first);
+        assertEquals(3, result.getVersion());
+        final JsonObject json = JsonParser.parseString(result.getData()).getAsJsonObject();
+        assertEquals(130.0, json.get("balance").getAsDouble(), 0.0001);
+        assertEquals(3, json.getAsJsonObject("guildScore").get("wins").getAsInt());
+        assertEquals(1, json.getAsJsonObject("guildScore").get("loses").getAsInt());
+        assertEquals(4, json.getAsJsonArray("codes").get(0).getAsJsonObject().get("uses").getAsInt());
+
+        final List<GuildChange> changes = first.getChanges(PREFIX, 0, 10);
+        assertEquals(2, changes.size());
+        assertEquals("first", changes.get(0).getServer());
+        assertEquals(2, changes.get(0).getVersion());
+        assertEquals("second", changes.get(1).getServer());
+        assertEquals(3, changes.get(1).getVersion());
+    }
+
+    @Test
+    void overwriteWithoutKnownVersionStillBumpsIt() {
+        first.insertGuild(PREFIX, ID, guild(100.0, 0, 0, 0));
+        assertArrayEquals(new int[]{1}, second.overwriteGuilds(PREFIX, IDS, Collections.singletonList(guild(200.0, 0, 0, 0))));
+
+        // A write based on the version from before the overwrite doesn't go through
+        assertArrayEquals(new int[]{0}, first.compareAndSet(PREFIX, IDS, Collections.singletonList(guild(300.0, 0, 0, 0)), Collections.singletonList(1L)));
+        final VersionedGuild result = stored(first);
+        assertEquals(2, result.getVersion());
+        assertEquals(200.0, JsonParser.parseString(result.getData()).getAsJsonObject().get("balance").getAsDouble(), 0.0001);
+    }
+
+    private static VersionedGuild stored(GuildSyncSQLiteProvider provider) {
+        final List<VersionedGuild> stored = provider.getVersionedGuilds(PREFIX, IDS);
+        assertEquals(1, stored.size());
+        return stored.get(0);
+    }
+
+    private static String guild(double balance, int wins, int loses, int uses) {
+        return "{\"id\":\"" + ID + "\",\"name\":\"Test\",\"balance\":" + balance + "," +
+                "\"guildScore\":{\"wins\":" + wins + ",\"loses\":" + loses + "}," +
+                "\"codes\":[{\"id\":\"abc\",\"uses\":" + uses + "}],\"lastDefended\":0}";
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.glaremasters.guilds.tasks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final TimingWheel wheel = new TimingWheel(16, now::get);
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void firesOnceTheDelayHasPassed() {
+        wheel.schedule(() -> fired.add("timer"), 120, TimeUnit.MILLISECONDS);
+
+        advanceTo(100);
+        assertTrue(fired.isEmpty());
+
+        advanceTo(150);
+        assertEquals(Arrays.asList("timer"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void catchesUpOnMissedTicks() {
+        wheel.schedule(() -> fired.add("late"), 2, TimeUnit.SECONDS);
+        wheel.schedule(() -> fired.add("early"), 100, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> fired.add("middle"), 500, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> fired.add("waiting"), 10, TimeUnit.SECONDS);
+
+        // The server stalled for several turns of the wheel, everything due by now fires in order in one go
+        advanceTo(5_000);
+        assertEquals(Arrays.asList("early", "middle", "late"), fired);
+        assertEquals(1, wheel.size());
+
+        advanceTo(10_000);
+        assertEquals(Arrays.asList("early", "middle", "late", "waiting"), fired);
+    }
+
+    @Test
+    void keepsTimersDueInALaterTurn() {
+        // 16 slots of 50 milliseconds make a turn of 800 milliseconds, so this shares a bucket with tick 4
+        wheel.schedule(() -> fired.add("timer"), 1_000, TimeUnit.MILLISECONDS);
+
+        advanceTo(250);
+        advanceTo(950);
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.size());
+
+        advanceTo(1_000);
+        assertEquals(Arrays.asList("timer"), fired);
+    }
+
+    @Test
+    void cancelledTimerNeverFires() {
+        final TimingWheel.Timeout first = wheel.schedule(() -> fired.add("first"), 100, TimeUnit.MILLISECONDS);
+        final TimingWheel.Timeout second = wheel.schedule(() -> fired.add("second"), 100, TimeUnit.MILLISECONDS);
+        final TimingWheel.Timeout third = wheel.schedule(() -> fired.add("third"), 100, TimeUnit.MILLISECONDS);
+
+        // Unlink from the middle of the bucket
+        assertTrue(second.cancel());
+        assertFalse(second.cancel());
+        assertEquals(2, wheel.size());
+
+        advanceTo(100);
+        assertEquals(Arrays.asList("first", "third"), fired);
+        assertFalse(first.cancel());
+        assertFalse(third.cancel());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheOthers() {
+        wheel.schedule(() -> {
+            throw new IllegalStateException("broken");
+        }, 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> fired.add("timer"), 50, TimeUnit.MILLISECONDS);
+
+        advanceTo(50);
+        assertEquals(Arrays.asList("timer"), fired);
+    }
+
+    private void advanceTo(long elapsed) {
+        now.set(1_000_000L + elapsed);
+        wheel.advance();
+    }
+}